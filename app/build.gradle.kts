@@ -116,9 +116,11 @@ dependencies {
     implementation(libs.firebase.analytics)
 
     implementation(project(":astc_encoder"))
+    implementation(project(":block_codec"))
     implementation(project(":etcpak"))
     implementation(project(":f3d"))
     implementation(project(":fmod"))
+    implementation(project(":mesh_exporter"))
     implementation(project(":texture2ddecoder"))
 
     testImplementation(libs.junit)
@@ -149,8 +151,10 @@ chaquopy {
         getByName("main") {
             srcDir("${rootDir}/third_party/UnityPy")
             srcDir("${rootDir}/astc_encoder/src/main/python")
+            srcDir("${rootDir}/block_codec/src/main/python")
             srcDir("${rootDir}/etcpak/src/main/python")
             srcDir("${rootDir}/fmod/src/main/python")
+            srcDir("${rootDir}/mesh_exporter/src/main/python")
             srcDir("${rootDir}/texture2ddecoder/src/main/python")
         }
     }
@@ -0,0 +1,6 @@
+package com.elfilibustero.uabe.enums;
+
+/**
+ * What an object edit replaced; recorded with each edit in the session's edit journal.
+ */
+public enum EditKind {TEXT, TEXTURE, TYPETREE}
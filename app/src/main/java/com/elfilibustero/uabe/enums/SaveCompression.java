@@ -0,0 +1,31 @@
+package com.elfilibustero.uabe.enums;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Block compression a bundle is saved with. {@link #ORIGINAL} keeps whatever the bundle file
+ * being replaced uses.
+ */
+public enum SaveCompression {
+    NONE, LZ4, LZ4HC, LZMA, ORIGINAL;
+
+    /**
+     * The profile name the Python saver takes.
+     */
+    @NonNull
+    public String key() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    @NonNull
+    public static SaveCompression fromKey(@NonNull String key) {
+        for (SaveCompression c : values()) {
+            if (c.key().equals(key)) {
+                return c;
+            }
+        }
+        return ORIGINAL;
+    }
+}
@@ -0,0 +1,372 @@
+package com.elfilibustero.uabe.managers;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.documentfile.provider.DocumentFile;
+
+import com.elfilibustero.uabe.python.repo.ExportPayload;
+import com.elfilibustero.uabe.python.repo.TexturePixels;
+import com.elfilibustero.uabe.python.repo.UnityPyRepository;
+import com.elfilibustero.uabe.util.DocumentUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exports a set of objects into a document tree.
+ * <p>
+ * Objects are extracted one by one on the repository's Python thread while PNG encoding and
+ * document writes run on a pool with one thread per core, so the Python thread never waits
+ * on storage and textures encode in parallel. At most {@link #window} extracted payloads are
+ * alive at a time.
+ * <p>
+ * Every file is written under a {@code .partial} name and renamed once complete. Where the
+ * provider cannot rename, files are written in place and logged in app storage until they are
+ * complete. Files that already exist in the tree are skipped unless that log shows them
+ * unfinished, so running the export again into the same folder resumes an interrupted one.
+ */
+public final class BatchExportJob {
+
+    private static final String TAG = "BatchExportJob";
+    private static final String PARTIAL = ".partial";
+    private static final String PARTIAL_MIME = "application/octet-stream";
+    private static final long PROGRESS_INTERVAL_MS = 100;
+
+    public record Progress(int total, int written, int skipped, int failed, boolean cancelled) {
+        public int done() {
+            return written + skipped + failed;
+        }
+    }
+
+    public interface Listener {
+        /**
+         * Called on the main thread as objects complete, at most every 100 ms.
+         */
+        void onProgress(@NonNull Progress progress);
+
+        /**
+         * Called once on the main thread after the last object, or after cancellation once
+         * the objects already in flight are done.
+         */
+        void onFinished(@NonNull Progress progress);
+    }
+
+    private record Entry(int idx, @NonNull String name) { }
+
+    private final Context context;
+    private final UnityPyRepository repo;
+    private final String sessionId;
+    private final Uri treeUri;
+    private final int[] indices;
+    private final Listener listener;
+    // In-place writes of this tree: "+name" before a write, "-name" once it is complete
+    private final File inPlaceLog;
+
+    private final ExecutorService pool;
+    private final int window;
+    private final Handler main = new Handler(Looper.getMainLooper());
+
+    private DocumentFile dir;
+    private final List<Entry> queue = new ArrayList<>();
+    // Guarded by this
+    private int next;
+    private int inFlight;
+    private int written;
+    private int skipped;
+    private int failed;
+    private boolean finished;
+    private volatile boolean cancelled;
+    // Cleared when the provider cannot rename; files are then written in place
+    private volatile boolean atomicWrites = true;
+    private long lastProgress;
+    private long startNanos;
+
+    public BatchExportJob(@NonNull Context context, @NonNull UnityPyRepository repo,
+                          @NonNull String sessionId, @NonNull Uri treeUri,
+                          @NonNull int[] indices, @NonNull Listener listener) {
+        this.context = context.getApplicationContext();
+        this.repo = repo;
+        this.sessionId = sessionId;
+        this.treeUri = treeUri;
+        this.indices = indices;
+        this.listener = listener;
+        this.inPlaceLog = new File(new File(this.context.getFilesDir(), "batch_export"),
+                String.format(Locale.ROOT, "%08x.log", treeUri.toString().hashCode()));
+
+        int cores = Math.max(1, Runtime.getRuntime().availableProcessors());
+        // One extra payload so the Python thread has work queued while every core encodes
+        this.window = cores + 1;
+        AtomicInteger n = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(cores, r -> {
+            Thread t = new Thread(r, "BatchExport-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void start() {
+        startNanos = System.nanoTime();
+        repo.exportFileNames(sessionId, indices)
+                .addOnSuccessListener(pool, names -> {
+                    try {
+                        prepare(names);
+                    } catch (Throwable e) {
+                        Log.w(TAG, "prepare failed", e);
+                        synchronized (this) {
+                            failed = indices.length;
+                        }
+                    }
+                    pump();
+                })
+                .addOnFailureListener(pool, e -> {
+                    Log.w(TAG, "listing names failed", e);
+                    synchronized (this) {
+                        failed = indices.length;
+                    }
+                    pump();
+                });
+    }
+
+    /**
+     * Stops queueing objects; the ones already extracted are still written.
+     */
+    public void cancel() {
+        cancelled = true;
+        synchronized (this) {
+            if (!finished) pool.execute(this::pump);
+        }
+    }
+
+    /**
+     * Lists the tree once, drops leftovers of an interrupted run and queues every object whose
+     * file does not exist yet.
+     */
+    private void prepare(@NonNull List<String> names) throws IOException {
+        dir = DocumentFile.fromTreeUri(context, treeUri);
+        if (dir == null || !dir.isDirectory()) {
+            throw new IOException("Not a directory: " + treeUri);
+        }
+
+        Set<String> unfinished = unfinishedInPlace();
+        Set<String> existing = new HashSet<>();
+        boolean redone = true;
+        for (DocumentFile f : dir.listFiles()) {
+            String n = f.getName();
+            if (n == null) continue;
+            if (n.endsWith(PARTIAL)) {
+                f.delete();
+            } else if (unfinished.contains(n)) {
+                redone &= f.delete();
+            } else {
+                existing.add(n);
+            }
+        }
+        if (redone) {
+            //noinspection ResultOfMethodCallIgnored
+            inPlaceLog.delete();
+        }
+
+        Set<String> used = new HashSet<>();
+        int skip = 0;
+        for (int i = 0; i < indices.length; i++) {
+            String name = names.get(i);
+            if (!used.add(name)) {
+                // Same name and archive: disambiguate by index, which is stable across runs
+                name = withSuffix(name, "_" + indices[i]);
+                used.add(name);
+            }
+            if (existing.contains(name)) {
+                skip++;
+            } else {
+                queue.add(new Entry(indices[i], name));
+            }
+        }
+        synchronized (this) {
+            skipped = skip;
+        }
+    }
+
+    /**
+     * Requests extractions until the window is full; finishes the job once nothing is left.
+     */
+    private void pump() {
+        List<Entry> batch = new ArrayList<>();
+        synchronized (this) {
+            if (finished) return;
+            while (!cancelled && inFlight < window && next < queue.size()) {
+                batch.add(queue.get(next++));
+                inFlight++;
+            }
+            if (inFlight == 0 && (cancelled || next >= queue.size())) {
+                finished = true;
+                Progress p = progress();
+                pool.shutdown();
+                if (unfinishedInPlace().isEmpty()) {
+                    //noinspection ResultOfMethodCallIgnored
+                    inPlaceLog.delete();
+                }
+                Log.d(TAG, "finished: " + p + " in "
+                        + (System.nanoTime() - startNanos) / 1_000_000 + " ms");
+                main.post(() -> listener.onFinished(p));
+                return;
+            }
+        }
+
+        for (Entry e : batch) {
+            repo.extractForExport(sessionId, e.idx())
+                    .addOnSuccessListener(pool, payload -> {
+                        boolean ok;
+                        try {
+                            write(e, payload);
+                            ok = true;
+                        } catch (Throwable t) {
+                            Log.w(TAG, "write failed: " + e.name(), t);
+                            ok = false;
+                        }
+                        complete(ok);
+                    })
+                    .addOnFailureListener(pool, t -> {
+                        Log.w(TAG, "extract failed: " + e.idx() + ": " + t.getMessage());
+                        complete(false);
+                    });
+        }
+    }
+
+    private void complete(boolean ok) {
+        Progress p = null;
+        synchronized (this) {
+            inFlight--;
+            if (ok) written++;
+            else failed++;
+            long now = SystemClock.uptimeMillis();
+            if (now - lastProgress >= PROGRESS_INTERVAL_MS) {
+                lastProgress = now;
+                p = progress();
+            }
+        }
+        if (p != null) {
+            Progress fp = p;
+            main.post(() -> listener.onProgress(fp));
+        }
+        pump();
+    }
+
+    @NonNull
+    private Progress progress() {
+        return new Progress(indices.length, written, skipped, failed, cancelled);
+    }
+
+    private void write(@NonNull Entry e, @NonNull ExportPayload payload) throws IOException {
+        if (atomicWrites) {
+            DocumentFile tmp = create(e.name() + PARTIAL);
+            writeTo(tmp, payload);
+            if (tmp.renameTo(e.name())) {
+                return;
+            }
+            tmp.delete();
+            Log.d(TAG, "rename not supported, writing in place");
+            atomicWrites = false;
+        }
+        // A file written in place may be cut short; the log tells the next run to redo it
+        logInPlace('+', e.name());
+        writeTo(create(e.name()), payload);
+        logInPlace('-', e.name());
+    }
+
+    private synchronized void logInPlace(char op, @NonNull String name) throws IOException {
+        //noinspection ResultOfMethodCallIgnored
+        inPlaceLog.getParentFile().mkdirs();
+        try (OutputStream out = new FileOutputStream(inPlaceLog, true)) {
+            out.write((op + name + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Names whose in-place write started but never completed, in this run or an earlier one.
+     */
+    @NonNull
+    private synchronized Set<String> unfinishedInPlace() {
+        Set<String> names = new HashSet<>();
+        if (!inPlaceLog.isFile()) return names;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(inPlaceLog), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                String name = line.substring(1);
+                if (line.charAt(0) == '+') names.add(name);
+                else names.remove(name);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "reading " + inPlaceLog + " failed", e);
+        }
+        return names;
+    }
+
+    @NonNull
+    private DocumentFile create(@NonNull String name) throws IOException {
+        DocumentFile f = dir.createFile(PARTIAL_MIME, name);
+        if (f == null) {
+            throw new IOException("Cannot create " + name);
+        }
+        return f;
+    }
+
+    private void writeTo(@NonNull DocumentFile file, @NonNull ExportPayload payload)
+            throws IOException {
+        boolean done = false;
+        try (OutputStream out = new BufferedOutputStream(
+                DocumentUtil.openOutputStream(context, file.getUri()), 1024 * 256)) {
+            if (payload.pixels != null) {
+                encodePng(payload.pixels, out);
+            } else if (payload.data != null) {
+                out.write(payload.data);
+            }
+            done = true;
+        } finally {
+            if (!done) file.delete();
+        }
+    }
+
+    private static void encodePng(@NonNull TexturePixels pixels, @NonNull OutputStream out)
+            throws IOException {
+        Bitmap bmp = pixels.toBitmap();
+        try {
+            if (!bmp.compress(Bitmap.CompressFormat.PNG, 100, out)) {
+                throw new IOException("PNG encoding failed");
+            }
+        } finally {
+            bmp.recycle();
+        }
+    }
+
+    @NonNull
+    private static String withSuffix(@NonNull String name, @NonNull String suffix) {
+        int dot = name.lastIndexOf('.');
+        return (dot > 0)
+                ? name.substring(0, dot) + suffix + name.substring(dot)
+                : name + suffix;
+    }
+}
@@ -4,11 +4,17 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.chaquo.python.PyObject;
+import com.elfilibustero.uabe.python.core.ContainerMap;
+import com.elfilibustero.uabe.util.EditJournal;
 
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Thread-safe singleton session manager.
@@ -34,6 +40,9 @@ public final class SessionManager {
     // ---- Storage ----
     private final Map<String, Session> sessions = new ConcurrentHashMap<>();
 
+    // ---- Diagnostics ----
+    private final AtomicInteger handleTableBuilds = new AtomicInteger();
+
     // ---- Core API ----
 
     /**
@@ -104,6 +113,21 @@ public final class SessionManager {
         return sessions.size();
     }
 
+    /**
+     * Record that a session (re)built its object handle table.
+     */
+    public void recordHandleTableBuild(@NonNull Session session) {
+        session.handleTableBuilds++;
+        handleTableBuilds.incrementAndGet();
+    }
+
+    /**
+     * How many handle tables were built across all sessions (diagnostics).
+     */
+    public int getHandleTableBuilds() {
+        return handleTableBuilds.get();
+    }
+
     @NonNull
     private static String newId() {
         return UUID.randomUUID().toString().replace("-", "");
@@ -111,7 +135,48 @@ public final class SessionManager {
 
     public static class Session {
         public String sessionId;
+        public String localPath;
+        @Nullable
         public PyObject env;
+        public PyObject indexer;
+        /**
+         * Container paths read once from the bundle's {@code m_Container} table; the Python
+         * map feeds the indexer, its Java mirror serves per-object lookups.
+         */
+        @Nullable
+        public PyObject containers;
+        @Nullable
+        public ContainerMap containerMap;
+        public int objectCount;
         public boolean dirty;
+        /**
+         * Names of the bundle files edited since {@link #localPath} was written; a save
+         * serializes only these and copies the rest from {@code localPath}.
+         */
+        public final Set<String> dirtyFiles = new HashSet<>();
+        /**
+         * Indices of the objects edited since then, whose rows a save reports back.
+         */
+        public final Set<Integer> editedObjects = new HashSet<>();
+        /**
+         * Durable record of the session's edits for undo, redo and recovery; null if it could
+         * not be opened, in which case edits still work but are not journaled.
+         */
+        @Nullable
+        public EditJournal journal;
+
+        /**
+         * Resolved {@code env.objects}, built once so per-object calls are O(1) lookups.
+         */
+        @Nullable
+        public PyObject objects;
+        @Nullable
+        public List<PyObject> handles;
+        public int handleTableBuilds;
+
+        public void invalidateHandles() {
+            objects = null;
+            handles = null;
+        }
     }
 }
\ No newline at end of file
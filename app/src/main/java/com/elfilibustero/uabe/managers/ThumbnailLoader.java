@@ -0,0 +1,230 @@
+package com.elfilibustero.uabe.managers;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.elfilibustero.uabe.model.ObjectItem;
+import com.elfilibustero.uabe.python.repo.UnityPyRepository;
+import com.elfilibustero.uabe.util.ThumbnailCache;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Produces list thumbnails for Texture2D and Sprite rows.
+ * <p>
+ * Only rows that are currently bound are requested, and the most recently bound row goes
+ * first, so the rows on screen fill in before the ones scrolled past. One thumbnail is in
+ * flight at a time: a disk hit costs a file decode, a miss one small request on the Python
+ * thread. All methods are called on the main thread.
+ */
+@MainThread
+public final class ThumbnailLoader {
+
+    private static final String TAG = "ThumbnailLoader";
+
+    // Longest edge in pixels; about 48dp on an xxhdpi screen
+    public static final int SIZE = 144;
+    private static final int MAX_WANTED = 256;
+    private static final int MIP = 0;
+
+    public interface Listener {
+        void onThumbnail(int idx, @NonNull Bitmap bitmap);
+    }
+
+    private final UnityPyRepository repo;
+    private final ThumbnailCache cache;
+    private final ExecutorService io;
+    private final Handler main = new Handler(Looper.getMainLooper());
+
+    @Nullable
+    private Listener listener;
+    @Nullable
+    private String sessionId;
+    @Nullable
+    private String bundleKey;
+    private int generation;
+    private boolean loading;
+
+    // idx -> path_id of bound rows still waiting, most recently bound last
+    private final LinkedHashMap<Integer, Long> wanted = new LinkedHashMap<>();
+    // Objects without an image; not asked again this session
+    private final HashSet<Integer> failed = new HashSet<>();
+    // Edited since the bundle was last written, so their disk entries are stale
+    private final HashSet<Long> dirty = new HashSet<>();
+
+    public ThumbnailLoader(@NonNull Context ctx, @NonNull UnityPyRepository repo) {
+        this.repo = repo;
+        this.cache = new ThumbnailCache(ctx.getApplicationContext());
+        this.io = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Thumbnails");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static boolean supports(@Nullable String type) {
+        return "Texture2D".equals(type) || "Sprite".equals(type);
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts serving thumbnails for a freshly opened session of {@code bundle}.
+     */
+    public void open(@NonNull String sessionId, @NonNull File bundle) {
+        int gen = ++generation;
+        this.sessionId = sessionId;
+        bundleKey = null;
+        loading = false;
+        failed.clear();
+        dirty.clear();
+        cache.clearMemory();
+
+        io.execute(() -> {
+            String key;
+            try {
+                key = ThumbnailCache.bundleKey(bundle);
+            } catch (Exception e) {
+                Log.d(TAG, "bundle key failed: " + e);
+                return;
+            }
+            cache.trimDisk();
+            main.post(() -> {
+                if (gen != generation) return;
+                bundleKey = key;
+                pump();
+            });
+        });
+    }
+
+    public void close() {
+        generation++;
+        sessionId = null;
+        bundleKey = null;
+        loading = false;
+        wanted.clear();
+        failed.clear();
+        dirty.clear();
+        cache.clearMemory();
+    }
+
+    /**
+     * The thumbnail of {@code item} if it is in memory.
+     */
+    @Nullable
+    public Bitmap get(@NonNull ObjectItem item) {
+        if (bundleKey == null) return null;
+        return cache.getMemory(ThumbnailCache.key(bundleKey, item.getId(), MIP));
+    }
+
+    /**
+     * Queues {@code item}, whose row was just bound, ahead of everything already waiting.
+     */
+    public void request(@NonNull ObjectItem item) {
+        int idx = item.getIndex();
+        if (failed.contains(idx)) return;
+
+        wanted.remove(idx);
+        wanted.put(idx, item.getId());
+        if (wanted.size() > MAX_WANTED) {
+            Iterator<Integer> it = wanted.keySet().iterator();
+            it.next();
+            it.remove();
+        }
+        pump();
+    }
+
+    /**
+     * The row of {@code idx} was recycled; it no longer needs a thumbnail.
+     */
+    public void cancel(int idx) {
+        wanted.remove(idx);
+    }
+
+    /**
+     * Forgets the thumbnail of an edited object.
+     */
+    public void invalidate(int idx, long pathId) {
+        dirty.add(pathId);
+        failed.remove(idx);
+        cache.invalidate(pathId);
+    }
+
+    public void shutdown() {
+        close();
+        io.shutdownNow();
+    }
+
+    private void pump() {
+        if (loading || sessionId == null || bundleKey == null || wanted.isEmpty()) return;
+
+        // Newest request first: that row is the most likely to still be on screen
+        Map.Entry<Integer, Long> last = null;
+        for (Map.Entry<Integer, Long> e : wanted.entrySet()) last = e;
+        int idx = last.getKey();
+        long pathId = last.getValue();
+        wanted.remove(idx);
+
+        String key = ThumbnailCache.key(bundleKey, pathId, MIP);
+        if (cache.getMemory(key) != null) {
+            pump();
+            return;
+        }
+
+        loading = true;
+        int gen = generation;
+        String sid = sessionId;
+        boolean useDisk = !dirty.contains(pathId);
+        io.execute(() -> {
+            Bitmap cached = useDisk ? cache.readDisk(key) : null;
+            if (cached != null) {
+                main.post(() -> deliver(gen, idx, key, cached));
+                return;
+            }
+            repo.getThumbnail(sid, idx, SIZE)
+                    .addOnSuccessListener(io, pixels -> {
+                        Bitmap bmp;
+                        try {
+                            bmp = pixels.toBitmap();
+                        } catch (Throwable t) {
+                            main.post(() -> fail(gen, idx, t));
+                            return;
+                        }
+                        if (useDisk) cache.writeDisk(key, bmp);
+                        main.post(() -> deliver(gen, idx, key, bmp));
+                    })
+                    .addOnFailureListener(e -> fail(gen, idx, e));
+        });
+    }
+
+    private void deliver(int gen, int idx, @NonNull String key, @NonNull Bitmap bmp) {
+        if (gen != generation) return;
+        loading = false;
+        cache.putMemory(key, bmp);
+        if (listener != null) listener.onThumbnail(idx, bmp);
+        pump();
+    }
+
+    private void fail(int gen, int idx, @NonNull Throwable t) {
+        if (gen != generation) return;
+        Log.d(TAG, "thumbnail failed for " + idx + ": " + t.getMessage());
+        loading = false;
+        failed.add(idx);
+        pump();
+    }
+}
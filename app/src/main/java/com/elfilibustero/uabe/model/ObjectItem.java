@@ -28,6 +28,8 @@ public final class ObjectItem implements Parcelable {
     private String container;
     @SerializedName("modified")
     private boolean modified;
+    @SerializedName("name_resolved")
+    private boolean nameResolved = true;
 
     public ObjectItem(int index,
                       long id,
@@ -60,6 +62,7 @@ public final class ObjectItem implements Parcelable {
 
         container = in.readString();
         modified = in.readByte() != 0;
+        nameResolved = in.readByte() != 0;
     }
 
     @NonNull
@@ -97,6 +100,7 @@ public final class ObjectItem implements Parcelable {
 
         dest.writeString(container);
         dest.writeByte((byte) (modified ? 1 : 0));
+        dest.writeByte((byte) (nameResolved ? 1 : 0));
     }
 
     @Override
@@ -164,6 +168,17 @@ public final class ObjectItem implements Parcelable {
         this.modified = modified;
     }
 
+    /**
+     * False while the name is still a placeholder because the object header carried none.
+     */
+    public boolean isNameResolved() {
+        return nameResolved;
+    }
+
+    public void setNameResolved(boolean nameResolved) {
+        this.nameResolved = nameResolved;
+    }
+
     @NonNull
     @Override
     public String toString() {
@@ -0,0 +1,512 @@
+package com.elfilibustero.uabe.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Column-oriented store for a bundle's object listing.
+ * <p>
+ * Rows live in primitive arrays (index, path id, size, interned type id) plus bit sets for
+ * the modified/unresolved flags, and names/containers go through a string pool, so a row
+ * costs a few dozen bytes instead of a full {@link ObjectItem}.
+ * <p>
+ * {@link #columns()} hands out an immutable {@link Columns} view, which background work may
+ * read and which backs the adapter's row views. Columns are copy-on-write against the latest
+ * view: edits between views are O(1), the first edit after one clones just the touched
+ * column, and appends never copy.
+ * <p>
+ * Not thread-safe; owned by the main thread.
+ */
+public final class ObjectTable {
+
+    /**
+     * Orders two rows of the table.
+     */
+    public interface RowComparator {
+        int compare(int rowA, int rowB);
+    }
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int count;
+    private int[] index = new int[INITIAL_CAPACITY];
+    private long[] pathId = new long[INITIAL_CAPACITY];
+    private long[] size = new long[INITIAL_CAPACITY];
+    private short[] typeId = new short[INITIAL_CAPACITY];
+    private String[] name = new String[INITIAL_CAPACITY];
+    private String[] container = new String[INITIAL_CAPACITY];
+    private BitSet modified = new BitSet();
+    private BitSet unresolved = new BitSet();
+
+    // object index -> row, -1 when absent
+    private int[] rowOfIndex = new int[0];
+
+    private ArrayList<String> types = new ArrayList<>();
+    private HashMap<String, Short> typeIds = new HashMap<>();
+    private HashMap<String, String> pool = new HashMap<>();
+
+    private boolean namesShared;
+    private boolean sizesShared;
+    private boolean modifiedShared;
+    private boolean unresolvedShared;
+
+    // Bumped on clear(), so views of an earlier listing are never mixed with this one
+    private int epoch;
+
+    // Bumped on every in-place edit, so cached results know what they were built from
+    private int nameVersion;
+    private int sizeVersion;
+    private int modifiedVersion;
+
+    public int size() {
+        return count;
+    }
+
+    public void clear() {
+        count = 0;
+        index = new int[INITIAL_CAPACITY];
+        pathId = new long[INITIAL_CAPACITY];
+        size = new long[INITIAL_CAPACITY];
+        typeId = new short[INITIAL_CAPACITY];
+        name = new String[INITIAL_CAPACITY];
+        container = new String[INITIAL_CAPACITY];
+        modified = new BitSet();
+        unresolved = new BitSet();
+        rowOfIndex = new int[0];
+        types = new ArrayList<>();
+        typeIds = new HashMap<>();
+        pool = new HashMap<>();
+        namesShared = sizesShared = modifiedShared = unresolvedShared = false;
+        nameVersion = sizeVersion = modifiedVersion = 0;
+        epoch++;
+    }
+
+    public void append(@NonNull ObjectItem it) {
+        ensureCapacity(count + 1);
+        int row = count;
+
+        index[row] = it.getIndex();
+        pathId[row] = it.getId();
+        size[row] = it.getBytes() != null ? it.getBytes() : -1;
+        typeId[row] = internType(it.getType());
+        name[row] = intern(it.getName());
+        container[row] = intern(it.getContainer());
+        if (it.isModified()) {
+            modifiedForWrite().set(row);
+        }
+        if (!it.isNameResolved()) {
+            unresolvedForWrite().set(row);
+        }
+
+        mapIndex(it.getIndex(), row);
+        count++;
+    }
+
+    public void appendAll(@NonNull List<ObjectItem> items) {
+        ensureCapacity(count + items.size());
+        for (ObjectItem it : items) {
+            if (it != null) {
+                append(it);
+            }
+        }
+    }
+
+    /**
+     * Row holding object {@code objectIndex}, or -1.
+     */
+    public int rowOf(int objectIndex) {
+        return (objectIndex >= 0 && objectIndex < rowOfIndex.length) ? rowOfIndex[objectIndex] : -1;
+    }
+
+    // ---------------- Column access ----------------
+
+    public int index(int row) {
+        return index[row];
+    }
+
+    public long pathId(int row) {
+        return pathId[row];
+    }
+
+    /**
+     * Size in bytes, or -1 when unknown.
+     */
+    public long bytes(int row) {
+        return size[row];
+    }
+
+    public int typeId(int row) {
+        return typeId[row];
+    }
+
+    @NonNull
+    public String type(int row) {
+        return types.get(typeId[row]);
+    }
+
+    @NonNull
+    public List<String> types() {
+        return types;
+    }
+
+    @Nullable
+    public String name(int row) {
+        return name[row];
+    }
+
+    @Nullable
+    public String container(int row) {
+        return container[row];
+    }
+
+    public boolean isModified(int row) {
+        return modified.get(row);
+    }
+
+    public boolean isNameResolved(int row) {
+        return !unresolved.get(row);
+    }
+
+    // ---------------- Edits ----------------
+
+    public void setModified(int row, boolean value) {
+        if (modified.get(row) != value) {
+            modifiedForWrite().set(row, value);
+            modifiedVersion++;
+        }
+    }
+
+    /**
+     * Stores a fully resolved name; a null or empty name keeps the placeholder.
+     */
+    public void setResolvedName(int row, @Nullable String value) {
+        if (value != null && !value.isEmpty() && !value.equals(name[row])) {
+            namesForWrite()[row] = intern(value);
+            nameVersion++;
+        }
+        if (unresolved.get(row)) {
+            unresolvedForWrite().clear(row);
+        }
+    }
+
+    public void setBytes(int row, long value) {
+        if (size[row] != value) {
+            sizesForWrite()[row] = value;
+            sizeVersion++;
+        }
+    }
+
+    // ---------------- Views ----------------
+
+    /**
+     * Materialises one row as a standalone {@link ObjectItem}.
+     */
+    @NonNull
+    public ObjectItem item(int row) {
+        ObjectItem it = new ObjectItem(
+                index[row],
+                pathId[row],
+                types.get(typeId[row]),
+                name[row],
+                size[row] >= 0 ? size[row] : null,
+                container[row],
+                modified.get(row)
+        );
+        it.setNameResolved(!unresolved.get(row));
+        return it;
+    }
+
+    /**
+     * Immutable view of the table as it is now. Later edits and appends are not visible
+     * through it, so it is safe to read off the main thread.
+     */
+    @NonNull
+    public Columns columns() {
+        namesShared = sizesShared = modifiedShared = unresolvedShared = true;
+        return new Columns(this);
+    }
+
+    /**
+     * Sorts {@code rows[0..n)} in place; stable, and without boxing the row numbers.
+     */
+    public static void sortRows(@NonNull int[] rows, int n, @NonNull RowComparator cmp) {
+        if (n < 2) {
+            return;
+        }
+        int[] tmp = Arrays.copyOf(rows, n);
+        mergeSort(tmp, rows, 0, n, cmp);
+    }
+
+    private static void mergeSort(int[] src, int[] dst, int lo, int hi, RowComparator cmp) {
+        int len = hi - lo;
+        if (len < 16) {
+            // insertion sort on dst (src and dst hold the same values here)
+            for (int i = lo + 1; i < hi; i++) {
+                int v = dst[i];
+                int j = i - 1;
+                while (j >= lo && cmp.compare(dst[j], v) > 0) {
+                    dst[j + 1] = dst[j];
+                    j--;
+                }
+                dst[j + 1] = v;
+            }
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        mergeSort(dst, src, lo, mid, cmp);
+        mergeSort(dst, src, mid, hi, cmp);
+
+        if (cmp.compare(src[mid - 1], src[mid]) <= 0) {
+            System.arraycopy(src, lo, dst, lo, len);
+            return;
+        }
+        for (int i = lo, p = lo, q = mid; i < hi; i++) {
+            if (q >= hi || (p < mid && cmp.compare(src[p], src[q]) <= 0)) {
+                dst[i] = src[p++];
+            } else {
+                dst[i] = src[q++];
+            }
+        }
+    }
+
+    // ---------------- Internals ----------------
+
+    private String[] namesForWrite() {
+        if (namesShared) {
+            name = name.clone();
+            namesShared = false;
+        }
+        return name;
+    }
+
+    private long[] sizesForWrite() {
+        if (sizesShared) {
+            size = size.clone();
+            sizesShared = false;
+        }
+        return size;
+    }
+
+    private BitSet modifiedForWrite() {
+        if (modifiedShared) {
+            modified = (BitSet) modified.clone();
+            modifiedShared = false;
+        }
+        return modified;
+    }
+
+    private BitSet unresolvedForWrite() {
+        if (unresolvedShared) {
+            unresolved = (BitSet) unresolved.clone();
+            unresolvedShared = false;
+        }
+        return unresolved;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= index.length) {
+            return;
+        }
+        // Growing allocates new arrays, so snapshots keep their own
+        int cap = Math.max(needed, index.length + (index.length >> 1));
+        index = Arrays.copyOf(index, cap);
+        pathId = Arrays.copyOf(pathId, cap);
+        size = Arrays.copyOf(size, cap);
+        typeId = Arrays.copyOf(typeId, cap);
+        name = Arrays.copyOf(name, cap);
+        container = Arrays.copyOf(container, cap);
+        namesShared = false;
+        sizesShared = false;
+    }
+
+    private void mapIndex(int objectIndex, int row) {
+        if (objectIndex < 0) {
+            return;
+        }
+        if (objectIndex >= rowOfIndex.length) {
+            int old = rowOfIndex.length;
+            int cap = Math.max(objectIndex + 1, old + (old >> 1));
+            rowOfIndex = Arrays.copyOf(rowOfIndex, cap);
+            Arrays.fill(rowOfIndex, old, cap, -1);
+        }
+        rowOfIndex[objectIndex] = row;
+    }
+
+    private short internType(@Nullable String type) {
+        String t = (type != null) ? type : "";
+        Short id = typeIds.get(t);
+        if (id == null) {
+            id = (short) types.size();
+            typeIds.put(t, id);
+            types.add(t);
+        }
+        return id;
+    }
+
+    @Nullable
+    private String intern(@Nullable String s) {
+        if (s == null) {
+            return null;
+        }
+        String pooled = pool.putIfAbsent(s, s);
+        return pooled != null ? pooled : s;
+    }
+
+    /**
+     * Frozen view of an {@link ObjectTable}; see {@link #columns()}.
+     */
+    public static final class Columns {
+        private final int count;
+        private final int[] index;
+        private final long[] pathId;
+        private final long[] size;
+        private final short[] typeId;
+        private final String[] name;
+        private final String[] container;
+        private final BitSet modified;
+        private final BitSet unresolved;
+        private final String[] types;
+
+        public final int epoch;
+        public final int nameVersion;
+        public final int sizeVersion;
+        public final int modifiedVersion;
+
+        private Columns(@NonNull ObjectTable t) {
+            count = t.count;
+            index = t.index;
+            pathId = t.pathId;
+            size = t.size;
+            typeId = t.typeId;
+            name = t.name;
+            container = t.container;
+            modified = t.modified;
+            unresolved = t.unresolved;
+            types = t.types.toArray(new String[0]);
+            epoch = t.epoch;
+            nameVersion = t.nameVersion;
+            sizeVersion = t.sizeVersion;
+            modifiedVersion = t.modifiedVersion;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public int index(int row) {
+            return index[row];
+        }
+
+        public long pathId(int row) {
+            return pathId[row];
+        }
+
+        public long bytes(int row) {
+            return size[row];
+        }
+
+        public int typeId(int row) {
+            return typeId[row];
+        }
+
+        @NonNull
+        public String type(int row) {
+            return types[typeId[row]];
+        }
+
+        @NonNull
+        public String[] types() {
+            return types;
+        }
+
+        @Nullable
+        public String name(int row) {
+            return name[row];
+        }
+
+        @Nullable
+        public String container(int row) {
+            return container[row];
+        }
+
+        public boolean isModified(int row) {
+            return modified.get(row);
+        }
+
+        public boolean isNameResolved(int row) {
+            return !unresolved.get(row);
+        }
+
+        @NonNull
+        public ObjectItem item(int row) {
+            ObjectItem it = new ObjectItem(
+                    index[row],
+                    pathId[row],
+                    types[typeId[row]],
+                    name[row],
+                    size[row] >= 0 ? size[row] : null,
+                    container[row],
+                    modified.get(row)
+            );
+            it.setNameResolved(!unresolved.get(row));
+            return it;
+        }
+
+        /**
+         * The rows {@code rows[0..n)} of this view, in that order.
+         */
+        @NonNull
+        public Rows rows(@NonNull int[] rows, int n) {
+            return new Rows(this, rows, n);
+        }
+    }
+
+    /**
+     * Immutable sequence of rows of one {@link Columns} view, in display order. Nothing is
+     * kept per row; {@link #item(int)} builds an {@link ObjectItem} when one is needed.
+     */
+    public static final class Rows {
+        @NonNull
+        public final Columns columns;
+        private final int[] rows;
+        private final int n;
+
+        Rows(@NonNull Columns columns, @NonNull int[] rows, int n) {
+            this.columns = columns;
+            this.rows = rows;
+            this.n = n;
+        }
+
+        public int size() {
+            return n;
+        }
+
+        /**
+         * Table row shown at {@code position}.
+         */
+        public int row(int position) {
+            if (position < 0 || position >= n) {
+                throw new IndexOutOfBoundsException("Index: " + position + ", size: " + n);
+            }
+            return rows[position];
+        }
+
+        /**
+         * Object index shown at {@code position}.
+         */
+        public int index(int position) {
+            return columns.index(row(position));
+        }
+
+        @NonNull
+        public ObjectItem item(int position) {
+            return columns.item(row(position));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.elfilibustero.uabe.python.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.chaquo.python.PyObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Java mirror of {@code uabe_bridge.containers.ContainerMap}: path_id -> container path,
+ * built once per session.
+ * <p>
+ * Kept as a sorted {@code long[]} plus one shared UTF-8 table, so a bundle with tens of
+ * thousands of container entries costs a few arrays instead of a map of boxed keys.
+ * Paths are decoded on lookup. A path_id listed by more than one serialized file is left out,
+ * and so are objects in files without a table; {@link #isComplete()} is false then, and a miss
+ * has to be looked up in Python.
+ */
+public final class ContainerMap {
+
+    static final ContainerMap EMPTY =
+            new ContainerMap(new long[0], new int[]{0}, new byte[0], false);
+
+    private final long[] pathIds;
+    private final int[] offsets;
+    private final byte[] strings;
+    private final boolean complete;
+
+    private ContainerMap(@NonNull long[] pathIds, @NonNull int[] offsets, @NonNull byte[] strings,
+                         boolean complete) {
+        this.pathIds = pathIds;
+        this.offsets = offsets;
+        this.strings = strings;
+        this.complete = complete;
+    }
+
+    @NonNull
+    static ContainerMap read(@Nullable PyObject map) {
+        if (map == null || map.isEmpty()) {
+            return EMPTY;
+        }
+        long[] pathIds = ObjectIndexReader.longs(ObjectIndexReader.bytes(map.get("path_id")));
+        int[] offsets = ObjectIndexReader.ints(ObjectIndexReader.bytes(map.get("string_offsets")));
+        byte[] strings = ObjectIndexReader.bytes(map.get("strings"));
+        if (offsets.length != pathIds.length + 1) {
+            return EMPTY;
+        }
+        boolean complete = map.get("complete").toBoolean();
+        return new ContainerMap(pathIds, offsets, strings, complete);
+    }
+
+    /**
+     * Container path of {@code pathId}, or null when the bundle does not list one.
+     */
+    @Nullable
+    public String get(long pathId) {
+        int i = Arrays.binarySearch(pathIds, pathId);
+        if (i < 0) {
+            return null;
+        }
+        int start = offsets[i];
+        int end = offsets[i + 1];
+        return end > start ? new String(strings, start, end - start, StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Whether a path_id missing here has no container; otherwise it may just not be mirrored.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public int size() {
+        return pathIds.length;
+    }
+}
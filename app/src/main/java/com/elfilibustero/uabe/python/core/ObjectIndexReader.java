@@ -0,0 +1,114 @@
+package com.elfilibustero.uabe.python.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.chaquo.python.PyObject;
+import com.elfilibustero.uabe.model.ObjectItem;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decodes the columnar listing produced by {@code uabe_bridge.indexer.build_index}.
+ * <p>
+ * Every column arrives as one Python {@code bytes} object, so decoding costs a fixed
+ * number of Chaquopy crossings regardless of how many objects the bundle holds.
+ */
+final class ObjectIndexReader {
+
+    @NonNull
+    final List<ObjectItem> objects;
+    @NonNull
+    final List<String> types;
+
+    private ObjectIndexReader(@NonNull List<ObjectItem> objects, @NonNull List<String> types) {
+        this.objects = objects;
+        this.types = types;
+    }
+
+    @NonNull
+    static ObjectIndexReader read(@NonNull PyObject index) {
+        int count = index.get("count").toInt();
+
+        int[] idx = ints(bytes(index.get("index")));
+        long[] pathIds = longs(bytes(index.get("path_id")));
+        long[] sizes = longs(bytes(index.get("size")));
+        int[] typeIds = ints(bytes(index.get("type_id")));
+        int[] offsets = ints(bytes(index.get("string_offsets")));
+        byte[] strings = bytes(index.get("strings"));
+        byte[] unresolved = bytes(index.get("unresolved"));
+
+        List<String> types = new ArrayList<>();
+        PyObject pyTypes = index.get("types");
+        for (PyObject t : (pyTypes != null) ? pyTypes.asList() : Collections.<PyObject>emptyList()) {
+            types.add(t.toString());
+        }
+
+        List<ObjectItem> out = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String type = (typeIds[i] >= 0 && typeIds[i] < types.size())
+                    ? types.get(typeIds[i]) : "Unknown";
+            String name = string(strings, offsets, 2 * i);
+            String container = string(strings, offsets, 2 * i + 1);
+
+            ObjectItem item = new ObjectItem(
+                    idx[i],
+                    pathIds[i],
+                    type,
+                    !name.isEmpty() ? name : "Unnamed asset",
+                    sizes[i] >= 0 ? sizes[i] : null,
+                    !container.isEmpty() ? container : null,
+                    false
+            );
+            item.setNameResolved(i >= unresolved.length || unresolved[i] == 0);
+            out.add(item);
+        }
+
+        // Blank types are listed but never offered as filters
+        List<String> filterTypes = new ArrayList<>(types.size());
+        for (String t : types) {
+            if (!t.isEmpty()) {
+                filterTypes.add(t);
+            }
+        }
+        return new ObjectIndexReader(out, filterTypes);
+    }
+
+    @NonNull
+    private static String string(@NonNull byte[] table, @NonNull int[] offsets, int k) {
+        int start = offsets[k];
+        int end = offsets[k + 1];
+        return end > start ? new String(table, start, end - start, StandardCharsets.UTF_8) : "";
+    }
+
+    @NonNull
+    static byte[] bytes(@Nullable PyObject b) {
+        if (b == null || b.isEmpty()) {
+            return new byte[0];
+        }
+        return b.toJava(byte[].class);
+    }
+
+    @NonNull
+    static int[] ints(@NonNull byte[] b) {
+        IntBuffer ib = ByteBuffer.wrap(b).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int[] out = new int[ib.remaining()];
+        ib.get(out);
+        return out;
+    }
+
+    @NonNull
+    static long[] longs(@NonNull byte[] b) {
+        LongBuffer lb = ByteBuffer.wrap(b).order(ByteOrder.nativeOrder()).asLongBuffer();
+        long[] out = new long[lb.remaining()];
+        lb.get(out);
+        return out;
+    }
+}
@@ -4,6 +4,7 @@ import static com.elfilibustero.uabe.util.Utils.GSON;
 
 import android.content.Context;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -12,20 +13,32 @@ import androidx.annotation.Nullable;
 import com.chaquo.python.Kwarg;
 import com.chaquo.python.PyObject;
 import com.chaquo.python.Python;
+import com.elfilibustero.uabe.enums.EditKind;
+import com.elfilibustero.uabe.enums.SaveCompression;
 import com.elfilibustero.uabe.managers.SessionManager;
 import com.elfilibustero.uabe.model.ObjectItem;
 import com.elfilibustero.uabe.python.repo.ApiResult;
+import com.elfilibustero.uabe.python.repo.EditStepResult;
 import com.elfilibustero.uabe.python.repo.ExportFileResult;
+import com.elfilibustero.uabe.python.repo.ExportPayload;
 import com.elfilibustero.uabe.python.repo.ObjectData;
+import com.elfilibustero.uabe.python.repo.ObjectPage;
 import com.elfilibustero.uabe.python.repo.OpenBundleResult;
 import com.elfilibustero.uabe.python.repo.SaveBundleResult;
+import com.elfilibustero.uabe.python.repo.TexturePixels;
+import com.elfilibustero.uabe.python.repo.TileSourceInfo;
+import com.elfilibustero.uabe.util.BundleIndexCache;
 import com.elfilibustero.uabe.util.DocumentUtil;
+import com.elfilibustero.uabe.util.EditJournal;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -51,8 +64,19 @@ public final class UnityPyBridge {
     private final PyObject json;
     private final PyObject pilImage;
     private final PyObject io;
+    private final PyObject indexer;
+    private final PyObject containers;
+    private final PyObject exporter;
+    private final PyObject textures;
+    private final PyObject meshes;
+    private final PyObject editor;
+    private final PyObject bundles;
 
     private final SessionManager sessionManager;
+    private final BundleIndexCache indexCache;
+    private final File journalRoot;
+    // token -> uabe_bridge.textures.TileSource of an open tiled preview
+    private final Map<String, PyObject> tileSources = new HashMap<>();
 
     public UnityPyBridge(Context context) {
         this.context = context;
@@ -61,66 +85,151 @@ public final class UnityPyBridge {
         json = py.getModule("json");
         pilImage = py.getModule("PIL.Image");
         io = py.getModule("io");
+        indexer = py.getModule("uabe_bridge.indexer");
+        containers = py.getModule("uabe_bridge.containers");
+        exporter = py.getModule("uabe_bridge.export");
+        textures = py.getModule("uabe_bridge.textures");
+        meshes = py.getModule("uabe_bridge.meshes");
+        editor = py.getModule("uabe_bridge.edit");
+        bundles = py.getModule("uabe_bridge.bundle");
+        // Bundles then load with their blocks decoded on every core
+        Log.d(TAG, "parallel block loading: " + bundles.callAttr("install_loader").toBoolean());
         sessionManager = SessionManager.get();
+        indexCache = new BundleIndexCache(context);
+        journalRoot = EditJournal.root(context);
     }
 
     public ApiResult<OpenBundleResult> openBundle(String localPath) {
+        ApiResult<OpenBundleResult> opened = openSession(localPath);
+        if (!opened.ok || opened.data == null || opened.data.fromCache) {
+            return opened;
+        }
+        OpenBundleResult resp = opened.data;
+        ApiResult<ObjectPage> page = listObjects(resp.sessionId, 0, resp.objectCount);
+        if (!page.ok || page.data == null) {
+            closeJournal(sessionManager.remove(resp.sessionId));
+            return fail(page.error, page.trace);
+        }
+        resp.objects = page.data.objects;
+        resp.types = page.data.types;
+        cacheIndex(localPath, resp);
+        return ok(resp);
+    }
+
+    /**
+     * Registers a session for the bundle. On an index cache hit the result already carries
+     * every object and UnityPy is not touched until an object is actually needed; otherwise
+     * the bundle is loaded and callers page through it with
+     * {@link #listObjects(String, int, int)}.
+     * <p>
+     * Edits journaled after the file was last saved are replayed onto the loaded bundle; such
+     * a session is never served from the index cache.
+     */
+    public ApiResult<OpenBundleResult> openSession(String localPath) {
         try {
             File in = new File(localPath);
             if (!in.exists()) {
                 return fail("Input not found: " + localPath, null);
             }
 
-            PyObject env = unitypy.callAttr("load", in.getAbsolutePath());
             String sessionId = uuid12();
 
             SessionManager.Session s = new SessionManager.Session();
-            s.env = env;
+            s.localPath = in.getAbsolutePath();
             s.sessionId = sessionManager.create(s);
             sessionManager.put(sessionId, s);
 
-            PyObject objects = env.get("objects");
-            List<PyObject> objList = (objects != null) ? objects.asList() : Collections.emptyList();
-
-            List<String> archives = archiveNames(env);
-            List<ObjectItem> outObjects = new ArrayList<>(objList.size());
-
-            LinkedHashSet<String> typeSet = new LinkedHashSet<>();
-
-            for (int i = 0; i < objList.size(); i++) {
-                PyObject obj = objList.get(i);
-
-                String t = tname(obj);
-                long pid = safeLong(getAttr(obj, "path_id"), 0);
+            s.journal = openJournal(in);
+            boolean recover = s.journal != null && s.journal.hasPending();
 
-                ObjectItem item = new ObjectItem();
-                item.setIndex(i);
-                item.setType(t);
-                item.setId(pid);
-                item.setBytes(tryGetSize(obj));
+            OpenBundleResult resp = new OpenBundleResult();
+            resp.sessionId = sessionId;
 
-                String nm = extractName(obj);
-                item.setName(!nm.isEmpty() ? nm : "Unnamed asset");
-                item.setContainer(tryGetContainer(obj));
+            BundleIndexCache.Entry cached = recover ? null : indexCache.read(in);
+            if (cached != null) {
+                s.objectCount = cached.objects.size();
 
-                outObjects.add(item);
+                resp.archives = cached.archives;
+                resp.objects = cached.objects;
+                resp.types = cached.types;
+                resp.objectCount = s.objectCount;
+                resp.fromCache = true;
+                return ok(resp);
+            }
 
-                if (!t.trim().isEmpty()) {
-                    String tt = t.trim();
-                    typeSet.add(tt);
+            PyObject env = env(s);
+            if (recover) {
+                try {
+                    resp.recovered = replayJournal(s);
+                } catch (Throwable t) {
+                    // The journal stays on disk as it is until the user retries or discards it
+                    Log.e(TAG, "journal replay failed: " + t);
+                    resp.recoveryError = msgOf(t);
+                    env = env(s);
                 }
             }
 
-            OpenBundleResult resp = new OpenBundleResult();
-            resp.sessionId = sessionId;
-            resp.archives = archives;
-            resp.objects = outObjects;
-            resp.types = new ArrayList<>(typeSet);
+            resp.archives = archiveNames(env);
+            resp.objects = new ArrayList<>();
+            resp.types = new ArrayList<>();
+            resp.objectCount = s.objectCount;
 
             return ok(resp);
 
         } catch (Throwable t) {
-            Log.e(TAG, "openBundle failed: " + t);
+            Log.e(TAG, "openSession failed: " + t);
+            return fail(msgOf(t), androidTrace(t));
+        }
+    }
+
+    /**
+     * Stores a fully listed bundle in the index cache so the next open skips the scan.
+     */
+    public void cacheIndex(String localPath, @NonNull OpenBundleResult result) {
+        if (result.fromCache || result.objects == null) {
+            return;
+        }
+        indexCache.write(new File(localPath),
+                result.archives != null ? result.archives : Collections.emptyList(),
+                result.types != null ? result.types : Collections.emptyList(),
+                result.objects);
+    }
+
+    public ApiResult<ObjectPage> listObjects(String sessionId, int offset, int limit) {
+        try {
+            SessionManager.Session s = sessionManager.require(sessionId);
+            env(s);
+
+            // One crossing per page instead of several per object
+            ObjectIndexReader index = ObjectIndexReader.read(
+                    s.indexer.callAttr("page", offset, limit));
+
+            ObjectPage page = new ObjectPage();
+            page.sessionId = sessionId;
+            page.offset = offset;
+            page.total = s.objectCount;
+            page.objects = index.objects;
+            page.types = index.types;
+            return ok(page);
+        } catch (Throwable t) {
+            Log.e(TAG, "listObjects failed: " + t);
+            return fail(msgOf(t), androidTrace(t));
+        }
+    }
+
+    /**
+     * Resolves names the listing left as placeholders; may parse the objects, so callers only
+     * ask for rows that are actually on screen.
+     */
+    public ApiResult<List<String>> resolveNames(String sessionId, int[] indices) {
+        try {
+            SessionManager.Session s = sessionManager.require(sessionId);
+            env(s);
+            String joined = s.indexer.callAttr("resolve_names", (Object) indices).toString();
+            List<String> names = new ArrayList<>(indices.length);
+            Collections.addAll(names, joined.split("\0", -1));
+            return ok(names.size() == indices.length ? names : Collections.emptyList());
+        } catch (Throwable t) {
             return fail(msgOf(t), androidTrace(t));
         }
     }
@@ -130,7 +239,7 @@ public final class UnityPyBridge {
             if (sessionId == null || sessionId.isEmpty()) {
                 return fail("Invalid sessionId", null);
             }
-            sessionManager.remove(sessionId);
+            closeJournal(sessionManager.remove(sessionId));
             return ok(null);
         } catch (Throwable t) {
             Log.d(TAG, "closeBundle failed: " + t);
@@ -138,40 +247,71 @@ public final class UnityPyBridge {
         }
     }
 
-    public ApiResult<Boolean> saveBundle(String sessionId, String outPath) {
+    /**
+     * Saves the session's bundle to {@code outPath}. The session stays open on the same live
+     * environment; a save over its own file reports the rows its edits changed.
+     */
+    public ApiResult<SaveBundleResult> saveBundle(String sessionId, String outPath,
+                                                  SaveCompression compression) {
         File out = new File(outPath);
         File tmp = new File(out.getParentFile(), out.getName() + ".tmp");
         try {
             SessionManager.Session s = sessionManager.require(sessionId);
-            PyObject env = s.env;
+            PyObject env = env(s);
 
-            // data = env.file.save()
             PyObject envFile = env.get("file");
-            if (envFile != null && !envFile.isEmpty()) {
-                byte[] bytes = pyBytes(envFile.callAttr("save"));
-                writeFile(tmp, bytes);
-                s.dirty = false;
-
-                SaveBundleResult r = new SaveBundleResult();
-                r.path = tmp.getAbsolutePath();
-                r.bytes = bytes.length;
-
-                if (out.exists()) {
-                    //noinspection ResultOfMethodCallIgnored
-                    out.delete();
-                    return ok(tmp.renameTo(out));
-                }
+            if (envFile == null || envFile.isEmpty()) {
+                return fail("save_bundle not supported (env.file missing)", null);
             }
-            if (out.exists()) {
-                //noinspection ResultOfMethodCallIgnored
-                out.delete();
+            ensureParent(tmp);
+            // Python writes the bundle block by block, copying files not edited since localPath
+            // was written straight from it, so it never exists as one buffer on either side
+            File source = new File(s.localPath);
+            long written;
+            try (ParcelFileDescriptor pfd = ParcelFileDescriptor.open(tmp,
+                    ParcelFileDescriptor.MODE_WRITE_ONLY
+                            | ParcelFileDescriptor.MODE_CREATE
+                            | ParcelFileDescriptor.MODE_TRUNCATE)) {
+                written = bundles.callAttr("save", envFile, pfd.getFd(),
+                        source.isFile() ? source.getAbsolutePath() : null,
+                        s.dirtyFiles.toArray(new String[0]), compression.key()).toLong();
+                pfd.getFileDescriptor().sync();
             }
-            return fail("save_bundle not supported (env.file missing)", null);
-        } catch (Throwable t) {
-            if (out.exists()) {
-                //noinspection ResultOfMethodCallIgnored
-                out.delete();
+            // A single rename over the old file; a crash leaves one bundle or the other
+            Files.move(tmp.toPath(), out.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            SaveBundleResult r = new SaveBundleResult();
+            r.path = out.getAbsolutePath();
+            r.bytes = written;
+            r.changed = Collections.emptyList();
+            if (r.path.equals(s.localPath)) {
+                // localPath now matches what is in memory
+                s.dirtyFiles.clear();
+                r.changed = changedRows(s);
+                if (s.journal != null) {
+                    try {
+                        s.journal.markSaved(out);
+                    } catch (IOException e) {
+                        Log.d(TAG, "journal save mark failed: " + e);
+                    }
+                }
             }
+            s.dirty = false;
+            return ok(r);
+        } catch (Throwable t) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            return fail(msgOf(t), androidTrace(t));
+        }
+    }
+
+    /**
+     * The compression the bundle file at {@code path} was written with;
+     * {@link SaveCompression#ORIGINAL} when it cannot be told.
+     */
+    public ApiResult<SaveCompression> getBundleCompression(String path) {
+        try {
+            return ok(SaveCompression.fromKey(bundles.callAttr("compression", path).toString()));
+        } catch (Throwable t) {
             return fail(msgOf(t), androidTrace(t));
         }
     }
@@ -198,18 +338,22 @@ public final class UnityPyBridge {
         try {
             SessionManager.Session s = sessionManager.get(sessionId);
             assert s != null;
-            PyObject obj = getObject(s.env, idx);
+            PyObject obj = getObject(s, idx);
 
             String type = tname(obj);
             Log.d(TAG, "exportObject: " + type);
-            byte[] data = getObjectData(obj);
-            if (data.length == 0) {
+            // Python writes into the descriptor itself, so the payload never crosses into Java
+            long written;
+            try (ParcelFileDescriptor pfd = DocumentUtil.openFileDescriptor(context, dest)) {
+                written = exporter.callAttr("write_object", obj, type, pfd.getFd()).toLong();
+            }
+            if (written < 0) {
                 return fail("export_object not supported for type: " + type, null);
             }
-            DocumentUtil.writeBytesToUri(context, dest, data);
             ExportFileResult r = new ExportFileResult();
             r.idx = idx;
             r.type = type;
+            r.bytes = written;
             return ok(r);
 
         } catch (Throwable t) {
@@ -217,11 +361,163 @@ public final class UnityPyBridge {
         }
     }
 
+    public ApiResult<List<String>> exportFileNames(String sessionId, int[] indices) {
+        try {
+            SessionManager.Session s = sessionManager.get(sessionId);
+            assert s != null;
+            List<String> names = new ArrayList<>(indices.length);
+            for (int idx : indices) {
+                PyObject obj = getObject(s, idx);
+                String ext = getExtension(s, obj, tname(obj));
+                String base = exportBaseName(obj, idx);
+                names.add(ext.isEmpty() ? base : base + "." + ext);
+            }
+            return ok(names);
+        } catch (Throwable t) {
+            return fail(msgOf(t), androidTrace(t));
+        }
+    }
+
+    /**
+     * Like {@link #getObjectData(PyObject)}, except that textures are returned as RGBA pixels
+     * for the caller to encode.
+     */
+    public ApiResult<ExportPayload> extractForExport(String sessionId, int idx) {
+        try {
+            SessionManager.Session s = sessionManager.get(sessionId);
+            assert s != null;
+            PyObject obj = getObject(s, idx);
+
+            ExportPayload p = new ExportPayload();
+            p.idx = idx;
+            p.type = tname(obj);
+            if ("Texture2D".equals(p.type)) {
+                p.pixels = texturePixels(obj, 0, false);
+            } else {
+                p.data = getObjectData(obj);
+                if (p.data.length == 0) {
+                    return fail("export_object not supported for type: " + p.type, null);
+                }
+            }
+            return ok(p);
+        } catch (Throwable t) {
+            return fail(msgOf(t), androidTrace(t));
+        }
+    }
+
+    /**
+     * Decoded pixels of a texture for display at up to {@code maxSize} pixels (0 for full
+     * size), premultiplied as Bitmap expects.
+     */
+    public ApiResult<TexturePixels> getTexturePixels(String sessionId, int idx, int maxSize) {
+        try {
+            SessionManager.Session s = sessionManager.get(sessionId);
+            assert s != null;
+            return ok(texturePixels(getObject(s, idx), maxSize, true));
+        } catch (Throwable t) {
+            return fail(msgOf(t), androidTrace(t));
+        }
+    }
+
+    /**
+     * Premultiplied pixels of a Texture2D or Sprite scaled to fit {@code maxSize} square.
+     */
+    public ApiResult<TexturePixels> getThumbnail(String sessionId, int idx, int maxSize) {
+        try {
+            SessionManager.Session s = sessionManager.get(sessionId);
+            assert s != null;
+            PyObject r = textures.callAttr("thumbnail", getObject(s, idx), maxSize);
+            if (r == null || r.isEmpty()) {
+                return fail("No image", null);
+            }
+            return ok(toPixels(r, true));
+        } catch (Throwable t) {
+            return fail(msgOf(t), androidTrace(t));
+        }
+    }
+
+    /**
+     * Opens a Texture2D for reads of at most {@code tileSize} square at a time; fails if its
+     * format cannot be read by region.
+     */
+    public ApiResult<TileSourceInfo> openTileSource(String sessionId, int idx, int tileSize) {
+        try {
+            SessionManager.Session s = sessionManager.get(sessionId);
+            assert s != null;
+            PyObject src = textures.callAttr("TileSource", getObject(s, idx), tileSize);
+
+            TileSourceInfo info = new TileSourceInfo();
+            info.token = uuid12();
+            info.width = src.get("width").toInt();
+            info.height = src.get("height").toInt();
+            info.levelCount = src.get("level_count").toInt();
+            tileSources.put(info.token, src);
+            return ok(info);
+        } catch (Throwable t) {
+            return fail(msgOf(t), androidTrace(t));
+        }
+    }
+
+    /**
+     * Premultiplied pixels of a rectangle of mip {@code level}, in that level's coordinates.
+     */
+    public ApiResult<TexturePixels> readTile(String token, int level, int x, int y, int w, int h) {
+        try {
+            PyObject src = tileSources.get(token);
+            if (src == null) {
+                return fail("Tile source is closed", null);
+            }
+            return ok(toPixels(src.callAttr("tile", level, x, y, w, h), true));
+        } catch (Throwable t) {
+            return fail(msgOf(t), androidTrace(t));
+        }
+    }
+
+    public ApiResult<Void> closeTileSource(String token) {
+        PyObject src = tileSources.remove(token);
+        if (src != null) {
+            src.close();
+        }
+        return ok(null);
+    }
+
+    /**
+     * Writes a Mesh for the 3D preview into {@code dir}: binary glTF when the native exporter
+     * can read its buffers, OBJ otherwise. Returns the path of the written file.
+     */
+    public ApiResult<String> writeMeshPreview(String sessionId, int idx, File dir) {
+        try {
+            SessionManager.Session s = sessionManager.get(sessionId);
+            assert s != null;
+            PyObject obj = getObject(s, idx);
+
+            File tmp = new File(dir, "preview.mesh");
+            String ext;
+            try (ParcelFileDescriptor pfd = ParcelFileDescriptor.open(tmp,
+                    ParcelFileDescriptor.MODE_WRITE_ONLY
+                            | ParcelFileDescriptor.MODE_CREATE
+                            | ParcelFileDescriptor.MODE_TRUNCATE)) {
+                ext = meshes.callAttr("write_preview", obj, pfd.getFd()).toString();
+            }
+            // f3d picks its reader by extension
+            File out = new File(dir, "preview." + ext);
+            if (!tmp.renameTo(out)) {
+                //noinspection ResultOfMethodCallIgnored
+                tmp.delete();
+                return fail("Could not write " + out, null);
+            }
+            return ok(out.getAbsolutePath());
+        } catch (Throwable t) {
+            return fail(msgOf(t), androidTrace(t));
+        }
+    }
+
     public ApiResult<Void> importObject(String sessionId, int idx, Uri uri) {
         try {
             SessionManager.Session s = sessionManager.get(sessionId);
             assert s != null;
-            PyObject obj = getObject(s.env, idx);
+            PyObject obj = getObject(s, idx);
+            File before = snapshot(s, obj);
 
             byte[] dataBytes = DocumentUtil.readBytesFromUri(context, uri);
 
@@ -232,7 +528,7 @@ public final class UnityPyBridge {
                 PyObject img = pilImage.callAttr("open", bio);
                 tex.put("image", img);
                 tex.callAttr("save");
-                s.dirty = true;
+                commitEdit(s, idx, obj, before, EditKind.TEXTURE);
                 return ok(null);
             }
 
@@ -243,7 +539,7 @@ public final class UnityPyBridge {
                 txt.put("m_Script", text);
                 txt.callAttr("save");
 
-                s.dirty = true;
+                commitEdit(s, idx, obj, before, EditKind.TEXT);
                 return ok(null);
             }
 
@@ -260,7 +556,7 @@ public final class UnityPyBridge {
 
                 PyObject pyTree = json.callAttr("loads", jsonText);
                 saveTypeTree(obj, pyTree);
-                s.dirty = true;
+                commitEdit(s, idx, obj, before, EditKind.TYPETREE);
                 return ok(null);
             } catch (Throwable t2) {
                 return fail(msgOf(t2), androidTrace(t2));
@@ -274,14 +570,15 @@ public final class UnityPyBridge {
         try {
             SessionManager.Session s = sessionManager.get(sessionId);
             assert s != null;
-            PyObject obj = getObject(s.env, idx);
+            PyObject obj = getObject(s, idx);
+            File before = snapshot(s, obj);
             String t = tname(obj);
             if ("TextAsset".equals(t)) {
                 PyObject txt = obj.callAttr("parse_as_object");
                 String text = new String(data, StandardCharsets.UTF_8);
                 txt.put("m_Script", text);
                 txt.callAttr("save");
-                s.dirty = true;
+                commitEdit(s, idx, obj, before, EditKind.TEXT);
                 return ok(null);
             }
             if ("Mesh".equals(t)) {
@@ -294,7 +591,7 @@ public final class UnityPyBridge {
                 PyObject img = pilImage.callAttr("open", bio);
                 tex.put("image", img);
                 tex.callAttr("save");
-                s.dirty = true;
+                commitEdit(s, idx, obj, before, EditKind.TEXTURE);
                 return ok(null);
             }
             String jsonText = new String(data, StandardCharsets.UTF_8);
@@ -305,7 +602,91 @@ public final class UnityPyBridge {
 
             PyObject pyTree = json.callAttr("loads", jsonText);
             saveTypeTree(obj, pyTree);
-            s.dirty = true;
+            commitEdit(s, idx, obj, before, EditKind.TYPETREE);
+            return ok(null);
+        } catch (Throwable t) {
+            return fail(msgOf(t), androidTrace(t));
+        }
+    }
+
+    /**
+     * Writes the editable form of an object (TextAsset text or typetree JSON) into
+     * {@code dest} and returns its length; 0 when the object has none.
+     */
+    public ApiResult<Long> writeObjectData(String sessionId, int idx, File dest) {
+        try {
+            SessionManager.Session s = sessionManager.get(sessionId);
+            assert s != null;
+            PyObject obj = getObject(s, idx);
+            long written;
+            try (ParcelFileDescriptor pfd = ParcelFileDescriptor.open(dest,
+                    ParcelFileDescriptor.MODE_WRITE_ONLY
+                            | ParcelFileDescriptor.MODE_CREATE
+                            | ParcelFileDescriptor.MODE_TRUNCATE)) {
+                written = exporter.callAttr("write_object", obj, tname(obj), pfd.getFd()).toLong();
+            }
+            return ok(Math.max(0L, written));
+        } catch (Throwable t) {
+            return fail(msgOf(t), androidTrace(t));
+        }
+    }
+
+    /**
+     * Like {@link #setObjectData(String, int, byte[])}, but Python reads the edited data from
+     * {@code src} itself, so large documents never pass through Java memory.
+     */
+    public ApiResult<Void> setObjectDataFromFile(String sessionId, int idx, File src) {
+        try {
+            SessionManager.Session s = sessionManager.get(sessionId);
+            assert s != null;
+            PyObject obj = getObject(s, idx);
+            File before = snapshot(s, obj);
+            String t = tname(obj);
+            String path = src.getAbsolutePath();
+            if ("TextAsset".equals(t)) {
+                PyObject txt = obj.callAttr("parse_as_object");
+                txt.put("m_Script", editor.callAttr("read_text", path));
+                txt.callAttr("save");
+                commitEdit(s, idx, obj, before, EditKind.TEXT);
+                return ok(null);
+            }
+            if ("Mesh".equals(t) || "Texture2D".equals(t)) {
+                return fail("Editing as text is not supported for type: " + t, null);
+            }
+            saveTypeTree(obj, editor.callAttr("load_tree", path));
+            commitEdit(s, idx, obj, before, EditKind.TYPETREE);
+            return ok(null);
+        } catch (Throwable t) {
+            return fail(msgOf(t), androidTrace(t));
+        }
+    }
+
+    /**
+     * Reverts the session's last journaled edit that is not undone yet.
+     */
+    public ApiResult<EditStepResult> undoEdit(String sessionId) {
+        return stepEdit(sessionId, true);
+    }
+
+    /**
+     * Applies again the edit the last undo reverted.
+     */
+    public ApiResult<EditStepResult> redoEdit(String sessionId) {
+        return stepEdit(sessionId, false);
+    }
+
+    /**
+     * Drops the journal of a session whose recovery failed, with every edit it held, and
+     * journals the session's edits from the file as it is.
+     */
+    public ApiResult<Void> discardJournal(String sessionId) {
+        try {
+            SessionManager.Session s = sessionManager.require(sessionId);
+            closeJournal(s);
+            File bundle = new File(s.localPath);
+            EditJournal journal = EditJournal.open(journalRoot, bundle);
+            journal.discard(bundle);
+            s.journal = journal;
             return ok(null);
         } catch (Throwable t) {
             return fail(msgOf(t), androidTrace(t));
@@ -316,7 +697,7 @@ public final class UnityPyBridge {
         try {
             SessionManager.Session s = sessionManager.get(sessionId);
             assert s != null;
-            PyObject obj = getObject(s.env, idx);
+            PyObject obj = getObject(s, idx);
             ObjectData data = new ObjectData();
             data.setSessionId(sessionId);
             data.setIdx(idx);
@@ -334,11 +715,11 @@ public final class UnityPyBridge {
         try {
             SessionManager.Session s = sessionManager.get(sessionId);
             assert s != null;
-            PyObject obj = getObject(s.env, idx);
+            PyObject obj = getObject(s, idx);
 
             String t = tname(obj);
             String name = exportBaseName(obj, idx);
-            String ext = getExtension(obj, t);
+            String ext = getExtension(s, obj, t);
 
             Map<String, Object> info = new HashMap<>();
             info.put("type", t);
@@ -355,9 +736,43 @@ public final class UnityPyBridge {
     // Internal helpers
     // ------------------------------------------------------------
 
-    private PyObject getObject(@NonNull PyObject env, int idx) {
-        PyObject objects = env.get("objects");
-        List<PyObject> list = (objects != null) ? objects.asList() : Collections.emptyList();
+    /**
+     * Returns the session's UnityPy environment, loading it on first use for sessions that
+     * were opened from the index cache.
+     */
+    @NonNull
+    private PyObject env(@NonNull SessionManager.Session s) {
+        if (s.env == null) {
+            s.env = unitypy.callAttr("load", s.localPath);
+            // The indexer shares the handle table instead of walking env.objects again
+            s.objectCount = handles(s).size();
+            s.containers = containers.callAttr("ContainerMap", s.objects);
+            s.containerMap = ContainerMap.read(s.containers);
+            s.indexer = indexer.callAttr("ObjectIndexer", s.objects, s.containers);
+            Log.d(TAG, "container map built: " + s.containerMap.size() + " entries");
+        }
+        return s.env;
+    }
+
+    /**
+     * Returns the session's object handle table, resolving {@code env.objects} only when the
+     * table is missing (new session, or invalidated by a save).
+     */
+    @NonNull
+    private List<PyObject> handles(@NonNull SessionManager.Session s) {
+        if (s.handles == null) {
+            PyObject objects = env(s).get("objects");
+            s.objects = objects;
+            s.handles = (objects != null) ? objects.asList() : Collections.emptyList();
+            sessionManager.recordHandleTableBuild(s);
+            Log.d(TAG, "handle table built: " + s.handles.size() + " objects, session builds="
+                    + s.handleTableBuilds + ", total=" + sessionManager.getHandleTableBuilds());
+        }
+        return s.handles;
+    }
+
+    private PyObject getObject(@NonNull SessionManager.Session s, int idx) {
+        List<PyObject> list = handles(s);
         if (idx < 0 || idx >= list.size()) {
             throw new IndexOutOfBoundsException("Index out of range: " + idx + " / " + list.size());
         }
@@ -392,11 +807,13 @@ public final class UnityPyBridge {
     }
 
     @NonNull
-    private String getExtension(PyObject obj, @NonNull String type) {
+    private String getExtension(@NonNull SessionManager.Session s, PyObject obj,
+                                @NonNull String type) {
         if ("TextAsset".equals(type)) {
-            String name = tryGetContainer(obj);
+            long pathId = safeLong(getAttr(obj, "path_id"), 0);
+            String name = container(s, obj, pathId);
             if (name == null) {
-                name = "textasset_" + safeLong(getAttr(obj, "path_id"), 0);
+                name = "textasset_" + pathId;
             }
             if (!name.endsWith(".txt") && !name.endsWith(".bytes") && !name.endsWith(
                     ".json") && !name.endsWith(".lua")) {
@@ -413,33 +830,17 @@ public final class UnityPyBridge {
     }
 
     @Nullable
-    private Long tryGetSize(PyObject obj) {
-        String[] attrs = {"byte_size", "size", "data_size", "m_Size"};
-        for (String a : attrs) {
-            try {
-                PyObject v = obj.get(a);
-                if (v != null && !v.isEmpty()) {
-                    long n = v.toLong();
-                    if (n >= 0) {
-                        return n;
-                    }
-                }
-            } catch (Throwable ignored) {
-            }
+    private String container(@NonNull SessionManager.Session s, PyObject obj, long pathId) {
+        env(s);
+        String name = s.containerMap != null ? s.containerMap.get(pathId) : null;
+        if (name != null || (s.containerMap != null && s.containerMap.isComplete())) {
+            return name;
         }
-        return null;
-    }
-
-    @Nullable
-    private String tryGetContainer(PyObject obj) {
-        try {
-            PyObject c = obj.get("container");
-            if (c != null && !c.isEmpty()) {
-                return c.toString();
-            }
-        } catch (Throwable ignored) {
+        if (s.containers == null) {
+            return null;
         }
-        return null;
+        PyObject c = s.containers.callAttr("get", obj);
+        return c != null ? c.toString() : null;
     }
 
     @NonNull
@@ -611,11 +1012,8 @@ public final class UnityPyBridge {
     }
 
     private byte[] exportMesh(@NonNull PyObject obj) {
-        PyObject mesh = obj.callAttr("parse_as_object");
-        PyObject txt = mesh.callAttr("export");
-        String txtStr = (txt == null || txt.isEmpty()) ? "" : txt.toString();
-
-        return txtStr.getBytes(StandardCharsets.UTF_8);
+        // Written natively from the raw vertex/index buffers when the mesh allows it
+        return pyBytes(meshes.callAttr("obj_bytes", obj));
     }
 
     private byte[] exportTexture2D(@NonNull PyObject obj) {
@@ -629,23 +1027,39 @@ public final class UnityPyBridge {
         return (data != null && !data.isEmpty()) ? pyBytes(data) : new byte[0];
     }
 
-    private byte[] exportTypeTreeJson(PyObject obj) {
-        try {
-            PyObject d = obj.callAttr("parse_as_dict");
-
-            String jsonText = json.callAttr(
-                    "dumps",
-                    d,
-                    new Kwarg("ensure_ascii", false),
-                    new Kwarg("indent", 2)
-            ).toString();
-            return jsonText.getBytes(StandardCharsets.UTF_8);
-        } catch (Throwable ignored) {
+    /**
+     * Pixels of the smallest mip that covers {@code maxSize}, scaled to fit it; the full image
+     * when it is 0.
+     */
+    @NonNull
+    private TexturePixels texturePixels(@NonNull PyObject obj, int maxSize, boolean premultiplied) {
+        PyObject r = textures.callAttr("pixels", obj, maxSize, premultiplied);
+        if (r == null || r.isEmpty()) {
+            throw new IllegalStateException("Texture has no image");
         }
+        return toPixels(r, premultiplied);
+    }
 
-        PyObject parsed = obj.callAttr("parse_as_object");
-        PyObject raw = parsed.getOrDefault("get_raw_data", null);
-        return (raw != null && !raw.isEmpty()) ? pyBytes(raw) : new byte[0];
+    // (width, height, mip, bytes) tuples from uabe_bridge.textures
+    @NonNull
+    private TexturePixels toPixels(@NonNull PyObject tuple, boolean premultiplied) {
+        List<PyObject> parts = tuple.asList();
+        TexturePixels px = new TexturePixels();
+        px.width = parts.get(0).toInt();
+        px.height = parts.get(1).toInt();
+        px.mip = parts.get(2).toInt();
+        px.stride = px.width * 4;
+        px.premultiplied = premultiplied;
+        // Chaquopy turns bytes into a Java array in one copy and wrap() adds none. A direct
+        // buffer could only be filled from that array, and copyPixelsFromBuffer reads either.
+        px.pixels = ByteBuffer.wrap(pyBytes(parts.get(3)));
+        return px;
+    }
+
+    private byte[] exportTypeTreeJson(PyObject obj) {
+        // Streamed to UTF-8 in Python, falling back to raw data; no Java String in between
+        PyObject data = exporter.callAttr("typetree_bytes", obj);
+        return (data != null && !data.isEmpty()) ? pyBytes(data) : new byte[0];
     }
 
     @NonNull
@@ -695,11 +1109,148 @@ public final class UnityPyBridge {
         }
     }
 
-    private void writeFile(File out, byte[] data) throws Exception {
-        ensureParent(out);
-        try (FileOutputStream fos = new FileOutputStream(out)) {
-            fos.write(data);
+    /**
+     * Records an edit of {@code obj}, and which bundle files the next save has to serialize
+     * again because of it.
+     */
+    private void markDirty(@NonNull SessionManager.Session s, int idx, @NonNull PyObject obj) {
+        s.dirty = true;
+        s.editedObjects.add(idx);
+        for (PyObject name : bundles.callAttr("owners", obj).asList()) {
+            s.dirtyFiles.add(name.toString());
+        }
+    }
+
+    @Nullable
+    private EditJournal openJournal(@NonNull File bundle) {
+        try {
+            return EditJournal.open(journalRoot, bundle);
+        } catch (Throwable t) {
+            Log.d(TAG, "edit journal unavailable: " + t);
+            return null;
+        }
+    }
+
+    private void closeJournal(@Nullable SessionManager.Session s) {
+        if (s == null || s.journal == null) {
+            return;
+        }
+        try {
+            s.journal.close();
+        } catch (IOException ignored) {
+        }
+        s.journal = null;
+    }
+
+    /**
+     * Writes the object's data as it is before an edit to the journal; null when the edit
+     * goes unjournaled.
+     */
+    @Nullable
+    private File snapshot(@NonNull SessionManager.Session s, @NonNull PyObject obj) {
+        if (s.journal == null) {
+            return null;
+        }
+        try {
+            File before = s.journal.nextBefore();
+            editor.callAttr("dump_raw", obj, before.getAbsolutePath());
+            return before;
+        } catch (Throwable t) {
+            Log.d(TAG, "journal snapshot failed: " + t);
+            return null;
+        }
+    }
+
+    /**
+     * Marks an applied edit dirty and appends it to the journal, after its data from before
+     * ({@code before}, from {@link #snapshot}) and after it are on disk.
+     */
+    private void commitEdit(@NonNull SessionManager.Session s, int idx, @NonNull PyObject obj,
+                            @Nullable File before, @NonNull EditKind kind) {
+        markDirty(s, idx, obj);
+        if (s.journal == null || before == null) {
+            return;
+        }
+        try {
+            editor.callAttr("dump_raw", obj, s.journal.nextAfter().getAbsolutePath());
+            s.journal.append(idx, kind);
+        } catch (Throwable t) {
+            Log.d(TAG, "journal append failed: " + t);
+        }
+    }
+
+    /**
+     * Brings the freshly loaded bundle up to the journal's position and returns the objects
+     * that changed. When a step cannot be replayed, what was applied is dropped with the loaded
+     * bundle and the journal is closed but kept, and the error is rethrown.
+     */
+    @NonNull
+    private int[] replayJournal(@NonNull SessionManager.Session s) throws Throwable {
+        EditJournal journal = Objects.requireNonNull(s.journal);
+        LinkedHashSet<Integer> touched = new LinkedHashSet<>();
+        try {
+            for (EditJournal.Step step : journal.pending()) {
+                PyObject obj = getObject(s, step.index);
+                editor.callAttr("load_raw", obj, step.payload.getAbsolutePath());
+                markDirty(s, step.index, obj);
+                touched.add(step.index);
+            }
+        } catch (Throwable t) {
+            s.env = null;
+            s.invalidateHandles();
+            s.dirty = false;
+            s.dirtyFiles.clear();
+            s.editedObjects.clear();
+            // Edits made now are not journaled, so they cannot land on top of the unreplayed ones
+            closeJournal(s);
+            throw t;
+        }
+        int[] out = new int[touched.size()];
+        int i = 0;
+        for (int idx : touched) out[i++] = idx;
+        return out;
+    }
+
+    private ApiResult<EditStepResult> stepEdit(String sessionId, boolean undo) {
+        try {
+            SessionManager.Session s = sessionManager.require(sessionId);
+            EditJournal journal = s.journal;
+            EditStepResult r = new EditStepResult();
+            EditJournal.Step step = journal == null ? null
+                    : undo ? journal.undoStep() : journal.redoStep();
+            if (step != null) {
+                PyObject obj = getObject(s, step.index);
+                editor.callAttr("load_raw", obj, step.payload.getAbsolutePath());
+                if (undo) {
+                    journal.undone();
+                } else {
+                    journal.redone();
+                }
+                markDirty(s, step.index, obj);
+                r.item = ObjectIndexReader.read(
+                        s.indexer.callAttr("rows", (Object) new int[]{step.index})).objects.get(0);
+            }
+            r.canUndo = journal != null && journal.undoStep() != null;
+            r.canRedo = journal != null && journal.redoStep() != null;
+            return ok(r);
+        } catch (Throwable t) {
+            return fail(msgOf(t), androidTrace(t));
+        }
+    }
+
+    /**
+     * Re-reads the rows of the objects edited since the last save and forgets them.
+     */
+    @NonNull
+    private List<ObjectItem> changedRows(@NonNull SessionManager.Session s) {
+        if (s.editedObjects.isEmpty() || s.indexer == null) {
+            return Collections.emptyList();
         }
+        int[] indices = new int[s.editedObjects.size()];
+        int i = 0;
+        for (int idx : s.editedObjects) indices[i++] = idx;
+        s.editedObjects.clear();
+        return ObjectIndexReader.read(s.indexer.callAttr("rows", (Object) indices)).objects;
     }
 
     private void ensureParent(@NonNull File out) {
@@ -0,0 +1,13 @@
+package com.elfilibustero.uabe.python.repo;
+
+import com.elfilibustero.uabe.model.ObjectItem;
+
+public final class EditStepResult {
+    /**
+     * Row of the object the undo or redo changed, as it is now; null when there was nothing
+     * to step over.
+     */
+    public ObjectItem item;
+    public boolean canUndo;
+    public boolean canRedo;
+}
@@ -0,0 +1,18 @@
+package com.elfilibustero.uabe.python.repo;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Contents of one object for a batch export. Textures come back as raw pixels so the PNG
+ * encoding can run off the Python thread; everything else is already encoded.
+ */
+public final class ExportPayload {
+    public int idx;
+    public String type;
+    // Encoded file contents; null when pixels is set
+    @Nullable
+    public byte[] data;
+    // Straight alpha, for an exact PNG round trip
+    @Nullable
+    public TexturePixels pixels;
+}
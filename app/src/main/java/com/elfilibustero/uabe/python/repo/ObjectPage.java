@@ -0,0 +1,13 @@
+package com.elfilibustero.uabe.python.repo;
+
+import com.elfilibustero.uabe.model.ObjectItem;
+
+import java.util.List;
+
+public final class ObjectPage {
+    public String sessionId;
+    public int offset;
+    public int total;
+    public List<ObjectItem> objects;
+    public List<String> types;
+}
@@ -10,4 +10,15 @@ public final class OpenBundleResult {
     public List<String> archives;
     public List<ObjectItem> objects;
     public List<String> types;
+    public int objectCount;
+    public boolean fromCache;
+    /**
+     * Objects whose journaled edits were replayed because the file was not saved after them.
+     */
+    public int[] recovered;
+    /**
+     * Why journaled edits could not be replayed; the bundle is then as the file holds it and
+     * the journal is kept until {@link UnityPyRepository#discardJournal} drops it.
+     */
+    public String recoveryError;
 }
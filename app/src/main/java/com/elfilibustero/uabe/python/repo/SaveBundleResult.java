@@ -1,6 +1,15 @@
 package com.elfilibustero.uabe.python.repo;
 
+import com.elfilibustero.uabe.model.ObjectItem;
+
+import java.util.List;
+
 public final class SaveBundleResult {
     public String path;
     public long bytes;
+    /**
+     * Rows of the objects edited since the last save over the session's own file, as they
+     * are now; empty for any other save.
+     */
+    public List<ObjectItem> changed;
 }
@@ -0,0 +1,37 @@
+package com.elfilibustero.uabe.python.repo;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decoded texture pixels: RGBA8888 rows, top row first, {@link #stride} bytes apart.
+ */
+public final class TexturePixels {
+    public int width;
+    public int height;
+    public int stride;
+    // Mip level the pixels were decoded from; 0 is full size
+    public int mip;
+    // Whether color is premultiplied by alpha, as Bitmap expects for drawing
+    public boolean premultiplied;
+    public ByteBuffer pixels;
+
+    /**
+     * Copies the pixels into a new ARGB_8888 bitmap with no intermediate encoding.
+     */
+    @NonNull
+    public Bitmap toBitmap() {
+        if (stride != width * 4) {
+            throw new IllegalStateException("Unexpected stride " + stride + " for width " + width);
+        }
+        Bitmap bmp = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        // Straight alpha stays straight so encoders write it back unchanged
+        bmp.setPremultiplied(premultiplied);
+        pixels.rewind();
+        bmp.copyPixelsFromBuffer(pixels);
+        return bmp;
+    }
+}
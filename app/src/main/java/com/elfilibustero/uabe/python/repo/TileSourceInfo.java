@@ -0,0 +1,12 @@
+package com.elfilibustero.uabe.python.repo;
+
+/**
+ * A texture opened for region reads; tiles are requested by {@link #token}.
+ */
+public final class TileSourceInfo {
+    public String token;
+    public int width;
+    public int height;
+    // Stored mips plus shrunk levels down to a single tile
+    public int levelCount;
+}
@@ -2,28 +2,114 @@ package com.elfilibustero.uabe.python.repo;
 
 import android.net.Uri;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.elfilibustero.uabe.enums.SaveCompression;
 import com.elfilibustero.uabe.python.task.UnityTask;
 
+import java.io.File;
+import java.util.List;
 import java.util.Map;
 
 public interface UnityPyRepository {
 
+    interface ObjectPageListener {
+        /**
+         * Called on the main thread for every page of objects while a bundle is being scanned.
+         */
+        void onPage(@NonNull ObjectPage page);
+    }
+
     UnityTask<OpenBundleResult> openBundle(String localPath);
 
+    /**
+     * Opens a bundle and streams its objects page by page to {@code listener}. The returned
+     * task completes once every page has been delivered; its result carries all objects.
+     */
+    UnityTask<OpenBundleResult> openBundle(String localPath, @Nullable ObjectPageListener listener);
+
+    UnityTask<List<String>> resolveNames(String sessionId, int[] indices);
+
     UnityTask<Void> closeBundle(String sessionId);
 
-    UnityTask<Boolean> saveBundle(String sessionId, String outPath);
+    /**
+     * Saves without closing the session; resolves to the rows the saved edits changed.
+     */
+    UnityTask<SaveBundleResult> saveBundle(String sessionId, String outPath,
+                                           SaveCompression compression);
+
+    UnityTask<SaveCompression> getBundleCompression(String path);
 
     UnityTask<Void> setBundleDecryptionKey(String key);
 
     UnityTask<ExportFileResult> exportObject(String sessionId, int idx, Uri uri);
 
+    /**
+     * File names (with extension) the objects at {@code indices} export to, in the same order.
+     */
+    UnityTask<List<String>> exportFileNames(String sessionId, int[] indices);
+
+    UnityTask<ExportPayload> extractForExport(String sessionId, int idx);
+
     UnityTask<Void> importObject(String sessionId, int idx, Uri uri);
 
     UnityTask<ObjectData> getObjectData(String sessionId, int idx);
 
+    UnityTask<EditStepResult> undoEdit(String sessionId);
+
+    UnityTask<EditStepResult> redoEdit(String sessionId);
+
+    /**
+     * Drops the edit journal of a session whose recovery failed; see
+     * {@link OpenBundleResult#recoveryError}.
+     */
+    UnityTask<Void> discardJournal(String sessionId);
+
+    /**
+     * Decoded RGBA pixels of a Texture2D, ready for {@link TexturePixels#toBitmap()}, from the
+     * smallest mip level that still covers {@code maxSize} pixels and scaled down to fit it;
+     * 0 asks for full size.
+     */
+    UnityTask<TexturePixels> getTexturePixels(String sessionId, int idx, int maxSize);
+
+    /**
+     * Pixels of a Texture2D or Sprite scaled down to fit {@code maxSize} square.
+     */
+    UnityTask<TexturePixels> getThumbnail(String sessionId, int idx, int maxSize);
+
+    /**
+     * Opens a Texture2D for reading one tile of up to {@code tileSize} square at a time; close
+     * it with {@link #closeTileSource(String)}.
+     */
+    UnityTask<TileSourceInfo> openTileSource(String sessionId, int idx, int tileSize);
+
+    /**
+     * Pixels of the {@code w} x {@code h} rectangle at ({@code x}, {@code y}) of mip
+     * {@code level}, top-left origin, in that level's coordinates.
+     */
+    UnityTask<TexturePixels> readTile(String token, int level, int x, int y, int w, int h);
+
+    UnityTask<Void> closeTileSource(String token);
+
+    /**
+     * Writes a Mesh into {@code dir} in the fastest form the 3D preview reads and returns the
+     * file's path.
+     */
+    UnityTask<String> writeMeshPreview(String sessionId, int idx, File dir);
+
     UnityTask<Void> setObjectData(String sessionId, int idx, byte[] data);
 
+    /**
+     * Writes the editable text of an object into {@code dest}; resolves to its length in bytes.
+     */
+    UnityTask<Long> writeObjectData(String sessionId, int idx, File dest);
+
+    /**
+     * Replaces an object's data with the edited text in {@code src}.
+     */
+    UnityTask<Void> setObjectDataFromFile(String sessionId, int idx, File src);
+
     UnityTask<Map<String, Object>> getObjectInfo(String sessionId, int idx);
 
     void shutdown();
@@ -2,14 +2,21 @@ package com.elfilibustero.uabe.python.repo;
 
 import android.content.Context;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import com.elfilibustero.uabe.enums.SaveCompression;
 import com.elfilibustero.uabe.exceptions.UnityPyException;
 import com.elfilibustero.uabe.python.core.UnityPyBridge;
 import com.elfilibustero.uabe.python.task.UnityTask;
 import com.elfilibustero.uabe.python.task.UnityTaskSource;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -20,8 +27,13 @@ public final class UnityPyRepositoryImpl implements UnityPyRepository {
     public static final int ERR_NOT_OK = 1;
     public static final int ERR_THROWABLE = 2;
 
+    // Small first page so the first screen of rows shows up as soon as possible
+    private static final int FIRST_PAGE_SIZE = 256;
+    private static final int PAGE_SIZE = 2048;
+
     private final UnityPyBridge core;
     private final ExecutorService pyExecutor;
+    private final Handler main = new Handler(Looper.getMainLooper());
 
     public UnityPyRepositoryImpl(Context context) {
         this.core = new UnityPyBridge(context);
@@ -72,14 +84,109 @@ public final class UnityPyRepositoryImpl implements UnityPyRepository {
         return runApi(() -> core.openBundle(localPath));
     }
 
+    @Override
+    public UnityTask<OpenBundleResult> openBundle(String localPath,
+                                                  @Nullable ObjectPageListener listener) {
+        UnityTaskSource<OpenBundleResult> src = new UnityTaskSource<>();
+
+        runApi(() -> core.openSession(localPath))
+                .addOnSuccessListener(pyExecutor, result -> {
+                    if (result.fromCache) {
+                        deliverCached(src, result, listener);
+                        return;
+                    }
+                    result.objects = new ArrayList<>(result.objectCount);
+                    listPage(src, localPath, result, 0, FIRST_PAGE_SIZE, listener);
+                })
+                .addOnFailureListener(pyExecutor, src::setException);
+
+        return src.getTask();
+    }
+
+    /**
+     * Hands a cached listing to the listener as a single page; nothing was scanned.
+     */
+    private void deliverCached(@NonNull UnityTaskSource<OpenBundleResult> src,
+                               @NonNull OpenBundleResult result,
+                               @Nullable ObjectPageListener listener) {
+        if (listener != null) {
+            ObjectPage page = new ObjectPage();
+            page.sessionId = result.sessionId;
+            page.offset = 0;
+            page.total = result.objectCount;
+            page.objects = result.objects;
+            page.types = result.types;
+            main.post(() -> listener.onPage(page));
+        }
+        src.setResult(result);
+    }
+
+    /**
+     * Lists one page and queues the next one as a separate task, so object requests issued
+     * while a large bundle is still being scanned are not stuck behind the whole scan.
+     */
+    private void listPage(@NonNull UnityTaskSource<OpenBundleResult> src,
+                          @NonNull String localPath,
+                          @NonNull OpenBundleResult result,
+                          int offset,
+                          int limit,
+                          @Nullable ObjectPageListener listener) {
+        pyExecutor.execute(() -> {
+            try {
+                ApiResult<ObjectPage> r = core.listObjects(result.sessionId, offset, limit);
+                if (!r.ok || r.data == null) {
+                    src.setException(new UnityPyException(
+                            r.error != null ? r.error : "Operation failed",
+                            r.trace,
+                            ERR_NOT_OK
+                    ));
+                    return;
+                }
+
+                ObjectPage page = r.data;
+                result.objects.addAll(page.objects);
+                result.types = page.types;
+                if (listener != null) {
+                    main.post(() -> listener.onPage(page));
+                }
+
+                int next = offset + page.objects.size();
+                if (page.objects.isEmpty() || next >= result.objectCount) {
+                    core.cacheIndex(localPath, result);
+                    // Delivered after the last page because both go through the main looper
+                    src.setResult(result);
+                    return;
+                }
+                listPage(src, localPath, result, next, PAGE_SIZE, listener);
+            } catch (Throwable e) {
+                src.setException(new UnityPyException(
+                        e.getMessage() != null ? e.getMessage() : e.toString(),
+                        null,
+                        ERR_THROWABLE
+                ));
+            }
+        });
+    }
+
+    @Override
+    public UnityTask<List<String>> resolveNames(String sessionId, int[] indices) {
+        return runApi(() -> core.resolveNames(sessionId, indices));
+    }
+
     @Override
     public UnityTask<Void> closeBundle(String sessionId) {
         return runApi(() -> core.closeBundle(sessionId));
     }
 
     @Override
-    public UnityTask<Boolean> saveBundle(String sessionId, String outPath) {
-        return runApi(() -> core.saveBundle(sessionId, outPath));
+    public UnityTask<SaveBundleResult> saveBundle(String sessionId, String outPath,
+                                                  SaveCompression compression) {
+        return runApi(() -> core.saveBundle(sessionId, outPath, compression));
+    }
+
+    @Override
+    public UnityTask<SaveCompression> getBundleCompression(String path) {
+        return runApi(() -> core.getBundleCompression(path));
     }
 
     @Override
@@ -92,6 +199,16 @@ public final class UnityPyRepositoryImpl implements UnityPyRepository {
         return runApi(() -> core.exportObject(sessionId, idx, uri));
     }
 
+    @Override
+    public UnityTask<List<String>> exportFileNames(String sessionId, int[] indices) {
+        return runApi(() -> core.exportFileNames(sessionId, indices));
+    }
+
+    @Override
+    public UnityTask<ExportPayload> extractForExport(String sessionId, int idx) {
+        return runApi(() -> core.extractForExport(sessionId, idx));
+    }
+
     @Override
     public UnityTask<Void> importObject(String sessionId, int idx, Uri uri) {
         return runApi(() -> core.importObject(sessionId, idx, uri));
@@ -102,10 +219,65 @@ public final class UnityPyRepositoryImpl implements UnityPyRepository {
         return runApi(() -> core.getObjectData(sessionId, idx));
     }
 
+    @Override
+    public UnityTask<EditStepResult> undoEdit(String sessionId) {
+        return runApi(() -> core.undoEdit(sessionId));
+    }
+
+    @Override
+    public UnityTask<EditStepResult> redoEdit(String sessionId) {
+        return runApi(() -> core.redoEdit(sessionId));
+    }
+
+    @Override
+    public UnityTask<Void> discardJournal(String sessionId) {
+        return runApi(() -> core.discardJournal(sessionId));
+    }
+
+    @Override
+    public UnityTask<TexturePixels> getTexturePixels(String sessionId, int idx, int maxSize) {
+        return runApi(() -> core.getTexturePixels(sessionId, idx, maxSize));
+    }
+
+    @Override
+    public UnityTask<TexturePixels> getThumbnail(String sessionId, int idx, int maxSize) {
+        return runApi(() -> core.getThumbnail(sessionId, idx, maxSize));
+    }
+
+    @Override
+    public UnityTask<TileSourceInfo> openTileSource(String sessionId, int idx, int tileSize) {
+        return runApi(() -> core.openTileSource(sessionId, idx, tileSize));
+    }
+
+    @Override
+    public UnityTask<TexturePixels> readTile(String token, int level, int x, int y, int w, int h) {
+        return runApi(() -> core.readTile(token, level, x, y, w, h));
+    }
+
+    @Override
+    public UnityTask<Void> closeTileSource(String token) {
+        return runApi(() -> core.closeTileSource(token));
+    }
+
+    @Override
+    public UnityTask<String> writeMeshPreview(String sessionId, int idx, File dir) {
+        return runApi(() -> core.writeMeshPreview(sessionId, idx, dir));
+    }
+
     public UnityTask<Void> setObjectData(String sessionId, int idx, byte[] data) {
         return runApi(() -> core.setObjectData(sessionId, idx, data));
     }
 
+    @Override
+    public UnityTask<Long> writeObjectData(String sessionId, int idx, File dest) {
+        return runApi(() -> core.writeObjectData(sessionId, idx, dest));
+    }
+
+    @Override
+    public UnityTask<Void> setObjectDataFromFile(String sessionId, int idx, File src) {
+        return runApi(() -> core.setObjectDataFromFile(sessionId, idx, src));
+    }
+
     @Override
     public UnityTask<Map<String, Object>> getObjectInfo(String sessionId, int idx) {
         return runApi(() -> core.getObjectInfo(sessionId, idx));
@@ -0,0 +1,457 @@
+package com.elfilibustero.uabe.search;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.elfilibustero.uabe.enums.SortMode;
+import com.elfilibustero.uabe.model.ObjectTable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Filters and sorts the object listing on a background thread.
+ * <p>
+ * Only the newest request is ever delivered: a newer {@link #submit} makes older ones
+ * bail out at their next checkpoint. Work is reused across requests:
+ * <ul>
+ *     <li>lower-cased name keys are kept per row and only rebuilt for rows whose name
+ *     changed;</li>
+ *     <li>a query that refines the previous one (same filters, longer text) only rechecks
+ *     the previous matches plus rows added or renamed since;</li>
+ *     <li>each {@link SortMode} keeps a full row permutation, extended by merging when rows
+ *     are appended, so producing a sorted result is a linear walk;</li>
+ *     <li>once a listing is complete, {@link #buildIndex} builds a {@link TrigramIndex} on a
+ *     separate thread, and text queries then only verify the rows it returns.</li>
+ * </ul>
+ * Query text supports {@code ^prefix} and {@code *}/{@code ?} wildcards, see
+ * {@link QueryPattern}; it is matched against names, containers, types and, when numeric,
+ * indices and path ids.
+ */
+public final class ObjectFilterEngine {
+
+    private static final String TAG = "ObjectFilterEngine";
+
+    private static final int CHECK_INTERVAL = 4096;
+
+    public interface Listener {
+        void onResult(@NonNull ObjectTable.Columns columns, @NonNull int[] rows, int count);
+    }
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ObjectFilter");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ObjectIndexBuild");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final AtomicInteger generation = new AtomicInteger();
+    private final AtomicInteger indexGeneration = new AtomicInteger();
+
+    @Nullable
+    private volatile TrigramIndex index;
+
+    // ---- Worker-owned state ----
+    private int epoch = -1;
+
+    private String[] keySource = new String[0];
+    private String[] lowerNames = new String[0];
+    private String[] lowerContainers = new String[0];
+    private int keyCount;
+    private final BitSet renamed = new BitSet();
+
+    @Nullable
+    private ObjectQuery lastQuery;
+    @Nullable
+    private QueryPattern lastPattern;
+    @Nullable
+    private BitSet lastMatches;
+    private int lastCount;
+    private int lastSizeVersion;
+    private int lastModifiedVersion;
+
+    private final EnumMap<SortMode, Order> orders = new EnumMap<>(SortMode.class);
+
+    private static final class Order {
+        int[] rows = new int[0];
+        int count;
+        int version;
+    }
+
+    /**
+     * Filters and sorts {@code columns}; {@code listener} runs on the main thread, and only
+     * if no newer request was submitted meanwhile.
+     */
+    public void submit(@NonNull ObjectTable.Columns columns, @NonNull ObjectQuery query,
+                       @NonNull Listener listener) {
+        int gen = generation.incrementAndGet();
+        worker.execute(() -> {
+            if (gen != generation.get()) return;
+            try {
+                long start = SystemClock.elapsedRealtime();
+                int[] out = run(columns, query, gen);
+                int n = out.length;
+                Log.d(TAG, "filter: " + n + "/" + columns.size() + " rows in "
+                        + (SystemClock.elapsedRealtime() - start) + " ms");
+                main.post(() -> {
+                    if (gen == generation.get()) listener.onResult(columns, out, n);
+                });
+            } catch (CancellationException ignored) {
+                // superseded by a newer request
+            } catch (Throwable t) {
+                Log.e(TAG, "filter failed: " + t);
+            }
+        });
+    }
+
+    /**
+     * Builds the search index for {@code columns} in the background, replacing any earlier
+     * one. Rows appended or renamed afterwards are still searched, just without the index.
+     */
+    public void buildIndex(@NonNull ObjectTable.Columns columns) {
+        int gen = indexGeneration.incrementAndGet();
+        indexer.execute(() -> {
+            if (gen != indexGeneration.get()) return;
+            try {
+                TrigramIndex built = TrigramIndex.build(columns,
+                        () -> gen != indexGeneration.get());
+                if (built == null) return;
+                index = built;
+                Log.d(TAG, "index: " + built.count + " rows, " + built.trigramCount()
+                        + " trigrams, " + built.postingBytes() + " posting bytes, built in "
+                        + built.buildMillis + " ms");
+            } catch (Throwable t) {
+                Log.e(TAG, "index build failed: " + t);
+            }
+        });
+    }
+
+    /**
+     * Drops any request still queued or running.
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Cancels all work and forgets the index; used when the listing is replaced.
+     */
+    public void clear() {
+        cancel();
+        indexGeneration.incrementAndGet();
+        index = null;
+    }
+
+    public void shutdown() {
+        clear();
+        worker.shutdownNow();
+        indexer.shutdownNow();
+    }
+
+    // ---------------- Worker ----------------
+
+    @NonNull
+    private int[] run(@NonNull ObjectTable.Columns cols, @NonNull ObjectQuery q, int gen) {
+        if (cols.epoch != epoch) {
+            resetState(cols.epoch);
+        }
+        refreshKeys(cols, gen);
+
+        QueryPattern pattern = QueryPattern.parse(q.normalizedText());
+        BitSet matches = filter(cols, q, pattern, gen);
+
+        int[] order = order(cols, q.sortMode(), gen);
+        int[] out = new int[matches.cardinality()];
+        int k = 0;
+        for (int row : order) {
+            if (matches.get(row)) out[k++] = row;
+        }
+
+        lastQuery = q;
+        lastPattern = pattern;
+        lastMatches = matches;
+        lastCount = cols.size();
+        lastSizeVersion = cols.sizeVersion;
+        lastModifiedVersion = cols.modifiedVersion;
+        renamed.clear();
+        return out;
+    }
+
+    private void resetState(int newEpoch) {
+        epoch = newEpoch;
+        keySource = new String[0];
+        lowerNames = new String[0];
+        lowerContainers = new String[0];
+        keyCount = 0;
+        renamed.clear();
+        lastQuery = null;
+        lastPattern = null;
+        lastMatches = null;
+        lastCount = 0;
+        orders.clear();
+    }
+
+    private void refreshKeys(@NonNull ObjectTable.Columns cols, int gen) {
+        int count = cols.size();
+        if (keySource.length < count) {
+            int cap = Math.max(count, keySource.length + (keySource.length >> 1));
+            keySource = Arrays.copyOf(keySource, cap);
+            lowerNames = Arrays.copyOf(lowerNames, cap);
+            lowerContainers = Arrays.copyOf(lowerContainers, cap);
+        }
+        for (int row = 0; row < count; row++) {
+            if ((row % CHECK_INTERVAL) == 0) checkCancelled(gen);
+            String name = cols.name(row);
+            // Reference check: names only change through the table, which stores new strings
+            if (row < keyCount && keySource[row] == name) continue;
+            if (row < keyCount) {
+                renamed.set(row);
+            } else {
+                // Containers never change within a listing
+                String c = cols.container(row);
+                lowerContainers[row] = (c != null) ? c.toLowerCase(Locale.ROOT) : null;
+            }
+            keySource[row] = name;
+            lowerNames[row] = (name != null) ? name.toLowerCase(Locale.ROOT) : "";
+        }
+        keyCount = Math.max(keyCount, count);
+    }
+
+    @NonNull
+    private BitSet filter(@NonNull ObjectTable.Columns cols, @NonNull ObjectQuery q,
+                          @Nullable QueryPattern pattern, int gen) {
+        int count = cols.size();
+
+        String[] types = cols.types();
+        boolean[] typeAllowed = new boolean[types.length];
+        boolean[] typeMatchesText = new boolean[types.length];
+        for (int t = 0; t < types.length; t++) {
+            typeAllowed[t] = q.types().isEmpty() || containsIgnoreCase(q.types(), types[t]);
+            typeMatchesText[t] = pattern != null
+                    && pattern.matches(types[t].toLowerCase(Locale.ROOT));
+        }
+        boolean numericText = pattern != null && pattern.plain && !pattern.anchored
+                && isNumericQuery(pattern.body);
+        char[] digits = new char[20];
+
+        BitSet candidates = null;
+        String source = "scan";
+        TrigramIndex idx = index;
+        if (canRefine(cols, q, pattern)) {
+            candidates = (BitSet) lastMatches.clone();
+            candidates.or(renamed);
+            candidates.set(lastCount, count);
+            source = "refine";
+        } else if (pattern != null && !numericText && idx != null && idx.epoch == cols.epoch
+                && TrigramIndex.usable(pattern)) {
+            candidates = idx.candidates(pattern, cols);
+            for (int t = 0; t < types.length; t++) {
+                BitSet rows = typeMatchesText[t] ? idx.typeRows(t) : null;
+                if (rows != null) candidates.or(rows);
+            }
+            candidates.set(Math.min(idx.count, count), count);
+            source = "index";
+        }
+
+        long start = System.nanoTime();
+        BitSet out = new BitSet(count);
+        int checked = 0;
+        if (candidates != null) {
+            for (int row = candidates.nextSetBit(0); row >= 0 && row < count;
+                 row = candidates.nextSetBit(row + 1)) {
+                if ((++checked % CHECK_INTERVAL) == 0) checkCancelled(gen);
+                if (matches(cols, q, pattern, row, typeAllowed, typeMatchesText, numericText,
+                        digits)) {
+                    out.set(row);
+                }
+            }
+        } else {
+            for (int row = 0; row < count; row++) {
+                if ((row % CHECK_INTERVAL) == 0) checkCancelled(gen);
+                if (matches(cols, q, pattern, row, typeAllowed, typeMatchesText, numericText,
+                        digits)) {
+                    out.set(row);
+                }
+            }
+            checked = count;
+        }
+        if (pattern != null) {
+            Log.d(TAG, "query '" + q.normalizedText() + "' via " + source + ": checked "
+                    + checked + "/" + count + " rows in "
+                    + (System.nanoTime() - start) / 1000 + " us");
+        }
+        return out;
+    }
+
+    /**
+     * The previous result can seed this one when the text only got narrower and nothing the
+     * other filters read has changed since.
+     */
+    private boolean canRefine(@NonNull ObjectTable.Columns cols, @NonNull ObjectQuery q,
+                              @Nullable QueryPattern pattern) {
+        if (lastQuery == null || lastMatches == null || !q.sameFilters(lastQuery)) return false;
+        if (cols.sizeVersion != lastSizeVersion) return false;
+        if (q.editedOnly() && cols.modifiedVersion != lastModifiedVersion) return false;
+        if (pattern == null) return lastPattern == null;
+        return pattern.refines(lastPattern);
+    }
+
+    private boolean matches(@NonNull ObjectTable.Columns cols, @NonNull ObjectQuery q,
+                            @Nullable QueryPattern pattern, int row,
+                            @NonNull boolean[] typeAllowed,
+                            @NonNull boolean[] typeMatchesText, boolean numericText,
+                            @NonNull char[] digits) {
+        if (q.editedOnly() && !cols.isModified(row)) return false;
+
+        long size = cols.bytes(row);
+        if (q.minBytes() != null && (size < 0 || size < q.minBytes())) return false;
+        if (q.maxBytes() != null && (size < 0 || size > q.maxBytes())) return false;
+
+        int typeId = cols.typeId(row);
+        if (!typeAllowed[typeId]) return false;
+
+        if (pattern == null) return true;
+
+        return pattern.matches(lowerNames[row])
+                || pattern.matches(lowerContainers[row])
+                || typeMatchesText[typeId]
+                || (numericText && (digitsContain(cols.index(row), pattern.body, digits)
+                || digitsContain(cols.pathId(row), pattern.body, digits)));
+    }
+
+    @NonNull
+    private int[] order(@NonNull ObjectTable.Columns cols, @NonNull SortMode mode, int gen) {
+        Order o = orders.get(mode);
+        if (o == null) {
+            o = new Order();
+            orders.put(mode, o);
+        }
+
+        int version = switch (mode) {
+            case NAME -> cols.nameVersion;
+            case SIZE -> cols.sizeVersion;
+            case EDITED -> cols.modifiedVersion;
+            default -> 0;
+        };
+        int count = cols.size();
+        ObjectTable.RowComparator cmp = comparator(cols, mode);
+
+        if (o.version != version || o.count > count) {
+            o.count = 0;
+            o.version = version;
+        }
+        if (o.count == count) return o.rows;
+
+        // Sort only the rows added since, then merge them into the cached order
+        int added = count - o.count;
+        int[] fresh = new int[added];
+        for (int i = 0; i < added; i++) fresh[i] = o.count + i;
+        ObjectTable.sortRows(fresh, added, cmp);
+        checkCancelled(gen);
+
+        int[] merged = new int[count];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < o.count && j < added) {
+            merged[k++] = (cmp.compare(o.rows[i], fresh[j]) <= 0) ? o.rows[i++] : fresh[j++];
+        }
+        while (i < o.count) merged[k++] = o.rows[i++];
+        while (j < added) merged[k++] = fresh[j++];
+
+        o.rows = merged;
+        o.count = count;
+        return merged;
+    }
+
+    @NonNull
+    private ObjectTable.RowComparator comparator(@NonNull ObjectTable.Columns cols,
+                                                 @NonNull SortMode mode) {
+        String[] keys = lowerNames;
+        return switch (mode) {
+            case NAME -> (a, c) -> {
+                int r = keys[a].compareTo(keys[c]);
+                return r != 0 ? r : Integer.compare(cols.index(a), cols.index(c));
+            };
+            case TYPE -> (a, c) -> {
+                int r = cols.type(a).compareToIgnoreCase(cols.type(c));
+                return r != 0 ? r : Integer.compare(cols.index(a), cols.index(c));
+            };
+            case SIZE -> (a, c) -> {
+                int r = Long.compare(cols.bytes(c), cols.bytes(a));
+                return r != 0 ? r : Integer.compare(cols.index(a), cols.index(c));
+            };
+            case EDITED -> (a, c) -> {
+                int ae = cols.isModified(a) ? 1 : 0;
+                int ce = cols.isModified(c) ? 1 : 0;
+                int r = Integer.compare(ce, ae);
+                return r != 0 ? r : Integer.compare(cols.index(a), cols.index(c));
+            };
+            default -> (a, c) -> Integer.compare(cols.index(a), cols.index(c));
+        };
+    }
+
+    private void checkCancelled(int gen) {
+        if (gen != generation.get()) throw new CancellationException();
+    }
+
+    // ---------------- Helpers ----------------
+
+    private static boolean containsIgnoreCase(@NonNull Iterable<String> set, @NonNull String t) {
+        for (String s : set) {
+            if (s != null && s.equalsIgnoreCase(t)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Index and path id only hold digits and '-', so other queries can skip them.
+     */
+    private static boolean isNumericQuery(@NonNull String q) {
+        for (int i = 0; i < q.length(); i++) {
+            char c = q.charAt(i);
+            if ((c < '0' || c > '9') && c != '-') return false;
+        }
+        return true;
+    }
+
+    /**
+     * {@code String.valueOf(v).contains(q)} without allocating the string.
+     */
+    private static boolean digitsContain(long v, @NonNull String q, @NonNull char[] buf) {
+        int pos = buf.length;
+        boolean neg = v < 0;
+        do {
+            long d = v % 10;
+            buf[--pos] = (char) ('0' + (neg ? -d : d));
+            v /= 10;
+        } while (v != 0);
+        if (neg) buf[--pos] = '-';
+
+        int qlen = q.length();
+        outer:
+        for (int i = pos; i <= buf.length - qlen; i++) {
+            for (int j = 0; j < qlen; j++) {
+                if (buf[i + j] != q.charAt(j)) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,41 @@
+package com.elfilibustero.uabe.search;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.elfilibustero.uabe.enums.SortMode;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * One filter + sort request for {@link ObjectFilterEngine}.
+ */
+public record ObjectQuery(@Nullable String text,
+                          @NonNull Set<String> types,
+                          boolean editedOnly,
+                          @Nullable Long minBytes,
+                          @Nullable Long maxBytes,
+                          @NonNull SortMode sortMode) {
+
+    /**
+     * Trimmed, lower-cased query text, or null when there is none.
+     */
+    @Nullable
+    public String normalizedText() {
+        if (text == null) return null;
+        String t = text.trim().toLowerCase(Locale.ROOT);
+        return t.isEmpty() ? null : t;
+    }
+
+    /**
+     * True when both queries apply the same filters apart from the text.
+     */
+    boolean sameFilters(@NonNull ObjectQuery o) {
+        return editedOnly == o.editedOnly
+                && types.equals(o.types)
+                && Objects.equals(minBytes, o.minBytes)
+                && Objects.equals(maxBytes, o.maxBytes);
+    }
+}
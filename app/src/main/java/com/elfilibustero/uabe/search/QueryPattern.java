@@ -0,0 +1,103 @@
+package com.elfilibustero.uabe.search;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parsed search text.
+ * <p>
+ * Plain text matches anywhere in a field. A leading {@code ^} anchors the match to the start
+ * of the field, {@code *} matches any run of characters and {@code ?} any single character.
+ * Input is expected to be lower-cased already.
+ */
+final class QueryPattern {
+
+    final boolean anchored;
+    final boolean plain;
+    @NonNull
+    final String body;
+    // Wildcard-free runs of the body; every match contains all of them
+    @NonNull
+    final List<String> literals;
+
+    private QueryPattern(boolean anchored, @NonNull String body) {
+        this.anchored = anchored;
+        this.body = body;
+        this.plain = body.indexOf('*') < 0 && body.indexOf('?') < 0;
+
+        List<String> lits = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= body.length(); i++) {
+            if (i == body.length() || body.charAt(i) == '*' || body.charAt(i) == '?') {
+                if (i > start) lits.add(body.substring(start, i));
+                start = i + 1;
+            }
+        }
+        this.literals = lits;
+    }
+
+    /**
+     * Null when {@code text} holds nothing to match on.
+     */
+    @Nullable
+    static QueryPattern parse(@Nullable String text) {
+        if (text == null) return null;
+        boolean anchored = text.startsWith("^");
+        String body = anchored ? text.substring(1) : text;
+        if (body.isEmpty() || body.chars().allMatch(c -> c == '*')) return null;
+        return new QueryPattern(anchored, body);
+    }
+
+    boolean matches(@Nullable String s) {
+        if (s == null) return false;
+        if (plain) {
+            return anchored ? s.startsWith(body) : s.contains(body);
+        }
+        return glob(s);
+    }
+
+    /**
+     * True when everything this pattern matches was also matched by {@code prev}, so the
+     * previous result can be narrowed instead of recomputed.
+     */
+    boolean refines(@Nullable QueryPattern prev) {
+        if (prev == null) return true;
+        if (!plain || !prev.plain || anchored != prev.anchored) return false;
+        return anchored ? body.startsWith(prev.body) : body.contains(prev.body);
+    }
+
+    // Unanchored patterns behave as *body*, anchored ones as body*
+    private boolean glob(@NonNull String s) {
+        String p = body;
+        int pi = 0;
+        int si = 0;
+        int star = anchored ? -1 : -2;
+        int mark = 0;
+        int pl = p.length();
+        int sl = s.length();
+
+        while (si < sl) {
+            if (pi < pl && (p.charAt(pi) == '?' || p.charAt(pi) == s.charAt(si))) {
+                pi++;
+                si++;
+            } else if (pi < pl && p.charAt(pi) == '*') {
+                star = pi++;
+                mark = si;
+            } else if (pi == pl) {
+                // Implicit trailing '*': the rest of the field is free
+                return true;
+            } else if (star != -1) {
+                // -2 stands for the implicit leading '*'
+                pi = (star == -2) ? 0 : star + 1;
+                si = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (pi < pl && p.charAt(pi) == '*') pi++;
+        return pi == pl;
+    }
+}
@@ -0,0 +1,336 @@
+package com.elfilibustero.uabe.search;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.elfilibustero.uabe.model.ObjectTable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Immutable trigram index over the lower-cased names and containers of a table view, plus
+ * one row set per type.
+ * <p>
+ * Posting lists are sorted row numbers stored as delta varints in one shared byte array, so
+ * a few hundred thousand rows fit in a few bytes per indexed trigram occurrence.
+ * {@link #candidates} only narrows the search: callers still verify every row it returns.
+ */
+final class TrigramIndex {
+
+    final int epoch;
+    final int count;
+    // Name references the index was built from; a row whose name changed since is stale
+    @NonNull
+    private final String[] indexedNames;
+
+    @NonNull
+    private final LongIntMap slots;
+    @NonNull
+    private final int[] postingStart;
+    @NonNull
+    private final int[] postingCount;
+    @NonNull
+    private final byte[] postings;
+    @NonNull
+    private final BitSet[] typeRows;
+
+    final long buildMillis;
+
+    private TrigramIndex(int epoch, int count, @NonNull String[] indexedNames,
+                         @NonNull LongIntMap slots, @NonNull int[] postingStart,
+                         @NonNull int[] postingCount, @NonNull byte[] postings,
+                         @NonNull BitSet[] typeRows, long buildMillis) {
+        this.epoch = epoch;
+        this.count = count;
+        this.indexedNames = indexedNames;
+        this.slots = slots;
+        this.postingStart = postingStart;
+        this.postingCount = postingCount;
+        this.postings = postings;
+        this.typeRows = typeRows;
+        this.buildMillis = buildMillis;
+    }
+
+    int trigramCount() {
+        return slots.size();
+    }
+
+    int postingBytes() {
+        return postings.length;
+    }
+
+    /**
+     * Builds the index, polling {@code cancelled} between rows; returns null if it fired.
+     */
+    @Nullable
+    static TrigramIndex build(@NonNull ObjectTable.Columns cols,
+                              @NonNull BooleanSupplier cancelled) {
+        long start = System.nanoTime();
+        int count = cols.size();
+
+        LongIntMap slots = new LongIntMap(1 << 12);
+        Builder[] builders = new Builder[1 << 12];
+        int slotCount = 0;
+
+        String[] names = new String[count];
+        LongIntMap seen = new LongIntMap(64);
+
+        for (int row = 0; row < count; row++) {
+            if ((row & 1023) == 0 && cancelled.getAsBoolean()) return null;
+
+            names[row] = cols.name(row);
+            seen.clear();
+            for (int f = 0; f < 2; f++) {
+                String s = (f == 0) ? names[row] : cols.container(row);
+                if (s == null || s.length() < 3) continue;
+                s = s.toLowerCase(Locale.ROOT);
+                for (int i = 0; i + 3 <= s.length(); i++) {
+                    long key = key(s.charAt(i), s.charAt(i + 1), s.charAt(i + 2));
+                    if (seen.putIfAbsent(key, 0) >= 0) continue;
+
+                    int slot = slots.get(key);
+                    if (slot < 0) {
+                        slot = slotCount++;
+                        slots.putIfAbsent(key, slot);
+                        if (slot >= builders.length) {
+                            builders = Arrays.copyOf(builders, builders.length * 2);
+                        }
+                        builders[slot] = new Builder();
+                    }
+                    builders[slot].add(row);
+                }
+            }
+        }
+
+        // Compact every posting list into one array
+        int total = 0;
+        for (int i = 0; i < slotCount; i++) total += builders[i].len;
+        byte[] postings = new byte[total];
+        int[] postingStart = new int[slotCount];
+        int[] postingCount = new int[slotCount];
+        int pos = 0;
+        for (int i = 0; i < slotCount; i++) {
+            Builder b = builders[i];
+            System.arraycopy(b.buf, 0, postings, pos, b.len);
+            postingStart[i] = pos;
+            postingCount[i] = b.count;
+            pos += b.len;
+            builders[i] = null;
+        }
+
+        BitSet[] typeRows = new BitSet[cols.types().length];
+        for (int t = 0; t < typeRows.length; t++) typeRows[t] = new BitSet(count);
+        for (int row = 0; row < count; row++) typeRows[cols.typeId(row)].set(row);
+
+        return new TrigramIndex(cols.epoch, count, names, slots, postingStart, postingCount,
+                postings, typeRows, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * True when {@code pattern} has at least one trigram to look up.
+     */
+    static boolean usable(@NonNull QueryPattern pattern) {
+        for (String lit : pattern.literals) {
+            if (lit.length() >= 3) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Rows below {@link #count} whose name or container may match {@code pattern}. Rows
+     * renamed since the build are always included.
+     */
+    @NonNull
+    BitSet candidates(@NonNull QueryPattern pattern, @NonNull ObjectTable.Columns cols) {
+        // Collect the distinct trigrams of every literal, rarest first
+        LongIntMap distinct = new LongIntMap(64);
+        int[] lists = new int[16];
+        int n = 0;
+        for (String lit : pattern.literals) {
+            for (int i = 0; i + 3 <= lit.length(); i++) {
+                long key = key(lit.charAt(i), lit.charAt(i + 1), lit.charAt(i + 2));
+                if (distinct.putIfAbsent(key, 0) >= 0) continue;
+                int slot = slots.get(key);
+                if (slot < 0) {
+                    // A trigram no row has: only stale rows can still match
+                    n = -1;
+                    break;
+                }
+                if (n == lists.length) lists = Arrays.copyOf(lists, n * 2);
+                lists[n++] = slot;
+            }
+            if (n < 0) break;
+        }
+
+        BitSet out = new BitSet(count);
+        if (n > 0) {
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) order[i] = lists[i];
+            Arrays.sort(order, (a, b) -> Integer.compare(postingCount[a], postingCount[b]));
+
+            int[] rows = decode(order[0]);
+            int len = rows.length;
+            for (int i = 1; i < n && len > 0; i++) {
+                len = intersect(rows, len, order[i]);
+            }
+            for (int i = 0; i < len; i++) out.set(rows[i]);
+        }
+
+        int limit = Math.min(count, cols.size());
+        for (int row = 0; row < limit; row++) {
+            if (cols.name(row) != indexedNames[row]) out.set(row);
+        }
+        return out;
+    }
+
+    /**
+     * All rows of type {@code typeId} below {@link #count}.
+     */
+    @Nullable
+    BitSet typeRows(int typeId) {
+        return (typeId >= 0 && typeId < typeRows.length) ? typeRows[typeId] : null;
+    }
+
+    @NonNull
+    private int[] decode(int slot) {
+        int[] out = new int[postingCount[slot]];
+        int p = postingStart[slot];
+        int row = 0;
+        for (int i = 0; i < out.length; i++) {
+            int v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = postings[p++];
+                v |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            row += v;
+            out[i] = row;
+        }
+        return out;
+    }
+
+    // Keeps rows[0..len) that also appear in the posting list of slot; returns the new length
+    private int intersect(@NonNull int[] rows, int len, int slot) {
+        int p = postingStart[slot];
+        int remaining = postingCount[slot];
+        int row = 0;
+        int next = -1;
+        int k = 0;
+        for (int i = 0; i < len; i++) {
+            int want = rows[i];
+            while (next < want && remaining > 0) {
+                int v = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = postings[p++];
+                    v |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                row += v;
+                next = row;
+                remaining--;
+            }
+            if (next == want) rows[k++] = want;
+            else if (next < want) break;
+        }
+        return k;
+    }
+
+    private static long key(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    private static final class Builder {
+        byte[] buf = new byte[8];
+        int len;
+        int count;
+        int last;
+
+        void add(int row) {
+            int v = row - last;
+            last = row;
+            count++;
+            if (len + 5 > buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            while ((v & ~0x7f) != 0) {
+                buf[len++] = (byte) ((v & 0x7f) | 0x80);
+                v >>>= 7;
+            }
+            buf[len++] = (byte) v;
+        }
+    }
+
+    /**
+     * Open-addressing long -> int map; keys are never removed.
+     */
+    private static final class LongIntMap {
+        private long[] keys;
+        private int[] values;
+        private boolean[] used;
+        private int size;
+
+        LongIntMap(int capacity) {
+            int cap = Integer.highestOneBit(Math.max(4, capacity) - 1) << 1;
+            keys = new long[cap];
+            values = new int[cap];
+            used = new boolean[cap];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            return -1;
+        }
+
+        /**
+         * Stores {@code value} unless present; returns the existing value, or -1 if absent.
+         */
+        int putIfAbsent(long key, int value) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            for (; used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            used[i] = true;
+            keys[i] = key;
+            values[i] = value;
+            if (++size * 2 > keys.length) grow();
+            return -1;
+        }
+
+        void clear() {
+            if (size == 0) return;
+            Arrays.fill(used, false);
+            size = 0;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) putIfAbsent(oldKeys[i], oldValues[i]);
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
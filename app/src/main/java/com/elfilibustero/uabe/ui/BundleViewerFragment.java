@@ -61,8 +61,12 @@ public class BundleViewerFragment extends Fragment {
 
     private File currentLocalCopy;
 
+    @Nullable
+    private AlertDialog recoveryDialog;
+
     private ActivityResultLauncher<String> createDocLauncher;
     private ActivityResultLauncher<String[]> openDocLauncher;
+    private ActivityResultLauncher<Uri> openTreeLauncher;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
@@ -127,6 +131,15 @@ public class BundleViewerFragment extends Fragment {
                     pendingImportKind = PendingKind.NONE;
                 }
         );
+
+        openTreeLauncher = registerForActivityResult(
+                new ActivityResultContracts.OpenDocumentTree(),
+                uri -> {
+                    if (uri != null) {
+                        vm.exportFilteredToTree(uri);
+                    }
+                }
+        );
     }
 
     @Nullable
@@ -155,7 +168,14 @@ public class BundleViewerFragment extends Fragment {
             public void onLongClick(ObjectItem item) {
                 showItemActionsDialog(item);
             }
+
+            @Override
+            public void onBind(ObjectItem item) {
+                vm.requestNameResolution(item);
+            }
         });
+        adapter.setThumbnails(vm.getThumbnails());
+        vm.getThumbnails().setListener(adapter::onThumbnail);
         b.recycler.setAdapter(adapter);
 
         vm.getUiState().observe(getViewLifecycleOwner(), state -> {
@@ -169,11 +189,17 @@ public class BundleViewerFragment extends Fragment {
             }
         });
 
-        vm.getItems().observe(getViewLifecycleOwner(), list -> {
-            if (list == null) {
-                adapter.submitList(null);
-            } else {
-                adapter.submitList(new ArrayList<>(list));
+        // Rows of the object table, diffed by row; no ObjectItem per row
+        vm.getItems().observe(getViewLifecycleOwner(), adapter::submit);
+
+        vm.getRecoveryError().observe(getViewLifecycleOwner(), error -> {
+            if (error == null) {
+                if (recoveryDialog != null) {
+                    recoveryDialog.dismiss();
+                    recoveryDialog = null;
+                }
+            } else if (recoveryDialog == null) {
+                showRecoveryFailed(error);
             }
         });
 
@@ -229,6 +255,18 @@ public class BundleViewerFragment extends Fragment {
                     exportBundle();
                     return true;
 
+                } else if (id == R.id.action_undo) {
+                    vm.undoEdit();
+                    return true;
+
+                } else if (id == R.id.action_redo) {
+                    vm.redoEdit();
+                    return true;
+
+                } else if (id == R.id.action_export_filtered) {
+                    exportFiltered();
+                    return true;
+
                 } else if (id == R.id.action_reload) {
                     vm.reload();
                     return true;
@@ -396,6 +434,23 @@ public class BundleViewerFragment extends Fragment {
         createDocLauncher.launch(suggested);
     }
 
+    private void exportFiltered() {
+        if (currentLocalCopy == null) {
+            return;
+        }
+
+        if (vm.isBatchExportRunning()) {
+            new MaterialAlertDialogBuilder(requireContext())
+                    .setTitle(R.string.title_stop_export)
+                    .setMessage(R.string.message_stop_export)
+                    .setNegativeButton(R.string.text_cancel, null)
+                    .setPositiveButton(R.string.text_stop, (d, w) -> vm.cancelBatchExport())
+                    .show();
+            return;
+        }
+        openTreeLauncher.launch(null);
+    }
+
     private void closeBundle() {
         if (currentLocalCopy == null) {
             return;
@@ -542,6 +597,23 @@ public class BundleViewerFragment extends Fragment {
         });
     }
 
+    private void showRecoveryFailed(@NonNull String error) {
+        // No edits until the journal is either replayed or dropped
+        recoveryDialog = new MaterialAlertDialogBuilder(requireContext())
+                .setTitle(R.string.title_recovery_failed)
+                .setMessage(getString(R.string.message_recovery_failed, error))
+                .setCancelable(false)
+                .setNegativeButton(R.string.text_discard, (d, w) -> {
+                    recoveryDialog = null;
+                    vm.discardRecovery();
+                })
+                .setPositiveButton(R.string.text_retry, (d, w) -> {
+                    recoveryDialog = null;
+                    vm.reload();
+                })
+                .show();
+    }
+
     private void importAssetBundleFromUri(Uri uri) {
         if (currentLocalCopy != null) {
             new MaterialAlertDialogBuilder(requireContext())
@@ -652,6 +724,12 @@ public class BundleViewerFragment extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        vm.getThumbnails().setListener(null);
+        if (recoveryDialog != null) {
+            // Shown again from the still pending error when the view comes back
+            recoveryDialog.dismiss();
+            recoveryDialog = null;
+        }
         b = null;
     }
 }
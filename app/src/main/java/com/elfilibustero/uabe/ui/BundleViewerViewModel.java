@@ -11,18 +11,29 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.elfilibustero.uabe.R;
+import com.elfilibustero.uabe.enums.SaveCompression;
 import com.elfilibustero.uabe.enums.SortMode;
+import com.elfilibustero.uabe.managers.BatchExportJob;
+import com.elfilibustero.uabe.managers.ThumbnailLoader;
 import com.elfilibustero.uabe.model.ObjectItem;
+import com.elfilibustero.uabe.model.ObjectTable;
+import com.elfilibustero.uabe.python.repo.EditStepResult;
+import com.elfilibustero.uabe.python.repo.ObjectPage;
 import com.elfilibustero.uabe.python.repo.OpenBundleResult;
 import com.elfilibustero.uabe.python.repo.UnityPyRepositoryImpl;
+import com.elfilibustero.uabe.search.ObjectFilterEngine;
+import com.elfilibustero.uabe.search.ObjectQuery;
+import com.elfilibustero.uabe.util.BundleRecentsStore;
 import com.elfilibustero.uabe.util.DocumentUtil;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Set;
 import java.util.function.Consumer;
 
@@ -124,7 +135,8 @@ public class BundleViewerViewModel extends AndroidViewModel {
     }
 
     private final MutableLiveData<UiState> uiState = new MutableLiveData<>(new UiState(false, null));
-    private final MutableLiveData<List<ObjectItem>> items = new MutableLiveData<>(new ArrayList<>());
+    // What the list shows; null for nothing
+    private final MutableLiveData<ObjectTable.Rows> items = new MutableLiveData<>(null);
     private final MutableLiveData<String> sessionId = new MutableLiveData<>(null);
     private final MutableLiveData<String> currentPath = new MutableLiveData<>(null);
     private final MutableLiveData<String> displayName = new MutableLiveData<>(null);
@@ -133,32 +145,58 @@ public class BundleViewerViewModel extends AndroidViewModel {
             new MutableLiveData<>(ObjectActionsState.idle());
     private final MutableLiveData<OpenBundleResult> openBundleResult =
             new MutableLiveData<>(null);
+    // Why the open bundle's journaled edits could not be replayed, until the user decides
+    private final MutableLiveData<String> recoveryError = new MutableLiveData<>(null);
 
     private final MutableLiveData<FilterState> filterState =
             new MutableLiveData<>(FilterState.none());
 
     private final UnityPyRepositoryImpl repo;
+    private final BundleRecentsStore recents;
 
     private SortMode sortMode = SortMode.IDX;
-    private final ArrayList<ObjectItem> rawItems = new ArrayList<>();
+    private final ObjectTable table = new ObjectTable();
+    private final ObjectFilterEngine filterEngine = new ObjectFilterEngine();
+    private final ThumbnailLoader thumbnails;
     private final HashSet<Integer> modifiedIdx = new HashSet<>();
+    @Nullable
+    private BatchExportJob batchExport;
+    private int batchExportGeneration = 0;
 
     private boolean autoSaving = false;
+    // Compression of the bundle as the user opened it, ORIGINAL while it is not known; autosaves
+    // use something faster and only an export puts this back
+    private SaveCompression exportCompression = SaveCompression.ORIGINAL;
+    private int openGeneration = 0;
+
+    // Rows bound with a placeholder name, newest last; only these get parsed for a real name
+    private static final int MAX_PENDING_NAMES = 256;
+    private static final int NAME_BATCH_SIZE = 64;
+    private final LinkedHashSet<Integer> pendingNames = new LinkedHashSet<>();
+    private final HashSet<Integer> requestedNames = new HashSet<>();
+    private boolean resolvingNames = false;
 
     private final Handler main = new Handler(Looper.getMainLooper());
     private final Runnable autoSaveRunnable = this::autoSaveToCacheSilent;
-    private final Runnable autoReloadRunnable = this::reload;
+    private final Runnable resolveNamesRunnable = this::resolvePendingNames;
 
     public BundleViewerViewModel(@NonNull Application app) {
         super(app);
         repo = new UnityPyRepositoryImpl(app.getApplicationContext());
+        recents = new BundleRecentsStore(app);
+        thumbnails = new ThumbnailLoader(app, repo);
+    }
+
+    @NonNull
+    public ThumbnailLoader getThumbnails() {
+        return thumbnails;
     }
 
     public LiveData<UiState> getUiState() {
         return uiState;
     }
 
-    public LiveData<List<ObjectItem>> getItems() {
+    public LiveData<ObjectTable.Rows> getItems() {
         return items;
     }
 
@@ -196,6 +234,10 @@ public class BundleViewerViewModel extends AndroidViewModel {
         return openBundleResult;
     }
 
+    public LiveData<String> getRecoveryError() {
+        return recoveryError;
+    }
+
     // ---------------- FILTER API ----------------
 
     public LiveData<FilterState> getFilterState() {
@@ -253,14 +295,18 @@ public class BundleViewerViewModel extends AndroidViewModel {
         currentPath.setValue(localPath);
 
         uiState.setValue(new UiState(true, scanningStatusText));
-        rawItems.clear();
-        items.setValue(new ArrayList<>());
+        table.clear();
+        filterEngine.clear();
+        thumbnails.close();
+        items.setValue(null);
 
         modifiedIdx.clear();
         autoSaving = false;
+        clearPendingNames();
 
         main.removeCallbacks(autoSaveRunnable);
-        main.removeCallbacks(autoReloadRunnable);
+        recoveryError.setValue(null);
+        resolveExportCompression(localPath);
 
         String oldSession = sessionId.getValue();
         if (oldSession != null && !oldSession.isEmpty()) {
@@ -268,29 +314,62 @@ public class BundleViewerViewModel extends AndroidViewModel {
             sessionId.setValue(null);
         }
 
-        repo.openBundle(localPath)
+        int generation = ++openGeneration;
+        repo.openBundle(localPath, page -> {
+                    if (generation != openGeneration) return;
+                    onObjectPage(page, scanningStatusText);
+                })
                 .addOnSuccessListener(result -> {
+                    if (generation != openGeneration) return;
                     openBundleResult.setValue(result);
                     sessionId.setValue(result.sessionId);
-
-                    ArrayList<ObjectItem> list = new ArrayList<>();
-                    if (result.objects != null) {
-                        for (ObjectItem it : result.objects) {
-                            if (it == null) continue;
-                            ObjectItem c = copyItem(it);
-                            c.setModified(modifiedIdx.contains(c.getIndex()));
-                            list.add(c);
-                        }
-                    }
-
-                    rawItems.clear();
-                    rawItems.addAll(list);
+                    thumbnails.open(result.sessionId, new File(localPath));
+                    filterEngine.buildIndex(table.columns());
+                    applyRecovered(result);
 
                     uiState.setValue(new UiState(false,
                             result.archives != null ? result.archives.toString() : null));
-                    publish();
                 })
-                .addOnFailureListener(e -> uiState.setValue(new UiState(false, e.getMessage())));
+                .addOnFailureListener(e -> {
+                    if (generation != openGeneration) return;
+                    uiState.setValue(new UiState(false, e.getMessage()));
+                });
+    }
+
+    private void resolveExportCompression(@NonNull String localPath) {
+        SaveCompression known = recents.getCompression(localPath);
+        exportCompression = known != null ? known : SaveCompression.ORIGINAL;
+        if (known != null) {
+            return;
+        }
+        // Read before any autosave can replace the copy; both run on the same Python thread
+        repo.getBundleCompression(localPath)
+                .addOnSuccessListener(compression -> {
+                    recents.setCompression(localPath, compression);
+                    if (localPath.equals(currentPath.getValue())) {
+                        exportCompression = compression;
+                    }
+                });
+    }
+
+    /**
+     * Appends one scanned page and shows it right away instead of waiting for the whole bundle.
+     */
+    private void onObjectPage(@NonNull ObjectPage page, @Nullable String scanningStatusText) {
+        if (page.objects == null || page.objects.isEmpty()) return;
+
+        for (ObjectItem it : page.objects) {
+            if (it == null) continue;
+            it.setModified(modifiedIdx.contains(it.getIndex()));
+        }
+        table.appendAll(page.objects);
+
+        int scanned = page.offset + page.objects.size();
+        String status = getApplication().getString(R.string.message_scanning_progress,
+                scanningStatusText != null ? scanningStatusText : "", scanned, page.total);
+        uiState.setValue(new UiState(scanned < page.total, status));
+
+        publish();
     }
 
     public void reload() {
@@ -301,29 +380,32 @@ public class BundleViewerViewModel extends AndroidViewModel {
         }
 
         uiState.setValue(new UiState(true, null));
+        clearPendingNames();
 
+        int generation = ++openGeneration;
         repo.closeBundle(sid)
                 .continueWithTask(closeTask -> repo.openBundle(path))
                 .addOnSuccessListener(result -> {
+                    if (generation != openGeneration) return;
                     sessionId.setValue(result.sessionId);
+                    thumbnails.open(result.sessionId, new File(path));
 
-                    ArrayList<ObjectItem> list = new ArrayList<>();
+                    table.clear();
+                    filterEngine.clear();
                     if (result.objects != null) {
                         for (ObjectItem it : result.objects) {
                             if (it == null) continue;
-                            ObjectItem c = copyItem(it);
-                            c.setModified(modifiedIdx.contains(c.getIndex()));
-                            list.add(c);
+                            it.setModified(modifiedIdx.contains(it.getIndex()));
                         }
+                        table.appendAll(result.objects);
                     }
 
-                    rawItems.clear();
-                    rawItems.addAll(list);
-
                     uiState.setValue(new UiState(false,
                             result.archives != null ? result.archives.toString() : null));
 
                     publish();
+                    filterEngine.buildIndex(table.columns());
+                    applyRecovered(result);
                 })
                 .addOnFailureListener(t ->
                         uiState.setValue(new UiState(false, t != null ? t.getMessage() : "Unknown error")));
@@ -363,6 +445,138 @@ public class BundleViewerViewModel extends AndroidViewModel {
                                 e.getMessage() != null ? e.getMessage() : "Failed to load object info")));
     }
 
+    /**
+     * Queues a bound row whose name is still a placeholder. Requests are batched and only the
+     * most recently bound rows are kept, so fast scrolling never parses rows already gone.
+     */
+    public void requestNameResolution(@NonNull ObjectItem item) {
+        if (item.isNameResolved() || requestedNames.contains(item.getIndex())) return;
+
+        pendingNames.remove(item.getIndex());
+        pendingNames.add(item.getIndex());
+        if (pendingNames.size() > MAX_PENDING_NAMES) {
+            Iterator<Integer> it = pendingNames.iterator();
+            it.next();
+            it.remove();
+        }
+
+        if (!resolvingNames) {
+            main.removeCallbacks(resolveNamesRunnable);
+            main.postDelayed(resolveNamesRunnable, 32);
+        }
+    }
+
+    private void resolvePendingNames() {
+        String sid = sessionId.getValue();
+        if (sid == null || sid.isEmpty() || pendingNames.isEmpty() || resolvingNames) return;
+
+        // Newest first: those rows are the ones currently on screen
+        ArrayList<Integer> batch = new ArrayList<>(pendingNames);
+        int from = Math.max(0, batch.size() - NAME_BATCH_SIZE);
+        int[] indices = new int[batch.size() - from];
+        for (int i = batch.size() - 1, k = 0; i >= from; i--, k++) {
+            indices[k] = batch.get(i);
+            pendingNames.remove(indices[k]);
+            requestedNames.add(indices[k]);
+        }
+
+        resolvingNames = true;
+        int generation = openGeneration;
+        repo.resolveNames(sid, indices)
+                .addOnSuccessListener(names -> {
+                    if (generation != openGeneration) return;
+                    resolvingNames = false;
+                    applyResolvedNames(indices, names);
+                    if (!pendingNames.isEmpty()) main.post(resolveNamesRunnable);
+                })
+                .addOnFailureListener(e -> {
+                    if (generation != openGeneration) return;
+                    resolvingNames = false;
+                    if (!pendingNames.isEmpty()) main.post(resolveNamesRunnable);
+                });
+    }
+
+    private void applyResolvedNames(@NonNull int[] indices, @Nullable List<String> names) {
+        if (names == null || names.size() != indices.length) return;
+
+        boolean changed = false;
+        for (int i = 0; i < indices.length; i++) {
+            int row = table.rowOf(indices[i]);
+            if (row < 0) continue;
+            String name = names.get(i);
+            changed |= !name.isEmpty() && !name.equals(table.name(row));
+            table.setResolvedName(row, name);
+        }
+
+        if (changed) publish();
+    }
+
+    private void clearPendingNames() {
+        main.removeCallbacks(resolveNamesRunnable);
+        pendingNames.clear();
+        requestedNames.clear();
+        resolvingNames = false;
+    }
+
+    /**
+     * Reverts the last edit through the session's edit journal.
+     */
+    public void undoEdit() {
+        String sid = sessionId.getValue();
+        if (sid == null || sid.isEmpty()) return;
+        repo.undoEdit(sid)
+                .addOnSuccessListener(this::applyEditStep)
+                .addOnFailureListener(e -> uiState.setValue(new UiState(false, e.getMessage())));
+    }
+
+    /**
+     * Applies again the edit the last undo reverted.
+     */
+    public void redoEdit() {
+        String sid = sessionId.getValue();
+        if (sid == null || sid.isEmpty()) return;
+        repo.redoEdit(sid)
+                .addOnSuccessListener(this::applyEditStep)
+                .addOnFailureListener(e -> uiState.setValue(new UiState(false, e.getMessage())));
+    }
+
+    private void applyEditStep(@NonNull EditStepResult result) {
+        if (result.item == null) return;
+        int idx = result.item.getIndex();
+        modifiedIdx.add(idx);
+        updateRowModifiedOnly(idx);
+        applySavedRows(Collections.singletonList(result.item));
+        debounceAutosave();
+    }
+
+    /**
+     * Marks rows whose unsaved edits the journal replayed on open, and saves them to the file;
+     * or reports that they could not be replayed.
+     */
+    private void applyRecovered(@NonNull OpenBundleResult result) {
+        recoveryError.setValue(result.recoveryError);
+        int[] recovered = result.recovered;
+        if (recovered == null || recovered.length == 0) return;
+        for (int idx : recovered) {
+            modifiedIdx.add(idx);
+            updateRowModifiedOnly(idx);
+        }
+        publish();
+        debounceAutosave();
+    }
+
+    /**
+     * Drops the journaled edits that could not be replayed; the bundle stays as the file holds
+     * it. {@link #reload()} tries them again instead.
+     */
+    public void discardRecovery() {
+        String sid = sessionId.getValue();
+        if (sid == null || sid.isEmpty()) return;
+        repo.discardJournal(sid)
+                .addOnSuccessListener(v -> recoveryError.setValue(null))
+                .addOnFailureListener(e -> uiState.setValue(new UiState(false, e.getMessage())));
+    }
+
     public void markItemModified(int idx) {
         modifiedIdx.add(idx);
         updateRowModifiedOnly(idx);
@@ -427,10 +641,38 @@ public class BundleViewerViewModel extends AndroidViewModel {
 
         uiState.setValue(new UiState(true, exportingText));
 
+        String sid = sessionId.getValue();
+        SaveCompression target = exportCompression;
+        File src = new File(path);
+        repo.getBundleCompression(path)
+                .addOnSuccessListener(current -> {
+                    if (sid == null || sid.isEmpty() || target == SaveCompression.ORIGINAL
+                            || current == target) {
+                        copyBundleToUri(src, dest, false, onSuccess, onError);
+                        return;
+                    }
+                    // Autosaves left the working copy in a faster compression; the exported
+                    // file gets the bundle's own back
+                    File out = new File(getApplication().getCacheDir(), "export_bundle");
+                    repo.saveBundle(sid, out.getAbsolutePath(), target)
+                            .addOnSuccessListener(result ->
+                                    copyBundleToUri(out, dest, true, onSuccess, onError))
+                            .addOnFailureListener(e -> {
+                                uiState.setValue(new UiState(false, null));
+                                onError.accept(e.getMessage());
+                            });
+                })
+                .addOnFailureListener(e -> copyBundleToUri(src, dest, false, onSuccess, onError));
+    }
+
+    private void copyBundleToUri(@NonNull File src,
+                                 @NonNull Uri dest,
+                                 boolean deleteAfter,
+                                 @NonNull Runnable onSuccess,
+                                 @NonNull Consumer<String> onError) {
         new Thread(() -> {
             String err = null;
             try {
-                File src = new File(path);
                 if (!src.exists()) {
                     throw new RuntimeException("Input file does not exist");
                 }
@@ -438,6 +680,11 @@ public class BundleViewerViewModel extends AndroidViewModel {
                 DocumentUtil.copyFileToUri(getApplication().getApplicationContext(), src, dest);
             } catch (Exception e) {
                 err = e.getMessage();
+            } finally {
+                if (deleteAfter) {
+                    //noinspection ResultOfMethodCallIgnored
+                    src.delete();
+                }
             }
 
             String finalErr = err;
@@ -449,84 +696,103 @@ public class BundleViewerViewModel extends AndroidViewModel {
         }).start();
     }
 
+    public boolean isBatchExportRunning() {
+        return batchExport != null;
+    }
+
+    /**
+     * Exports every object of the current filtered list into the document tree
+     * {@code treeUri}, reporting progress and the final counts through the status line.
+     */
+    public void exportFilteredToTree(@NonNull Uri treeUri) {
+        String sid = sessionId.getValue();
+        ObjectTable.Rows list = items.getValue();
+        if (sid == null || sid.isEmpty() || batchExport != null) {
+            return;
+        }
+        if (list == null || list.size() == 0) {
+            uiState.setValue(new UiState(false,
+                    getApplication().getString(R.string.message_nothing_to_export)));
+            return;
+        }
+
+        int[] indices = new int[list.size()];
+        for (int i = 0; i < indices.length; i++) indices[i] = list.index(i);
+
+        int generation = ++batchExportGeneration;
+        batchExport = new BatchExportJob(getApplication(), repo, sid, treeUri, indices,
+                new BatchExportJob.Listener() {
+                    @Override
+                    public void onProgress(@NonNull BatchExportJob.Progress p) {
+                        if (generation != batchExportGeneration) return;
+                        uiState.setValue(new UiState(true, getApplication().getString(
+                                R.string.message_batch_exporting, p.done(), p.total())));
+                    }
+
+                    @Override
+                    public void onFinished(@NonNull BatchExportJob.Progress p) {
+                        if (generation != batchExportGeneration) return;
+                        batchExport = null;
+                        uiState.setValue(new UiState(false, getApplication().getString(
+                                p.cancelled() ? R.string.message_batch_export_cancelled
+                                        : R.string.message_batch_export_done,
+                                p.written(), p.skipped(), p.failed())));
+                    }
+                });
+        uiState.setValue(new UiState(true, getApplication().getString(
+                R.string.message_batch_exporting, 0, indices.length)));
+        batchExport.start();
+    }
+
+    public void cancelBatchExport() {
+        if (batchExport != null) {
+            batchExport.cancel();
+        }
+    }
+
     public void closeBundleState() {
         String sid = sessionId.getValue();
         if (sid != null && !sid.isEmpty()) {
             try { repo.closeBundle(sid); } catch (Exception ignored) {}
         }
 
+        openGeneration++;
+        if (batchExport != null) {
+            batchExport.cancel();
+            batchExport = null;
+            batchExportGeneration++;
+        }
         sessionId.setValue(null);
         currentPath.setValue(null);
+        recoveryError.setValue(null);
 
-        rawItems.clear();
-        items.setValue(new ArrayList<>());
+        table.clear();
+        filterEngine.clear();
+        thumbnails.close();
+        items.setValue(null);
 
         modifiedIdx.clear();
         autoSaving = false;
+        clearPendingNames();
 
         main.removeCallbacks(autoSaveRunnable);
-        main.removeCallbacks(autoReloadRunnable);
 
         uiState.setValue(new UiState(false, null));
         objectActions.setValue(ObjectActionsState.idle());
     }
 
+    /**
+     * Hands the current table view to the filter engine; the result replaces the list once
+     * it is ready, unless a newer publish superseded it.
+     */
     private void publish() {
         FilterState fs = filterState.getValue();
         if (fs == null) fs = FilterState.none();
 
-        ArrayList<ObjectItem> out = new ArrayList<>(rawItems.size());
-        for (ObjectItem it : rawItems) {
-            if (it == null) continue;
-            if (passesFilter(it, fs)) out.add(it);
-        }
-
-        out.sort(getComparator(sortMode));
-        items.setValue(out);
-    }
-
-    private boolean passesFilter(@NonNull ObjectItem it, @NonNull FilterState fs) {
-        // edited only
-        if (fs.editedOnly && !it.isModified()) return false;
-
-        // size range
-        long size = (it.getBytes() != null) ? it.getBytes() : -1;
-        if (fs.minBytes != null) {
-            if (size < 0 || size < fs.minBytes) return false;
-        }
-        if (fs.maxBytes != null) {
-            if (size < 0 || size > fs.maxBytes) return false;
-        }
-
-        // type filter
-        if (!fs.types.isEmpty()) {
-            String t = safe(it.getType());
-            boolean ok = false;
-            for (String allowed : fs.types) {
-                if (allowed == null) continue;
-                if (t.equalsIgnoreCase(allowed)) { ok = true; break; }
-            }
-            if (!ok) return false;
-        }
-
-        // query filter (name/type/id/index)
-        String q = fs.query;
-        if (q != null && !q.trim().isEmpty()) {
-            String nq = q.trim().toLowerCase(Locale.ROOT);
-
-            String name = safe(it.getName()).toLowerCase(Locale.ROOT);
-            String type = safe(it.getType()).toLowerCase(Locale.ROOT);
-
-            String idx = String.valueOf(it.getIndex());
-            String id = String.valueOf(it.getId());
-
-            return name.contains(nq) ||
-                    type.contains(nq) ||
-                    idx.contains(nq) ||
-                    id.contains(nq);
-        }
-
-        return true;
+        ObjectQuery query = new ObjectQuery(fs.query, fs.types, fs.editedOnly,
+                fs.minBytes, fs.maxBytes, sortMode);
+        filterEngine.submit(table.columns(), query,
+                (columns, rows, count) -> items.setValue(columns.rows(rows, count)));
     }
 
     private void debounceAutosave() {
@@ -548,91 +814,51 @@ public class BundleViewerViewModel extends AndroidViewModel {
         }
         autoSaving = true;
 
-        repo.saveBundle(sid, path)
-                .addOnSuccessListener(ok -> {
+        // Recompressing with LZMA or LZ4HC on every edit is what makes autosave slow. A bundle
+        // whose compression could not be told keeps its own, as export could not put it back.
+        SaveCompression compression = exportCompression == SaveCompression.NONE
+                || exportCompression == SaveCompression.ORIGINAL
+                ? exportCompression : SaveCompression.LZ4;
+        int generation = openGeneration;
+        repo.saveBundle(sid, path, compression)
+                .addOnSuccessListener(result -> {
                     autoSaving = false;
-                    if (Boolean.TRUE.equals(ok)) {
-                        main.removeCallbacks(autoReloadRunnable);
-                        main.postDelayed(autoReloadRunnable, 450);
-                    }
+                    if (generation != openGeneration) return;
+                    // The session stays open; only the rows the edits touched change
+                    applySavedRows(result.changed);
                 })
                 .addOnFailureListener(e -> autoSaving = false);
     }
 
-    private void updateRowModifiedOnly(int editedIdx) {
-        ArrayList<ObjectItem> newList = new ArrayList<>(rawItems.size());
-        boolean changed = false;
+    private void applySavedRows(@Nullable List<ObjectItem> changed) {
+        if (changed == null || changed.isEmpty()) return;
 
-        for (ObjectItem it : rawItems) {
-            if (it != null && it.getIndex() == editedIdx) {
-                ObjectItem copy = copyItem(it);
-                copy.setModified(true);
-                newList.add(copy);
-                changed = true;
-            } else {
-                newList.add(it);
-            }
-        }
-
-        if (changed) {
-            rawItems.clear();
-            rawItems.addAll(newList);
+        for (ObjectItem it : changed) {
+            int row = table.rowOf(it.getIndex());
+            if (row < 0) continue;
+            Long bytes = it.getBytes();
+            if (bytes != null) table.setBytes(row, bytes);
+            table.setResolvedName(row, it.getName());
         }
+        publish();
     }
 
-    @NonNull
-    private static Comparator<ObjectItem> getComparator(@NonNull SortMode mode) {
-        return switch (mode) {
-            case NAME -> (a, c) -> {
-                String an = safe(a.getName());
-                String cn = safe(c.getName());
-                int r = an.compareToIgnoreCase(cn);
-                return r != 0 ? r : Integer.compare(a.getIndex(), c.getIndex());
-            };
-            case TYPE -> (a, c) -> {
-                String at = safe(a.getType());
-                String ct = safe(c.getType());
-                int r = at.compareToIgnoreCase(ct);
-                return r != 0 ? r : Integer.compare(a.getIndex(), c.getIndex());
-            };
-            case SIZE -> (a, c) -> {
-                long as = (a.getBytes() != null) ? a.getBytes() : -1;
-                long cs = (c.getBytes() != null) ? c.getBytes() : -1;
-                int r = Long.compare(cs, as);
-                return r != 0 ? r : Integer.compare(a.getIndex(), c.getIndex());
-            };
-            case EDITED -> (a, c) -> {
-                int ae = a.isModified() ? 1 : 0;
-                int ce = c.isModified() ? 1 : 0;
-                int r = Integer.compare(ce, ae);
-                return r != 0 ? r : Integer.compare(a.getIndex(), c.getIndex());
-            };
-            default -> Comparator.comparingInt(ObjectItem::getIndex);
-        };
-    }
-
-    @NonNull
-    private static String safe(@Nullable String s) {
-        return s == null ? "" : s;
-    }
-
-    @NonNull
-    private static ObjectItem copyItem(@NonNull ObjectItem it) {
-        ObjectItem c = new ObjectItem();
-        c.setIndex(it.getIndex());
-        c.setName(it.getName());
-        c.setType(it.getType());
-        c.setId(it.getId());
-        c.setBytes(it.getBytes());
-        c.setModified(it.isModified());
-        return c;
+    private void updateRowModifiedOnly(int editedIdx) {
+        int row = table.rowOf(editedIdx);
+        if (row >= 0) {
+            table.setModified(row, true);
+            thumbnails.invalidate(editedIdx, table.pathId(row));
+        }
     }
 
     @Override
     protected void onCleared() {
         super.onCleared();
         main.removeCallbacks(autoSaveRunnable);
-        main.removeCallbacks(autoReloadRunnable);
+        main.removeCallbacks(resolveNamesRunnable);
+        cancelBatchExport();
+        thumbnails.shutdown();
+        filterEngine.shutdown();
         repo.shutdown();
     }
 }
\ No newline at end of file
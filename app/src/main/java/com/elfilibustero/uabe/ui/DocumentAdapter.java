@@ -0,0 +1,126 @@
+package com.elfilibustero.uabe.ui;
+
+import android.graphics.Typeface;
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.elfilibustero.uabe.databinding.RowDocumentLineBinding;
+import com.elfilibustero.uabe.util.TextDocument;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Rows of a {@link TextDocument}, bound only while on screen. JSON objects and arrays fold
+ * down to their opening row.
+ */
+public class DocumentAdapter extends RecyclerView.Adapter<DocumentAdapter.VH> {
+
+    public interface Listener {
+        void onRowClick(int row);
+    }
+
+    private final TextDocument doc;
+    private final Listener listener;
+    private final BitSet collapsed = new BitSet();
+    // Document row shown at each adapter position
+    private int[] visible = new int[0];
+
+    public DocumentAdapter(@NonNull TextDocument doc, @NonNull Listener listener) {
+        this.doc = doc;
+        this.listener = listener;
+        setHasStableIds(true);
+        rebuild();
+    }
+
+    /**
+     * Rebinds {@code row} after it was edited, if it is visible.
+     */
+    public void rowChanged(int row) {
+        int pos = Arrays.binarySearch(visible, row);
+        if (pos >= 0) {
+            notifyItemChanged(pos);
+        }
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return visible[position];
+    }
+
+    @Override
+    public int getItemCount() {
+        return visible.length;
+    }
+
+    @NonNull
+    @Override
+    public VH onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        RowDocumentLineBinding b = RowDocumentLineBinding.inflate(
+                LayoutInflater.from(parent.getContext()), parent, false
+        );
+        return new VH(b);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull VH h, int position) {
+        int row = visible[position];
+        boolean folded = collapsed.get(row);
+        boolean foldable = doc.getFoldEnd(row) > row;
+
+        h.b.lineNumber.setText(String.valueOf(row + 1));
+        h.b.fold.setText(!foldable ? "" : folded ? "▸" : "▾");
+        h.b.fold.setOnClickListener(foldable ? v -> toggle(row) : null);
+        h.b.fold.setClickable(foldable);
+
+        String text = doc.getRow(row);
+        h.b.text.setText(folded ? text + " …" : text);
+        h.b.text.setTypeface(Typeface.MONOSPACE,
+                doc.isEdited(row) ? Typeface.BOLD : Typeface.NORMAL);
+
+        h.itemView.setOnClickListener(v -> listener.onRowClick(row));
+    }
+
+    private void toggle(int row) {
+        if (collapsed.get(row)) {
+            collapsed.clear(row);
+        } else {
+            collapsed.set(row);
+        }
+        rebuild();
+        notifyDataSetChanged();
+    }
+
+    private void rebuild() {
+        int count = doc.getRowCount();
+        if (collapsed.isEmpty()) {
+            if (visible.length != count) {
+                visible = new int[count];
+                for (int i = 0; i < count; i++) visible[i] = i;
+            }
+            return;
+        }
+        int[] out = new int[count];
+        int n = 0;
+        for (int row = 0; row < count; row++) {
+            out[n++] = row;
+            if (collapsed.get(row)) {
+                // Skip to the closing row, which stays visible
+                row = doc.getFoldEnd(row) - 1;
+            }
+        }
+        visible = Arrays.copyOf(out, n);
+    }
+
+    static class VH extends RecyclerView.ViewHolder {
+        final RowDocumentLineBinding b;
+
+        VH(@NonNull RowDocumentLineBinding b) {
+            super(b.getRoot());
+            this.b = b;
+        }
+    }
+}
@@ -1,30 +1,33 @@
 package com.elfilibustero.uabe.ui;
 
 import android.app.Dialog;
-import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.util.DisplayMetrics;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.EditText;
 import android.widget.FrameLayout;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.LinearLayoutManager;
 
 import com.elfilibustero.f3d.F3dNative;
 import com.elfilibustero.f3d.MainView;
 import com.elfilibustero.uabe.R;
 import com.elfilibustero.uabe.databinding.BottomsheetEditObjectBinding;
-import com.elfilibustero.uabe.python.repo.ObjectData;
+import com.elfilibustero.uabe.databinding.EditTextItemBinding;
 import com.elfilibustero.uabe.python.repo.UnityPyRepositoryImpl;
+import com.elfilibustero.uabe.util.TextDocument;
 import com.google.android.material.bottomsheet.BottomSheetBehavior;
 import com.google.android.material.bottomsheet.BottomSheetDialog;
 import com.google.android.material.bottomsheet.BottomSheetDialogFragment;
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 
 import java.io.File;
 import java.io.IOException;
@@ -41,6 +44,9 @@ public class EditObjectBottomSheet extends BottomSheetDialogFragment {
     private static final String ARG_TYPE = "type";
     private static final String ARG_ID = "id";
 
+    // Data larger than this is paged through a TextDocument instead of one EditText
+    private static final long MAX_INLINE_BYTES = 256 * 1024;
+
     @NonNull
     public static EditObjectBottomSheet newInstance(String sessionId, int idx, String type, long id) {
         Bundle b = new Bundle();
@@ -70,7 +76,18 @@ public class EditObjectBottomSheet extends BottomSheetDialogFragment {
     private String sessionId;
     private int idx;
     private String type;
-
+    // Open tile source of the texture shown in the tiled viewer
+    @Nullable
+    private String tileToken;
+    // Large object data, read from dataFile a row at a time
+    @Nullable
+    private TextDocument document;
+    @Nullable
+    private DocumentAdapter documentAdapter;
+    @Nullable
+    private File dataFile;
+    @Nullable
+    private File editedFile;
 
     public void setCallback(Callback callback) {
         this.callback = callback;
@@ -135,59 +152,135 @@ public class EditObjectBottomSheet extends BottomSheetDialogFragment {
                         Toast.LENGTH_SHORT).show();
                 return;
             }
+            loadModel();
+            return;
         }
 
-        unityPyRepository.getObjectData(sessionId, idx)
-                .addOnSuccessListener(result -> {
-                    switch (type) {
-                        case "Mesh":
-                            loadModel(result);
-                            return;
-                        case "Texture2D":
-                            loadTexture2d(result);
-                            return;
+        if ("Texture2D".equals(type)) {
+            loadTexture2d();
+            return;
+        }
+
+        // Written straight to a file; small data goes into the text field, anything bigger is
+        // shown a page of rows at a time and never held in memory as a whole
+        File file = new File(requireContext().getCacheDir(), "object_" + idx + ".txt");
+        dataFile = file;
+        unityPyRepository.writeObjectData(sessionId, idx, file)
+                .addOnSuccessListener(io, size -> {
+                    try {
+                        if (size > MAX_INLINE_BYTES) {
+                            TextDocument doc = TextDocument.open(file, !"TextAsset".equals(type));
+                            main.post(() -> showDocument(doc));
+                        } else {
+                            String data = new String(Files.readAllBytes(file.toPath()),
+                                    StandardCharsets.UTF_8);
+                            main.post(() -> showText(data));
+                        }
+                    } catch (IOException e) {
+                        main.post(() -> onLoadFailed(e));
                     }
+                })
+                .addOnFailureListener(this::onLoadFailed);
+    }
 
-                    setLoading(false, null);
-                    String data = new String(result.getData(), StandardCharsets.UTF_8);
-                    boolean isDataEmpty = data.isEmpty();
+    private void showText(@NonNull String data) {
+        if (b == null) {
+            return;
+        }
+        boolean isDataEmpty = data.isEmpty();
 
-                    b.tilText.setVisibility(View.VISIBLE);
-                    b.btnSave.setVisibility(View.VISIBLE);
-                    b.txt2dContainer.setVisibility(View.GONE);
-                    b.modelContainer.setVisibility(View.GONE);
+        b.tilText.setVisibility(View.VISIBLE);
+        b.btnSave.setVisibility(View.VISIBLE);
+        b.txt2dContainer.setVisibility(View.GONE);
+        b.modelContainer.setVisibility(View.GONE);
 
-                    b.etText.setText(data);
-                    b.etText.setEnabled(!isDataEmpty);
-                    b.tilText.setHint(!isDataEmpty ? "Object data" : "Editing for this object is not supported");
-                    setLoading(false, null);
-                    b.btnSave.setEnabled(!isDataEmpty);
+        b.etText.setText(data);
+        b.etText.setEnabled(!isDataEmpty);
+        b.tilText.setHint(!isDataEmpty ? "Object data" : "Editing for this object is not supported");
+        setLoading(false, null);
+        b.btnSave.setEnabled(!isDataEmpty);
+    }
+
+    private void showDocument(@NonNull TextDocument doc) {
+        if (b == null) {
+            closeDocument(doc);
+            return;
+        }
+        document = doc;
+        documentAdapter = new DocumentAdapter(doc, this::editRow);
+
+        b.tilText.setVisibility(View.GONE);
+        b.txt2dContainer.setVisibility(View.GONE);
+        b.modelContainer.setVisibility(View.GONE);
+        b.btnSave.setVisibility(View.VISIBLE);
+        b.document.setVisibility(View.VISIBLE);
+        b.document.setLayoutManager(new LinearLayoutManager(requireContext()));
+        b.document.setAdapter(documentAdapter);
+
+        setLoading(false, null);
+        // Nothing to save until a row is edited
+        b.btnSave.setEnabled(false);
+    }
+
+    private void editRow(int row) {
+        TextDocument doc = document;
+        if (doc == null) {
+            return;
+        }
+        if (!doc.isEditable(row)) {
+            Toast.makeText(requireContext(),
+                    getString(R.string.message_edit_line_not_utf8, row + 1),
+                    Toast.LENGTH_SHORT).show();
+            return;
+        }
+        EditTextItemBinding binding = EditTextItemBinding.inflate(getLayoutInflater());
+        EditText editText = binding.textInputLayout.getEditText();
+        assert editText != null;
+        editText.setText(doc.getRow(row));
+        new MaterialAlertDialogBuilder(requireContext())
+                .setTitle(getString(R.string.message_edit_line, row + 1))
+                .setView(binding.getRoot())
+                .setPositiveButton(R.string.text_edit, (d, w) -> {
+                    String text = editText.getText().toString();
+                    if (text.equals(doc.getRow(row))) {
+                        return;
+                    }
+                    // A row stays one row; a line break would shift every row after it
+                    doc.setRow(row, text.replace("\r", "").replace('\n', ' '));
+                    if (documentAdapter != null) {
+                        documentAdapter.rowChanged(row);
+                    }
+                    if (b != null) {
+                        b.btnSave.setEnabled(true);
+                    }
                 })
-                .addOnFailureListener(e -> {
-                    setLoading(false, null);
-                    Toast.makeText(requireContext(), e.getMessage(),
-                            Toast.LENGTH_SHORT).show();
-                    dismiss();
-                });
+                .setNegativeButton(R.string.text_cancel, null)
+                .show();
     }
 
-    private void loadModel(ObjectData data) {
+    private void onLoadFailed(@NonNull Throwable e) {
+        setLoading(false, null);
+        if (isAdded()) {
+            Toast.makeText(requireContext(), e.getMessage(), Toast.LENGTH_SHORT).show();
+            dismiss();
+        }
+    }
+
+    private void loadModel() {
         b.tilText.setVisibility(View.GONE);
         b.txt2dContainer.setVisibility(View.GONE);
         b.btnSave.setVisibility(View.GONE);
         b.modelContainer.setVisibility(View.VISIBLE);
-        io.execute(() -> {
-            Context ctx = requireContext();
-            File tmp = new File(ctx.getCacheDir(), "preview.obj");
-            try {
-                Files.write(tmp.toPath(), data.getData());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-            main.post(() -> {
-                setLoading(false, "Preview");
-                if (tmp.exists()) {
-                    b.model.updateFilePath(tmp.getAbsolutePath());
+        // Binary glTF straight from the mesh buffers when possible; f3d reads it far faster
+        // than OBJ text
+        unityPyRepository.writeMeshPreview(sessionId, idx, requireContext().getCacheDir())
+                .addOnSuccessListener(previewPath -> {
+                    setLoading(false, "Preview");
+                    if (b == null) {
+                        return;
+                    }
+                    File tmp = new File(previewPath);
+                    b.model.updateFilePath(previewPath);
                     b.model.setOnLoadSceneListener(new MainView.OnLoadSceneListener() {
                         @Override
                         public void onLoadScene(String path) {
@@ -202,37 +295,101 @@ public class EditObjectBottomSheet extends BottomSheetDialogFragment {
                                     Toast.LENGTH_SHORT).show());
                         }
                     });
-                }
-            });
-        });
+                })
+                .addOnFailureListener(e -> {
+                    setLoading(false, null);
+                    Toast.makeText(requireContext(),
+                            getString(R.string.message_preview_failed_add, e.getMessage()),
+                            Toast.LENGTH_SHORT).show();
+                });
     }
 
-    private void loadTexture2d(ObjectData data) {
+    private void loadTexture2d() {
         b.tilText.setVisibility(View.GONE);
         b.txt2dContainer.setVisibility(View.VISIBLE);
         b.btnSave.setVisibility(View.GONE);
         b.modelContainer.setVisibility(View.GONE);
-        io.execute(() -> {
-            if (data.getData() == null || data.getData().length == 0) {
-                Toast.makeText(requireContext(), R.string.message_preview_failed_add,
-                        Toast.LENGTH_SHORT).show();
-                return;
-            }
-            Bitmap bitmap = BitmapFactory.decodeByteArray(
-                    data.getData(),
-                    0,
-                    data.getData().length
-            );
-            main.post(() -> {
-                setLoading(false, "Preview");
-                if (bitmap != null) {
-                    b.texture2d.setImageBitmap(bitmap);
-                }
-            });
-        });
+
+        DisplayMetrics dm = getResources().getDisplayMetrics();
+        int maxSize = Math.max(dm.widthPixels, dm.heightPixels);
+
+        // Anything bigger than the screen goes to the tiled viewer, which decodes only the
+        // region in view at the current zoom instead of one huge bitmap
+        unityPyRepository.openTileSource(sessionId, idx, TiledTextureView.TILE_SIZE)
+                .addOnSuccessListener(info -> {
+                    if (b == null || Math.max(info.width, info.height) <= maxSize) {
+                        unityPyRepository.closeTileSource(info.token);
+                        if (b != null) {
+                            loadTexturePreview(maxSize);
+                        }
+                        return;
+                    }
+                    tileToken = info.token;
+                    setLoading(false, "Preview");
+                    b.texture2d.setVisibility(View.GONE);
+                    b.texture2dTiled.setVisibility(View.VISIBLE);
+                    b.texture2dTiled.setSource(info.width, info.height, info.levelCount,
+                            this::loadTile);
+                })
+                .addOnFailureListener(e -> loadTexturePreview(maxSize));
+    }
+
+    private void loadTexturePreview(int maxSize) {
+        // Raw pixels straight into the bitmap; no PNG encode in Python or decode here
+        // Nothing larger than the screen can be shown without zooming
+        unityPyRepository.getTexturePixels(sessionId, idx, maxSize)
+                .addOnSuccessListener(io, pixels -> {
+                    Bitmap bitmap;
+                    try {
+                        bitmap = pixels.toBitmap();
+                    } catch (Throwable t) {
+                        main.post(() -> onTextureFailed(t));
+                        return;
+                    }
+                    main.post(() -> {
+                        setLoading(false, "Preview");
+                        if (b != null) {
+                            b.texture2d.setImageBitmap(bitmap);
+                        }
+                    });
+                })
+                .addOnFailureListener(this::onTextureFailed);
+    }
+
+    private void loadTile(int level, int x, int y, int w, int h,
+                          @NonNull TiledTextureView.TileCallback callback) {
+        if (tileToken == null) {
+            callback.onTile(null);
+            return;
+        }
+        unityPyRepository.readTile(tileToken, level, x, y, w, h)
+                .addOnSuccessListener(io, pixels -> {
+                    Bitmap bitmap;
+                    try {
+                        bitmap = pixels.toBitmap();
+                    } catch (Throwable t) {
+                        bitmap = null;
+                    }
+                    Bitmap tile = bitmap;
+                    main.post(() -> callback.onTile(tile));
+                })
+                .addOnFailureListener(e -> callback.onTile(null));
+    }
+
+    private void onTextureFailed(@NonNull Throwable t) {
+        setLoading(false, null);
+        if (isAdded()) {
+            Toast.makeText(requireContext(),
+                    getString(R.string.message_preview_failed_add, t.getMessage()),
+                    Toast.LENGTH_SHORT).show();
+        }
     }
 
     private void save() {
+        if (document != null) {
+            saveDocument(document);
+            return;
+        }
         final boolean doData = b.tilText.getVisibility() == View.VISIBLE;
         if (!doData) {
             return;
@@ -243,21 +400,49 @@ public class EditObjectBottomSheet extends BottomSheetDialogFragment {
         setLoading(true, getString(R.string.message_saving));
 
         unityPyRepository.setObjectData(sessionId, idx, dataText.getBytes())
-                .addOnSuccessListener(result -> {
-                    setLoading(false, null);
-                    Toast.makeText(requireContext(), R.string.text_saved, Toast.LENGTH_SHORT)
-                            .show();
+                .addOnSuccessListener(result -> onSaved())
+                .addOnFailureListener(this::onSaveFailed);
+    }
 
-                    if (callback != null) {
-                        callback.onEdited(idx);
-                    }
+    private void saveDocument(@NonNull TextDocument doc) {
+        setLoading(true, getString(R.string.message_saving));
 
-                    dismiss();
-                })
-                .addOnFailureListener(e -> {
-                    setLoading(false, null);
-                    Toast.makeText(requireContext(), e.getMessage(), Toast.LENGTH_LONG).show();
-                });
+        // Only the edited rows are re-encoded; Python then parses the file itself
+        File out = new File(requireContext().getCacheDir(), "object_" + idx + ".edited");
+        editedFile = out;
+        io.execute(() -> {
+            try {
+                doc.writeTo(out);
+            } catch (IOException e) {
+                main.post(() -> onSaveFailed(e));
+                return;
+            }
+            unityPyRepository.setObjectDataFromFile(sessionId, idx, out)
+                    .addOnSuccessListener(result -> onSaved())
+                    .addOnFailureListener(this::onSaveFailed);
+        });
+    }
+
+    private void onSaved() {
+        setLoading(false, null);
+        if (!isAdded()) {
+            return;
+        }
+        Toast.makeText(requireContext(), R.string.text_saved, Toast.LENGTH_SHORT)
+                .show();
+
+        if (callback != null) {
+            callback.onEdited(idx);
+        }
+
+        dismiss();
+    }
+
+    private void onSaveFailed(@NonNull Throwable e) {
+        setLoading(false, null);
+        if (isAdded()) {
+            Toast.makeText(requireContext(), e.getMessage(), Toast.LENGTH_LONG).show();
+        }
     }
 
     private void setLoading(boolean loading, String title) {
@@ -275,13 +460,38 @@ public class EditObjectBottomSheet extends BottomSheetDialogFragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        if (tileToken != null) {
+            unityPyRepository.closeTileSource(tileToken);
+            tileToken = null;
+        }
+        if (document != null) {
+            closeDocument(document);
+            document = null;
+            documentAdapter = null;
+        }
         b = null;
     }
 
+    private void closeDocument(@NonNull TextDocument doc) {
+        try {
+            doc.close();
+        } catch (IOException ignored) {
+        }
+    }
+
     @Override
     public void onDestroy() {
         super.onDestroy();
         io.shutdownNow();
+        deleteTemp(dataFile);
+        deleteTemp(editedFile);
         unityPyRepository.shutdown();
     }
+
+    private static void deleteTemp(@Nullable File file) {
+        if (file != null) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
 }
@@ -1,43 +1,121 @@
 package com.elfilibustero.uabe.ui;
 
+import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ImageView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.DiffUtil;
-import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.elfilibustero.uabe.R;
 import com.elfilibustero.uabe.databinding.RowObjectItemBinding;
+import com.elfilibustero.uabe.managers.ThumbnailLoader;
 import com.elfilibustero.uabe.model.ObjectItem;
+import com.elfilibustero.uabe.model.ObjectTable;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-
-public class ObjectAdapter extends ListAdapter<ObjectItem, ObjectAdapter.VH> {
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shows {@link ObjectTable.Rows}. Lists are diffed by object index straight from the table
+ * columns, off the main thread; an {@link ObjectItem} is only built for a row being bound or
+ * clicked, and not kept.
+ */
+public class ObjectAdapter extends RecyclerView.Adapter<ObjectAdapter.VH> {
+
+    private static final ExecutorService DIFFER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ObjectDiff");
+        t.setDaemon(true);
+        return t;
+    });
 
     public interface Listener {
         void onClick(ObjectItem item);
 
         void onLongClick(ObjectItem item);
+
+        /**
+         * Called whenever a row is fully bound, so work can follow what is actually on screen.
+         */
+        default void onBind(ObjectItem item) {
+        }
     }
 
     private final Listener listener;
+    @Nullable
+    private ThumbnailLoader thumbnails;
+    // Holders by the object index they show, for delivering thumbnails
+    private final HashMap<Integer, VH> bound = new HashMap<>();
+    private final Handler main = new Handler(Looper.getMainLooper());
+
+    @Nullable
+    private ObjectTable.Rows rows;
+    private int generation;
 
     public ObjectAdapter(Listener listener) {
-        super(DIFF);
         this.listener = listener;
         setHasStableIds(true);
     }
 
+    /**
+     * Replaces the shown rows; null shows none. Changes are dispatched once the diff against
+     * the current rows is ready, unless a newer list was submitted meanwhile.
+     */
+    public void submit(@Nullable ObjectTable.Rows next) {
+        int gen = ++generation;
+        ObjectTable.Rows prev = rows;
+        if (prev == next) {
+            return;
+        }
+        if (prev == null || next == null || prev.size() == 0 || next.size() == 0) {
+            rows = next;
+            notifyDataSetChanged();
+            return;
+        }
+        DIFFER.execute(() -> {
+            DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new RowDiff(prev, next), true);
+            main.post(() -> {
+                if (gen != generation) return;
+                rows = next;
+                diff.dispatchUpdatesTo(this);
+            });
+        });
+    }
+
+    @Override
+    public int getItemCount() {
+        return rows != null ? rows.size() : 0;
+    }
+
+    public void setThumbnails(@Nullable ThumbnailLoader thumbnails) {
+        this.thumbnails = thumbnails;
+    }
+
+    /**
+     * Shows a thumbnail that finished loading, if its row is still bound.
+     */
+    public void onThumbnail(int idx, @NonNull Bitmap bitmap) {
+        VH h = bound.get(idx);
+        if (h != null && h.boundIdx == idx) {
+            showThumbnail(h, bitmap);
+        }
+    }
+
     @Override
     public long getItemId(int position) {
-        ObjectItem it = getItem(position);
-        return it != null ? it.getIndex() : RecyclerView.NO_ID;
+        return rows != null ? rows.index(position) : RecyclerView.NO_ID;
     }
 
     @NonNull
@@ -49,6 +127,12 @@ public class ObjectAdapter extends ListAdapter<ObjectItem, ObjectAdapter.VH> {
         return new VH(b);
     }
 
+    @Override
+    public void onViewRecycled(@NonNull VH h) {
+        super.onViewRecycled(h);
+        unbind(h);
+    }
+
     @Override
     public void onBindViewHolder(@NonNull VH h, int position) {
         ObjectItem it = getItem(position);
@@ -58,6 +142,11 @@ public class ObjectAdapter extends ListAdapter<ObjectItem, ObjectAdapter.VH> {
         bindAll(h, it);
     }
 
+    @Nullable
+    private ObjectItem getItem(int position) {
+        return rows != null && position < rows.size() ? rows.item(position) : null;
+    }
+
     @Override
     public void onBindViewHolder(@NonNull VH h, int position, @NonNull List<Object> payloads) {
         if (payloads.isEmpty()) {
@@ -93,11 +182,15 @@ public class ObjectAdapter extends ListAdapter<ObjectItem, ObjectAdapter.VH> {
             h.b.type.setText(type);
 
             // type can affect icon too
-            h.b.icon.setImageResource(typeToIcon(type));
+            bindIcon(h, it, type);
         }
 
         if (p.getBoolean("modified")) {
             h.b.badge.setVisibility(it.isModified() ? View.VISIBLE : View.GONE);
+            // An edit invalidates the thumbnail
+            if (!p.getBoolean("type")) {
+                bindIcon(h, it, safe(it.getType()));
+            }
         }
 
         if (p.getBoolean("container")) {
@@ -118,6 +211,12 @@ public class ObjectAdapter extends ListAdapter<ObjectItem, ObjectAdapter.VH> {
     }
 
     private void bindAll(@NonNull VH h, @NonNull ObjectItem it) {
+        if (h.boundIdx != it.getIndex()) {
+            unbind(h);
+            h.boundIdx = it.getIndex();
+            bound.put(h.boundIdx, h);
+        }
+
         String name = safe(it.getName());
         if (name.isEmpty()) {
             name = "Unnamed asset";
@@ -134,7 +233,7 @@ public class ObjectAdapter extends ListAdapter<ObjectItem, ObjectAdapter.VH> {
 
         h.b.badge.setVisibility(it.isModified() ? View.VISIBLE : View.GONE);
 
-        h.b.icon.setImageResource(typeToIcon(type));
+        bindIcon(h, it, type);
 
         String container = safe(it.getContainer());
         if (container.isEmpty()) {
@@ -145,6 +244,41 @@ public class ObjectAdapter extends ListAdapter<ObjectItem, ObjectAdapter.VH> {
         }
 
         h.b.subtitle.setText(buildSubtitle(it));
+
+        listener.onBind(it);
+    }
+
+    private void unbind(@NonNull VH h) {
+        if (h.boundIdx < 0) {
+            return;
+        }
+        if (bound.get(h.boundIdx) == h) {
+            bound.remove(h.boundIdx);
+        }
+        if (thumbnails != null) {
+            thumbnails.cancel(h.boundIdx);
+        }
+        h.boundIdx = -1;
+    }
+
+    private void bindIcon(@NonNull VH h, @NonNull ObjectItem it, @NonNull String type) {
+        if (thumbnails != null && ThumbnailLoader.supports(type)) {
+            Bitmap bmp = thumbnails.get(it);
+            if (bmp != null) {
+                showThumbnail(h, bmp);
+                return;
+            }
+            thumbnails.request(it);
+        }
+        h.b.icon.setScaleType(ImageView.ScaleType.CENTER_INSIDE);
+        h.b.icon.setImageTintList(h.iconTint);
+        h.b.icon.setImageResource(typeToIcon(type));
+    }
+
+    private static void showThumbnail(@NonNull VH h, @NonNull Bitmap bitmap) {
+        h.b.icon.setScaleType(ImageView.ScaleType.CENTER_CROP);
+        h.b.icon.setImageTintList(null);
+        h.b.icon.setImageBitmap(bitmap);
     }
 
     @NonNull
@@ -159,10 +293,15 @@ public class ObjectAdapter extends ListAdapter<ObjectItem, ObjectAdapter.VH> {
 
     public static class VH extends RecyclerView.ViewHolder {
         final RowObjectItemBinding b;
+        // The tint type icons are drawn with; thumbnails are shown untinted
+        @Nullable
+        final ColorStateList iconTint;
+        int boundIdx = -1;
 
         VH(@NonNull RowObjectItemBinding b) {
             super(b.getRoot());
             this.b = b;
+            this.iconTint = b.icon.getImageTintList();
         }
     }
 
@@ -231,77 +370,83 @@ public class ObjectAdapter extends ListAdapter<ObjectItem, ObjectAdapter.VH> {
         };
     }
 
-    private static final DiffUtil.ItemCallback<ObjectItem> DIFF =
-            new DiffUtil.ItemCallback<>() {
-
-                @Override
-                public boolean areItemsTheSame(@NonNull ObjectItem a, @NonNull ObjectItem c) {
-                    return a.getIndex() == c.getIndex();
-                }
-
-                @Override
-                public boolean areContentsTheSame(@NonNull ObjectItem a, @NonNull ObjectItem c) {
-                    return a.getIndex() == c.getIndex()
-                            && a.getId() == c.getId()
-                            && eq(a.getType(), c.getType())
-                            && eq(a.getName(), c.getName())
-                            && eq(a.getContainer(), c.getContainer())
-                            && intEq(a.getBytes(), c.getBytes())
-                            && a.isModified() == c.isModified();
-                }
-
-                @Nullable
-                @Override
-                public Object getChangePayload(@NonNull ObjectItem a, @NonNull ObjectItem c) {
-                    Bundle p = new Bundle();
-                    boolean any = false;
-
-                    if (!eq(a.getName(), c.getName())) {
-                        p.putBoolean("name", true);
-                        any = true;
-                    }
-                    if (!eq(a.getType(), c.getType())) {
-                        p.putBoolean("type", true);
-                        any = true;
-                    }
-                    if (a.isModified() != c.isModified()) {
-                        p.putBoolean("modified", true);
-                        any = true;
-                    }
-                    if (!eq(a.getContainer(), c.getContainer())) {
-                        p.putBoolean("container", true);
-                        any = true;
-                    }
-                    if (!intEq(a.getBytes(), c.getBytes())) {
-                        p.putBoolean("bytes", true);
-                        any = true;
-                    }
-                    if (a.getId() != c.getId()) {
-                        p.putBoolean("id", true);
-                        any = true;
-                    }
-
-                    return any ? p : null;
-                }
-
-                private boolean eq(String x, String y) {
-                    if (x == null) {
-                        x = "";
-                    }
-                    if (y == null) {
-                        y = "";
-                    }
-                    return x.equals(y);
-                }
-
-                private boolean intEq(Long x, Long y) {
-                    if (x == null && y == null) {
-                        return true;
-                    }
-                    if (x == null || y == null) {
-                        return false;
-                    }
-                    return x.longValue() == y.longValue();
-                }
-            };
+    /**
+     * Compares two lists by the object index of each row and the columns a row shows.
+     */
+    private static final class RowDiff extends DiffUtil.Callback {
+        private final ObjectTable.Rows a;
+        private final ObjectTable.Rows b;
+
+        RowDiff(@NonNull ObjectTable.Rows a, @NonNull ObjectTable.Rows b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return a.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return b.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPos, int newPos) {
+            return a.index(oldPos) == b.index(newPos);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPos, int newPos) {
+            return getChangePayload(oldPos, newPos) == null;
+        }
+
+        @Nullable
+        @Override
+        public Bundle getChangePayload(int oldPos, int newPos) {
+            ObjectTable.Columns ca = a.columns;
+            ObjectTable.Columns cb = b.columns;
+            int ra = a.row(oldPos);
+            int rb = b.row(newPos);
+            if (ca == cb && ra == rb) {
+                return null;
+            }
+
+            Bundle p = new Bundle();
+            boolean any = false;
+
+            if (!eq(ca.name(ra), cb.name(rb))) {
+                p.putBoolean("name", true);
+                any = true;
+            }
+            if (!ca.type(ra).equals(cb.type(rb))) {
+                p.putBoolean("type", true);
+                any = true;
+            }
+            if (ca.isModified(ra) != cb.isModified(rb)) {
+                p.putBoolean("modified", true);
+                any = true;
+            }
+            if (!eq(ca.container(ra), cb.container(rb))) {
+                p.putBoolean("container", true);
+                any = true;
+            }
+            // Negative sizes are unknown
+            if (Math.max(-1, ca.bytes(ra)) != Math.max(-1, cb.bytes(rb))) {
+                p.putBoolean("bytes", true);
+                any = true;
+            }
+            if (ca.pathId(ra) != cb.pathId(rb)) {
+                p.putBoolean("id", true);
+                any = true;
+            }
+
+            return any ? p : null;
+        }
+
+        private static boolean eq(@Nullable String x, @Nullable String y) {
+            return Objects.equals(x == null ? "" : x, y == null ? "" : y);
+        }
+    }
 }
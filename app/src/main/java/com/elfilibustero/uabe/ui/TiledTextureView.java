@@ -0,0 +1,364 @@
+package com.elfilibustero.uabe.ui;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.util.LruCache;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Pan/zoom viewer for textures too large to hold as one bitmap.
+ * <p>
+ * The image is shown as {@link #TILE_SIZE} square tiles of the level that matches the current
+ * zoom, level 0 being full size and each next one half as large. Only tiles in view are
+ * requested from the {@link TileProvider}, a few at a time, and decoded tiles live in an LRU
+ * bounded by bitmap bytes. While a tile loads, the part of a coarser cached tile covering it
+ * is drawn scaled up, so panning shows a blurry image rather than holes.
+ */
+public class TiledTextureView extends View {
+
+    public static final int TILE_SIZE = 256;
+
+    private static final int MAX_IN_FLIGHT = 2;
+    // Screen pixels per image pixel at the deepest zoom
+    private static final float MAX_SCALE = 8f;
+
+    public interface TileProvider {
+        /**
+         * Loads the {@code w} x {@code h} rectangle at ({@code x}, {@code y}) of {@code level}
+         * and hands it to {@code callback} on the main thread, or null if it failed.
+         */
+        void loadTile(int level, int x, int y, int w, int h, @NonNull TileCallback callback);
+    }
+
+    public interface TileCallback {
+        void onTile(@Nullable Bitmap bitmap);
+    }
+
+    private record TileKey(int level, int col, int row) {
+    }
+
+    private final LruCache<TileKey, Bitmap> tiles;
+    private final HashSet<TileKey> loading = new HashSet<>();
+    // Missing tiles of the last frame, in drawing order
+    private final List<TileKey> wanted = new ArrayList<>();
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect src = new Rect();
+    private final RectF dst = new RectF();
+
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+
+    @Nullable
+    private TileProvider provider;
+    private int imageWidth;
+    private int imageHeight;
+    private int levelCount;
+    private int generation;
+    private int inFlight;
+
+    // view = image * scale + (tx, ty)
+    private float scale;
+    private float tx;
+    private float ty;
+    private boolean fitPending;
+
+    public TiledTextureView(Context context) {
+        this(context, null);
+    }
+
+    public TiledTextureView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        int budget = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8);
+        tiles = new LruCache<>(budget) {
+            @Override
+            protected int sizeOf(@NonNull TileKey key, @NonNull Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+
+        scaleDetector = new ScaleGestureDetector(context,
+                new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+                    @Override
+                    public boolean onScale(@NonNull ScaleGestureDetector d) {
+                        zoomBy(d.getScaleFactor(), d.getFocusX(), d.getFocusY());
+                        return true;
+                    }
+                });
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(@NonNull MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(@Nullable MotionEvent e1, @NonNull MotionEvent e2,
+                                    float dx, float dy) {
+                tx -= dx;
+                ty -= dy;
+                clampTranslation();
+                invalidate();
+                return true;
+            }
+
+            @Override
+            public boolean onDoubleTap(@NonNull MotionEvent e) {
+                // Toggle between fitting the view and one image pixel per screen pixel
+                float fit = fitScale();
+                float target = scale < 1f - 1e-3f ? 1f : fit;
+                zoomBy(target / scale, e.getX(), e.getY());
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Shows an image of {@code width} x {@code height} pixels with {@code levelCount} levels,
+     * fitted to the view. Replaces whatever was shown; tiles of the old image still loading
+     * are dropped when they arrive.
+     */
+    @MainThread
+    public void setSource(int width, int height, int levelCount, @NonNull TileProvider provider) {
+        clear();
+        this.provider = provider;
+        this.imageWidth = width;
+        this.imageHeight = height;
+        this.levelCount = Math.max(1, levelCount);
+        fitPending = true;
+        if (getWidth() > 0 && getHeight() > 0) {
+            fit();
+        }
+        invalidate();
+    }
+
+    /**
+     * Drops the image and every cached tile.
+     */
+    @MainThread
+    public void clear() {
+        generation++;
+        provider = null;
+        imageWidth = 0;
+        imageHeight = 0;
+        inFlight = 0;
+        loading.clear();
+        wanted.clear();
+        tiles.evictAll();
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (fitPending && w > 0 && h > 0) {
+            fit();
+        } else {
+            clampTranslation();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        clear();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (provider == null) {
+            return super.onTouchEvent(event);
+        }
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+            // Keep the bottom sheet or a scrolling parent from taking the gesture
+            getParent().requestDisallowInterceptTouchEvent(true);
+        }
+        boolean handled = scaleDetector.onTouchEvent(event);
+        handled |= gestureDetector.onTouchEvent(event);
+        return handled || super.onTouchEvent(event);
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        super.onDraw(canvas);
+        wanted.clear();
+        if (provider == null || imageWidth <= 0 || imageHeight <= 0) {
+            return;
+        }
+
+        int level = levelFor(scale);
+        int lw = levelWidth(level);
+        int lh = levelHeight(level);
+        // Image pixels per level pixel on each axis
+        float fx = imageWidth / (float) lw;
+        float fy = imageHeight / (float) lh;
+
+        // Visible part of the image, in level pixels
+        float left = Math.max(0f, -tx / scale / fx);
+        float top = Math.max(0f, -ty / scale / fy);
+        float right = Math.min(lw, (getWidth() - tx) / scale / fx);
+        float bottom = Math.min(lh, (getHeight() - ty) / scale / fy);
+        if (right <= left || bottom <= top) {
+            return;
+        }
+
+        int col0 = (int) (left / TILE_SIZE);
+        int row0 = (int) (top / TILE_SIZE);
+        int col1 = (int) Math.ceil(right / TILE_SIZE);
+        int row1 = (int) Math.ceil(bottom / TILE_SIZE);
+        for (int row = row0; row < row1; row++) {
+            for (int col = col0; col < col1; col++) {
+                TileKey key = new TileKey(level, col, row);
+                Bitmap bmp = tiles.get(key);
+                float x0 = col * TILE_SIZE * fx;
+                float y0 = row * TILE_SIZE * fy;
+                float x1 = Math.min(lw, (col + 1) * TILE_SIZE) * fx;
+                float y1 = Math.min(lh, (row + 1) * TILE_SIZE) * fy;
+                if (bmp != null) {
+                    src.set(0, 0, bmp.getWidth(), bmp.getHeight());
+                    drawImageRect(canvas, bmp, x0, y0, x1, y1);
+                    continue;
+                }
+                drawPlaceholder(canvas, level, x0, y0, x1, y1);
+                if (!loading.contains(key)) {
+                    wanted.add(key);
+                }
+            }
+        }
+        if (!wanted.isEmpty()) {
+            post(this::pump);
+        }
+    }
+
+    // Scales up the part of the nearest cached coarser tile that covers image rect (x0, y0)-(x1, y1)
+    private void drawPlaceholder(@NonNull Canvas canvas, int level,
+                                 float x0, float y0, float x1, float y1) {
+        for (int l = level + 1; l < levelCount; l++) {
+            float fx = imageWidth / (float) levelWidth(l);
+            float fy = imageHeight / (float) levelHeight(l);
+            int col = (int) (x0 / fx / TILE_SIZE);
+            int row = (int) (y0 / fy / TILE_SIZE);
+            Bitmap bmp = tiles.get(new TileKey(l, col, row));
+            if (bmp == null) {
+                continue;
+            }
+            float ox = col * TILE_SIZE;
+            float oy = row * TILE_SIZE;
+            src.set((int) Math.floor(x0 / fx - ox), (int) Math.floor(y0 / fy - oy),
+                    (int) Math.ceil(x1 / fx - ox), (int) Math.ceil(y1 / fy - oy));
+            if (!src.intersect(0, 0, bmp.getWidth(), bmp.getHeight())) {
+                continue;
+            }
+            drawImageRect(canvas, bmp, (src.left + ox) * fx, (src.top + oy) * fy,
+                    (src.right + ox) * fx, (src.bottom + oy) * fy);
+            return;
+        }
+    }
+
+    private void drawImageRect(@NonNull Canvas canvas, @NonNull Bitmap bmp,
+                               float x0, float y0, float x1, float y1) {
+        dst.set(x0 * scale + tx, y0 * scale + ty, x1 * scale + tx, y1 * scale + ty);
+        canvas.drawBitmap(bmp, src, dst, paint);
+    }
+
+    private void pump() {
+        TileProvider p = provider;
+        if (p == null) {
+            return;
+        }
+        // Coarsest level first, so every region gets a placeholder early
+        requestTile(p, new TileKey(levelCount - 1, 0, 0));
+        for (TileKey key : wanted) {
+            if (inFlight >= MAX_IN_FLIGHT) break;
+            requestTile(p, key);
+        }
+        wanted.clear();
+    }
+
+    private void requestTile(@NonNull TileProvider p, @NonNull TileKey key) {
+        if (inFlight >= MAX_IN_FLIGHT || loading.contains(key) || tiles.get(key) != null) {
+            return;
+        }
+        int gen = generation;
+        loading.add(key);
+        inFlight++;
+        int x = key.col() * TILE_SIZE;
+        int y = key.row() * TILE_SIZE;
+        int w = Math.min(TILE_SIZE, levelWidth(key.level()) - x);
+        int h = Math.min(TILE_SIZE, levelHeight(key.level()) - y);
+        p.loadTile(key.level(), x, y, w, h, bitmap -> {
+            if (gen != generation) return;
+            inFlight--;
+            // A failed tile stays in loading so it is not asked for again
+            if (bitmap != null) {
+                loading.remove(key);
+                tiles.put(key, bitmap);
+            }
+            invalidate();
+        });
+    }
+
+    private int levelFor(float s) {
+        // Finest level whose pixels are still no smaller than a screen pixel
+        int level = 0;
+        while (level + 1 < levelCount && s * (1 << (level + 1)) <= 1f) {
+            level++;
+        }
+        return level;
+    }
+
+    private int levelWidth(int level) {
+        return Math.max(1, imageWidth >> level);
+    }
+
+    private int levelHeight(int level) {
+        return Math.max(1, imageHeight >> level);
+    }
+
+    private float fitScale() {
+        if (imageWidth <= 0 || imageHeight <= 0 || getWidth() <= 0 || getHeight() <= 0) {
+            return 1f;
+        }
+        return Math.min(getWidth() / (float) imageWidth, getHeight() / (float) imageHeight);
+    }
+
+    private void fit() {
+        fitPending = false;
+        scale = fitScale();
+        clampTranslation();
+        invalidate();
+    }
+
+    private void zoomBy(float factor, float focusX, float focusY) {
+        float fit = fitScale();
+        float next = Math.max(Math.min(fit, 1f), Math.min(scale * factor, Math.max(fit, MAX_SCALE)));
+        float applied = next / scale;
+        tx = focusX - (focusX - tx) * applied;
+        ty = focusY - (focusY - ty) * applied;
+        scale = next;
+        clampTranslation();
+        invalidate();
+    }
+
+    // Centres an axis that fits in the view; otherwise keeps the image edges from leaving it
+    private void clampTranslation() {
+        float w = imageWidth * scale;
+        float h = imageHeight * scale;
+        tx = w <= getWidth() ? (getWidth() - w) / 2f : Math.max(getWidth() - w, Math.min(0f, tx));
+        ty = h <= getHeight() ? (getHeight() - h) / 2f : Math.max(getHeight() - h, Math.min(0f, ty));
+    }
+}
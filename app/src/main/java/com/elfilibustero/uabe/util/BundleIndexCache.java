@@ -0,0 +1,234 @@
+package com.elfilibustero.uabe.util;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.elfilibustero.uabe.model.ObjectItem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk cache of bundle object listings, one versioned file per bundle.
+ * <p>
+ * An entry is only used when the bundle's size, mtime and a sampled content hash still
+ * match, so a changed file always falls back to a full scan.
+ */
+public class BundleIndexCache {
+
+    private static final String TAG = "BundleIndexCache";
+
+    private static final int MAGIC = 0x55414249; // "UABI"
+    private static final int VERSION = 2;
+
+    private static final int SAMPLE_SIZE = 64 * 1024;
+
+    public static final class Entry {
+        @NonNull public final List<String> archives;
+        @NonNull public final List<String> types;
+        @NonNull public final List<ObjectItem> objects;
+
+        Entry(@NonNull List<String> archives, @NonNull List<String> types,
+              @NonNull List<ObjectItem> objects) {
+            this.archives = archives;
+            this.types = types;
+            this.objects = objects;
+        }
+    }
+
+    private final File dir;
+
+    public BundleIndexCache(@NonNull Context ctx) {
+        dir = new File(ctx.getFilesDir(), "index_cache");
+    }
+
+    @Nullable
+    public Entry read(@NonNull File bundle) {
+        File f = entryFile(bundle.getAbsolutePath());
+        if (!f.exists() || !bundle.exists()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(f), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            if (!bundle.getAbsolutePath().equals(in.readUTF())
+                    || in.readLong() != bundle.length()
+                    || in.readLong() != bundle.lastModified()
+                    || in.readLong() != contentHash(bundle)) {
+                return null;
+            }
+
+            List<String> archives = readStrings(in);
+            List<String> types = readStrings(in);
+            List<String> typeTable = readStrings(in);
+
+            int count = in.readInt();
+            List<ObjectItem> objects = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int index = in.readInt();
+                long id = in.readLong();
+                int typeIdx = in.readInt();
+                String name = readString(in);
+                long bytes = in.readLong();
+                String container = readString(in);
+                boolean nameResolved = in.readBoolean();
+
+                ObjectItem item = new ObjectItem(
+                        index,
+                        id,
+                        (typeIdx >= 0 && typeIdx < typeTable.size())
+                                ? typeTable.get(typeIdx) : "Unknown",
+                        name,
+                        bytes >= 0 ? bytes : null,
+                        !container.isEmpty() ? container : null,
+                        false
+                );
+                item.setNameResolved(nameResolved);
+                objects.add(item);
+            }
+            return new Entry(archives, types, objects);
+        } catch (Exception e) {
+            Log.d(TAG, "read failed: " + e);
+            return null;
+        }
+    }
+
+    public void write(@NonNull File bundle, @NonNull List<String> archives,
+                      @NonNull List<String> types, @NonNull List<ObjectItem> objects) {
+        //noinspection ResultOfMethodCallIgnored
+        dir.mkdirs();
+
+        File f = entryFile(bundle.getAbsolutePath());
+        File tmp = new File(dir, f.getName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(bundle.getAbsolutePath());
+            out.writeLong(bundle.length());
+            out.writeLong(bundle.lastModified());
+            out.writeLong(contentHash(bundle));
+
+            writeStrings(out, archives);
+            writeStrings(out, types);
+
+            // Row types are interned separately: blank types are never offered as filters
+            LinkedHashMap<String, Integer> typeIds = new LinkedHashMap<>();
+            for (ObjectItem it : objects) {
+                typeIds.putIfAbsent(it.getType(), typeIds.size());
+            }
+            writeStrings(out, new ArrayList<>(typeIds.keySet()));
+
+            out.writeInt(objects.size());
+            for (ObjectItem it : objects) {
+                out.writeInt(it.getIndex());
+                out.writeLong(it.getId());
+                out.writeInt(typeIds.get(it.getType()));
+                writeString(out, it.getName());
+                out.writeLong(it.getBytes() != null ? it.getBytes() : -1);
+                writeString(out, it.getContainer());
+                out.writeBoolean(it.isNameResolved());
+            }
+        } catch (Exception e) {
+            Log.d(TAG, "write failed: " + e);
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            return;
+        }
+
+        if (!tmp.renameTo(f)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+        }
+    }
+
+    public void remove(@NonNull String bundlePath) {
+        //noinspection ResultOfMethodCallIgnored
+        entryFile(bundlePath).delete();
+    }
+
+    /**
+     * CRC32 over the file length and three 64 KB samples (head, middle, tail); cheap enough
+     * to run on every open, yet catches in-place rewrites that keep size and mtime.
+     */
+    public static long contentHash(@NonNull File bundle) throws IOException {
+        CRC32 crc = new CRC32();
+        long len = bundle.length();
+        crc.update(Long.toString(len).getBytes(StandardCharsets.US_ASCII));
+
+        byte[] buf = new byte[SAMPLE_SIZE];
+        try (RandomAccessFile raf = new RandomAccessFile(bundle, "r")) {
+            long[] starts = {0, Math.max(0, len / 2 - SAMPLE_SIZE / 2), Math.max(0, len - SAMPLE_SIZE)};
+            for (long start : starts) {
+                raf.seek(start);
+                int n = raf.read(buf, 0, (int) Math.min(SAMPLE_SIZE, len - start));
+                if (n > 0) {
+                    crc.update(buf, 0, n);
+                }
+            }
+        }
+        return crc.getValue();
+    }
+
+    @NonNull
+    private File entryFile(@NonNull String bundlePath) {
+        return new File(dir, String.format(Locale.ROOT, "%08x.idx", bundlePath.hashCode()));
+    }
+
+    @NonNull
+    private static List<String> readStrings(@NonNull DataInputStream in) throws IOException {
+        int n = in.readInt();
+        List<String> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            out.add(readString(in));
+        }
+        return out;
+    }
+
+    private static void writeStrings(@NonNull DataOutputStream out, @NonNull List<String> list)
+            throws IOException {
+        out.writeInt(list.size());
+        for (String s : list) {
+            writeString(out, s);
+        }
+    }
+
+    // writeUTF caps strings at 64 KB; container paths are not guaranteed to fit
+    @NonNull
+    private static String readString(@NonNull DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n == 0) {
+            return "";
+        }
+        byte[] b = new byte[n];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(@NonNull DataOutputStream out, @Nullable String s)
+            throws IOException {
+        byte[] b = (s == null) ? new byte[0] : s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+}
@@ -8,6 +8,7 @@ import android.content.SharedPreferences;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.elfilibustero.uabe.enums.SaveCompression;
 import com.elfilibustero.uabe.model.RecentBundle;
 import com.google.gson.reflect.TypeToken;
 
@@ -24,13 +25,18 @@ public class BundleRecentsStore {
     private static final String KEY_RECENTS = "recents_json";
     private static final String KEY_LAST_PATH = "last_path";
     private static final String KEY_LAST_NAME = "last_name";
+    private static final String KEY_COMPRESSION_PREFIX = "compression:";
 
     private static final int MAX_RECENTS = 15;
 
     private final SharedPreferences sp;
+    private final BundleIndexCache indexCache;
+    private final File journalRoot;
 
     public BundleRecentsStore(@NonNull Context ctx) {
         sp = ctx.getSharedPreferences(PREF, Context.MODE_PRIVATE);
+        indexCache = new BundleIndexCache(ctx);
+        journalRoot = EditJournal.root(ctx);
     }
 
     public void setLastOpen(@Nullable String path, @Nullable String displayName) {
@@ -54,6 +60,20 @@ public class BundleRecentsStore {
         setLastOpen(null, null);
     }
 
+    /**
+     * Records the compression a working copy had when it was first opened; autosaves change
+     * the copy's own, so this is what an export restores.
+     */
+    public void setCompression(@NonNull String path, @NonNull SaveCompression compression) {
+        sp.edit().putString(KEY_COMPRESSION_PREFIX + path, compression.key()).apply();
+    }
+
+    @Nullable
+    public SaveCompression getCompression(@NonNull String path) {
+        String key = sp.getString(KEY_COMPRESSION_PREFIX + path, null);
+        return key != null ? SaveCompression.fromKey(key) : null;
+    }
+
     public void upsertRecent(@NonNull String path, @NonNull String displayName) {
         ArrayList<RecentBundle> list = loadInternal();
 
@@ -72,7 +92,11 @@ public class BundleRecentsStore {
         list.add(0, new RecentBundle(path, displayName, System.currentTimeMillis()));
 
         if (list.size() > MAX_RECENTS) {
-            list.subList(MAX_RECENTS, list.size()).clear();
+            List<RecentBundle> dropped = list.subList(MAX_RECENTS, list.size());
+            for (RecentBundle r : dropped) {
+                if (r != null && r.path != null) forget(r.path);
+            }
+            dropped.clear();
         }
 
         saveInternal(list);
@@ -104,6 +128,7 @@ public class BundleRecentsStore {
         if (changed) {
             saveInternal(list);
         }
+        forget(path);
 
         // if it was last open, clear last
         if (path.equals(getLastPath())) {
@@ -133,12 +158,23 @@ public class BundleRecentsStore {
             RecentBundle r = it.next();
             if (r == null || r.path == null || !new File(r.path).exists()) {
                 it.remove();
+                if (r != null && r.path != null) forget(r.path);
                 changed = true;
             }
         }
         return changed;
     }
 
+    /**
+     * Drops what the app keeps about a bundle it no longer lists: its index cache entry, edit
+     * journal and recorded compression.
+     */
+    private void forget(@NonNull String path) {
+        indexCache.remove(path);
+        EditJournal.delete(journalRoot, new File(path));
+        sp.edit().remove(KEY_COMPRESSION_PREFIX + path).apply();
+    }
+
     @NonNull
     private ArrayList<RecentBundle> loadInternal() {
         String json = sp.getString(KEY_RECENTS, "[]");
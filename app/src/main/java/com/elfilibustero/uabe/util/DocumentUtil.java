@@ -4,6 +4,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
+import android.os.ParcelFileDescriptor;
 import android.provider.OpenableColumns;
 
 import androidx.annotation.NonNull;
@@ -12,6 +13,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.UUID;
@@ -104,6 +106,29 @@ public class DocumentUtil {
         }
     }
 
+    @NonNull
+    public static OutputStream openOutputStream(@NonNull Context ctx, @NonNull Uri dest)
+            throws IOException {
+        OutputStream out = ctx.getContentResolver().openOutputStream(dest, getMode());
+        if (out == null) {
+            throw new IOException("Failed to open output stream");
+        }
+        return out;
+    }
+
+    /**
+     * Opens {@code dest} for writing as a raw descriptor, for writers outside the JVM.
+     */
+    @NonNull
+    public static ParcelFileDescriptor openFileDescriptor(@NonNull Context ctx, @NonNull Uri dest)
+            throws IOException {
+        ParcelFileDescriptor pfd = ctx.getContentResolver().openFileDescriptor(dest, getMode());
+        if (pfd == null) {
+            throw new IOException("Failed to open file descriptor");
+        }
+        return pfd;
+    }
+
     @NonNull
     public static byte[] readBytesFromUri(@NonNull Context ctx, @NonNull Uri src)
             throws Exception {
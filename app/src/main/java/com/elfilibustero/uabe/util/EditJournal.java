@@ -0,0 +1,511 @@
+package com.elfilibustero.uabe.util;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.elfilibustero.uabe.enums.EditKind;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the object edits made to one bundle, kept in its own directory.
+ * <p>
+ * Every edit stores the object's serialized data from before and after it as two payload
+ * files and appends one small record: the object index, the kind of edit and the payloads'
+ * sequence number. Undo and redo move a position through the edits and are records too, and
+ * a save over the bundle records which position the file now holds. When the bundle is
+ * opened again, {@link #pending()} lists what brings the file back to the last position, so
+ * edits made after the last save survive a killed process.
+ * <p>
+ * Records are length-prefixed and checksummed; a torn record at the end is dropped. The log is
+ * compacted, and payloads nothing refers to any more are deleted, when the journal is opened.
+ */
+public final class EditJournal implements Closeable {
+
+    private static final String TAG = "EditJournal";
+
+    private static final int MAGIC = 0x55414A4C; // "UAJL"
+    private static final int VERSION = 1;
+
+    // Edits kept when the journal is reopened; older ones can no longer be undone
+    private static final int MAX_HISTORY = 64;
+    private static final int MAX_RECORD = 1024;
+
+    private static final byte REC_EDIT = 'E';
+    private static final byte REC_UNDO = 'U';
+    private static final byte REC_REDO = 'R';
+    private static final byte REC_SAVED = 'S';
+    private static final byte REC_DETACHED = 'D';
+
+    public static final class Entry {
+        public final int seq;
+        public final int index;
+        @NonNull public final EditKind kind;
+
+        Entry(int seq, int index, @NonNull EditKind kind) {
+            this.seq = seq;
+            this.index = index;
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * An object and the payload that puts it in the state a step leads to.
+     */
+    public static final class Step {
+        public final int index;
+        @NonNull public final File payload;
+        private final int seq;
+
+        Step(int seq, int index, @NonNull File payload) {
+            this.seq = seq;
+            this.index = index;
+            this.payload = payload;
+        }
+    }
+
+    private final File dir;
+    private final File log;
+    private final String bundlePath;
+    @Nullable
+    private FileOutputStream out;
+
+    private final List<Entry> entries = new ArrayList<>();
+    private int position;
+    private int nextSeq;
+
+    // Position the bundle file holds, and how that file looked when it was recorded
+    private int savedPosition;
+    private long savedLength;
+    private long savedModified;
+    private long savedHash;
+    // Undone edits the file still holds that a later edit cut off from the history; they are
+    // reverted before the edits from savedPosition on are replayed
+    private final List<Step> detached = new ArrayList<>();
+
+    private EditJournal(@NonNull File dir, @NonNull String bundlePath) {
+        this.dir = dir;
+        this.log = new File(dir, "journal");
+        this.bundlePath = bundlePath;
+    }
+
+    /**
+     * Where the app keeps the journals of its bundles.
+     */
+    @NonNull
+    public static File root(@NonNull Context ctx) {
+        return new File(ctx.getFilesDir(), "edit_journal");
+    }
+
+    /**
+     * Opens the journal of {@code bundle} under {@code root}. A journal written against a
+     * different version of the file is discarded, and the new one starts at the file as it is.
+     */
+    @NonNull
+    public static EditJournal open(@NonNull File root, @NonNull File bundle) throws IOException {
+        File dir = dirOf(root, bundle);
+        //noinspection ResultOfMethodCallIgnored
+        dir.mkdirs();
+
+        EditJournal j = new EditJournal(dir, bundle.getAbsolutePath());
+        if (!j.load() || !j.matches(bundle)) {
+            j.reset(bundle);
+        }
+        j.trim();
+        j.compact();
+        j.sweep();
+        j.out = new FileOutputStream(j.log, true);
+        return j;
+    }
+
+    /**
+     * Deletes the journal of {@code bundle} under {@code root} with all its payloads, for a
+     * bundle the app forgets.
+     */
+    public static void delete(@NonNull File root, @NonNull File bundle) {
+        File dir = dirOf(root, bundle);
+        File[] files = dir.listFiles();
+        for (File f : files != null ? files : new File[0]) {
+            //noinspection ResultOfMethodCallIgnored
+            f.delete();
+        }
+        //noinspection ResultOfMethodCallIgnored
+        dir.delete();
+    }
+
+    @NonNull
+    private static File dirOf(@NonNull File root, @NonNull File bundle) {
+        String path = bundle.getAbsolutePath();
+        return new File(root, String.format(Locale.ROOT, "%08x", path.hashCode()));
+    }
+
+    /**
+     * Steps that bring the bundle file from its saved position to the journal's position, in
+     * order; empty when the file is up to date.
+     */
+    @NonNull
+    public List<Step> pending() {
+        List<Step> steps = new ArrayList<>(detached);
+        for (int i = savedPosition; i < position; i++) {
+            steps.add(after(entries.get(i)));
+        }
+        for (int i = savedPosition - 1; i >= position; i--) {
+            steps.add(before(entries.get(i)));
+        }
+        return steps;
+    }
+
+    public boolean hasPending() {
+        return !detached.isEmpty() || savedPosition != position;
+    }
+
+    /**
+     * Where the next edit's image from before it goes; written before {@link #append}.
+     */
+    @NonNull
+    public File nextBefore() {
+        return payload(nextSeq, "before");
+    }
+
+    /**
+     * Where the next edit's image from after it goes; written before {@link #append}.
+     */
+    @NonNull
+    public File nextAfter() {
+        return payload(nextSeq, "after");
+    }
+
+    /**
+     * Records an edit whose payloads are in place; edits undone before it can no longer be
+     * redone.
+     */
+    public void append(int index, @NonNull EditKind kind) throws IOException {
+        cutRedo();
+        Entry e = new Entry(nextSeq++, index, kind);
+        entries.add(e);
+        position++;
+        writeRecord(edit(e));
+    }
+
+    @Nullable
+    public Step undoStep() {
+        return position > 0 ? before(entries.get(position - 1)) : null;
+    }
+
+    @Nullable
+    public Step redoStep() {
+        return position < entries.size() ? after(entries.get(position)) : null;
+    }
+
+    /**
+     * Records that {@link #undoStep()} was applied.
+     */
+    public void undone() throws IOException {
+        position--;
+        writeRecord(new byte[]{REC_UNDO});
+    }
+
+    /**
+     * Records that {@link #redoStep()} was applied.
+     */
+    public void redone() throws IOException {
+        position++;
+        writeRecord(new byte[]{REC_REDO});
+    }
+
+    /**
+     * Forgets every edit and starts over at {@code bundle} as it is, for a journal that could
+     * not be replayed.
+     */
+    public void discard(@NonNull File bundle) throws IOException {
+        close();
+        reset(bundle);
+        compact();
+        sweep();
+        out = new FileOutputStream(log, true);
+    }
+
+    /**
+     * Records that {@code bundle} now holds the journal's position.
+     */
+    public void markSaved(@NonNull File bundle) throws IOException {
+        savedPosition = position;
+        savedLength = bundle.length();
+        savedModified = bundle.lastModified();
+        savedHash = BundleIndexCache.contentHash(bundle);
+        detached.clear();
+        writeRecord(saved());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    // ---- State ----
+
+    private void cutRedo() {
+        if (savedPosition > position) {
+            // The file holds edits this one cuts off; remember how to revert them
+            for (int i = savedPosition - 1; i >= position; i--) {
+                detached.add(before(entries.get(i)));
+            }
+            savedPosition = position;
+        }
+        Set<File> keep = new HashSet<>();
+        for (Step s : detached) keep.add(s.payload);
+        while (entries.size() > position) {
+            Entry e = entries.remove(entries.size() - 1);
+            //noinspection ResultOfMethodCallIgnored
+            after(e).payload.delete();
+            File before = before(e).payload;
+            if (!keep.contains(before)) {
+                //noinspection ResultOfMethodCallIgnored
+                before.delete();
+            }
+        }
+    }
+
+    private void trim() {
+        int drop = Math.min(entries.size() - MAX_HISTORY, Math.min(position, savedPosition));
+        if (drop <= 0) {
+            return;
+        }
+        entries.subList(0, drop).clear();
+        position -= drop;
+        savedPosition -= drop;
+    }
+
+    private boolean matches(@NonNull File bundle) throws IOException {
+        return bundle.length() == savedLength
+                && bundle.lastModified() == savedModified
+                && BundleIndexCache.contentHash(bundle) == savedHash;
+    }
+
+    private void reset(@NonNull File bundle) throws IOException {
+        entries.clear();
+        detached.clear();
+        position = 0;
+        savedPosition = 0;
+        savedLength = bundle.length();
+        savedModified = bundle.lastModified();
+        savedHash = BundleIndexCache.contentHash(bundle);
+    }
+
+    @NonNull
+    private Step before(@NonNull Entry e) {
+        return new Step(e.seq, e.index, payload(e.seq, "before"));
+    }
+
+    @NonNull
+    private Step after(@NonNull Entry e) {
+        return new Step(e.seq, e.index, payload(e.seq, "after"));
+    }
+
+    @NonNull
+    private File payload(int seq, @NonNull String side) {
+        return new File(dir, seq + "." + side);
+    }
+
+    // ---- Log ----
+
+    /**
+     * Replays the log into memory; false if there is none for this bundle, or it never
+     * recorded the file's state.
+     */
+    private boolean load() {
+        if (!log.isFile()) {
+            return false;
+        }
+        boolean saved = false;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(log), 16 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION
+                    || !bundlePath.equals(in.readUTF())) {
+                return false;
+            }
+            byte[] body;
+            while ((body = readRecord(in)) != null) {
+                DataInputStream rec = new DataInputStream(new ByteArrayInputStream(body));
+                switch (rec.readByte()) {
+                    case REC_EDIT -> {
+                        Entry e = new Entry(rec.readInt(), rec.readInt(),
+                                EditKind.valueOf(rec.readUTF()));
+                        cutRedo();
+                        entries.add(e);
+                        position++;
+                        nextSeq = Math.max(nextSeq, e.seq + 1);
+                    }
+                    case REC_UNDO -> position = Math.max(0, position - 1);
+                    case REC_REDO -> position = Math.min(entries.size(), position + 1);
+                    case REC_SAVED -> {
+                        savedPosition = Math.min(rec.readInt(), entries.size());
+                        savedLength = rec.readLong();
+                        savedModified = rec.readLong();
+                        savedHash = rec.readLong();
+                        detached.clear();
+                        saved = true;
+                    }
+                    case REC_DETACHED -> {
+                        int seq = rec.readInt();
+                        detached.add(new Step(seq, rec.readInt(), payload(seq, "before")));
+                    }
+                    default -> {
+                        return saved;
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            Log.d(TAG, "load stopped: " + e);
+        }
+        return saved;
+    }
+
+    // Length, body, CRC32 of the body; null at the end or at a torn record
+    @Nullable
+    private static byte[] readRecord(@NonNull DataInputStream in) throws IOException {
+        try {
+            int n = in.readInt();
+            if (n <= 0 || n > MAX_RECORD) {
+                return null;
+            }
+            byte[] body = new byte[n];
+            in.readFully(body);
+            return in.readInt() == (int) crc(body) ? body : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Rewrites the log with only the edits still kept, then the position and the saved state;
+     * this also drops a torn record at the end.
+     */
+    private void compact() throws IOException {
+        File tmp = new File(dir, log.getName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            DataOutputStream data = new DataOutputStream(fos);
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeUTF(bundlePath);
+            for (Entry e : entries) {
+                data.write(frame(edit(e)));
+            }
+            for (int i = entries.size(); i > position; i--) {
+                data.write(frame(new byte[]{REC_UNDO}));
+            }
+            data.write(frame(saved()));
+            for (Step s : detached) {
+                data.write(frame(detachedStep(s)));
+            }
+            data.flush();
+            fos.getFD().sync();
+        }
+        if (!tmp.renameTo(log)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            throw new IOException("Could not replace " + log);
+        }
+    }
+
+    /**
+     * Deletes payloads and leftovers the journal no longer refers to.
+     */
+    private void sweep() {
+        Set<String> keep = new HashSet<>();
+        keep.add(log.getName());
+        for (Entry e : entries) {
+            keep.add(before(e).payload.getName());
+            keep.add(after(e).payload.getName());
+        }
+        for (Step s : detached) keep.add(s.payload.getName());
+
+        File[] files = dir.listFiles();
+        for (File f : files != null ? files : new File[0]) {
+            if (!keep.contains(f.getName())) {
+                //noinspection ResultOfMethodCallIgnored
+                f.delete();
+            }
+        }
+    }
+
+    // One small sequential write, synced before the edit is reported done
+    private void writeRecord(@NonNull byte[] body) throws IOException {
+        if (out == null) {
+            throw new IOException("Journal closed");
+        }
+        out.write(frame(body));
+        out.getFD().sync();
+    }
+
+    @NonNull
+    private byte[] edit(@NonNull Entry e) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(32);
+        DataOutputStream data = new DataOutputStream(buf);
+        data.writeByte(REC_EDIT);
+        data.writeInt(e.seq);
+        data.writeInt(e.index);
+        data.writeUTF(e.kind.name());
+        return buf.toByteArray();
+    }
+
+    @NonNull
+    private byte[] saved() throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(32);
+        DataOutputStream data = new DataOutputStream(buf);
+        data.writeByte(REC_SAVED);
+        data.writeInt(savedPosition);
+        data.writeLong(savedLength);
+        data.writeLong(savedModified);
+        data.writeLong(savedHash);
+        return buf.toByteArray();
+    }
+
+    @NonNull
+    private byte[] detachedStep(@NonNull Step s) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(16);
+        DataOutputStream data = new DataOutputStream(buf);
+        data.writeByte(REC_DETACHED);
+        data.writeInt(s.seq);
+        data.writeInt(s.index);
+        return buf.toByteArray();
+    }
+
+    @NonNull
+    private static byte[] frame(@NonNull byte[] body) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(body.length + 8);
+        DataOutputStream data = new DataOutputStream(buf);
+        data.writeInt(body.length);
+        data.write(body);
+        data.writeInt((int) crc(body));
+        return buf.toByteArray();
+    }
+
+    private static long crc(@NonNull byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,244 @@
+package com.elfilibustero.uabe.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A large text file read in place through a memory map, one row at a time.
+ * <p>
+ * Opening builds only an index of row start offsets. A row is a line, or a
+ * {@link #MAX_ROW_BYTES} slice of a longer one, so no single row is too big to show. Text is
+ * decoded when a row is asked for. For JSON the index also records which row closes the
+ * object or array each row opens, for folding. Edits replace whole rows and are kept apart
+ * from the file; {@link #writeTo(File)} copies the untouched byte ranges and splices in only
+ * the edited rows. Rows that are not valid UTF-8 are shown with replacement characters and
+ * cannot be edited, since writing that text back would lose their bytes.
+ */
+public final class TextDocument implements Closeable {
+
+    public static final int MAX_ROW_BYTES = 4096;
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int size;
+
+    // Byte offset of each row's first byte, plus size at [rowCount]
+    private final int[] starts;
+    private final int rowCount;
+    // Row closing the JSON node opened on each row, or -1; null for plain text
+    private final int[] foldEnds;
+
+    // Replaced content by row, without the row's line terminator
+    private final TreeMap<Integer, String> edits = new TreeMap<>();
+
+    private TextDocument(RandomAccessFile raf, MappedByteBuffer map, int[] starts, int rowCount,
+                         int[] foldEnds) {
+        this.raf = raf;
+        this.channel = raf.getChannel();
+        this.map = map;
+        this.size = map.capacity();
+        this.starts = starts;
+        this.rowCount = rowCount;
+        this.foldEnds = foldEnds;
+    }
+
+    /**
+     * Maps {@code file} and indexes its rows; with {@code json}, also its foldable nodes.
+     * Reads the whole file once.
+     */
+    @NonNull
+    @WorkerThread
+    public static TextDocument open(@NonNull File file, boolean json) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long length = raf.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("File too large: " + length);
+            }
+            int size = (int) length;
+            MappedByteBuffer map = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            int[] starts = new int[1024];
+            int rows = 0;
+            int[] folds = json ? new int[1024] : null;
+            ArrayDeque<Integer> open = new ArrayDeque<>();
+
+            int pos = 0;
+            while (pos < size || rows == 0) {
+                if (rows + 1 >= starts.length) {
+                    starts = Arrays.copyOf(starts, starts.length * 2);
+                    if (folds != null) folds = Arrays.copyOf(folds, starts.length);
+                }
+                starts[rows] = pos;
+
+                int limit = Math.min(size, pos + MAX_ROW_BYTES);
+                int end = pos;
+                int first = -1;
+                int last = -1;
+                while (end < limit) {
+                    byte c = map.get(end);
+                    if (c == '\n') break;
+                    if (c != ' ' && c != '\t' && c != '\r') {
+                        if (first < 0) first = c;
+                        last = c;
+                    }
+                    end++;
+                }
+                boolean newline = end < size && map.get(end) == '\n';
+                if (!newline && end < size) {
+                    // Slice a long line on a UTF-8 character boundary
+                    while (end > pos + 1 && (map.get(end) & 0xC0) == 0x80) end--;
+                }
+
+                if (folds != null) {
+                    folds[rows] = -1;
+                    if (first == '}' || first == ']') {
+                        Integer o = open.pollLast();
+                        if (o != null) folds[o] = rows;
+                    }
+                    if ((last == '{' || last == '[') && newline) {
+                        open.addLast(rows);
+                    }
+                }
+
+                rows++;
+                pos = newline ? end + 1 : end;
+                if (pos >= size) break;
+            }
+            starts[rows] = size;
+            return new TextDocument(raf, map, starts, rows, folds);
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public boolean isJson() {
+        return foldEnds != null;
+    }
+
+    /**
+     * The row that closes the node opened on {@code row}, or -1 if it opens none.
+     */
+    public int getFoldEnd(int row) {
+        return foldEnds == null ? -1 : foldEnds[row];
+    }
+
+    /**
+     * The text of {@code row} without its line terminator, with any edit applied.
+     */
+    @NonNull
+    public String getRow(int row) {
+        String edited = edits.get(row);
+        if (edited != null) {
+            return edited;
+        }
+        int start = starts[row];
+        ByteBuffer slice = map.duplicate();
+        slice.position(start).limit(contentEnd(row));
+        return StandardCharsets.UTF_8.decode(slice).toString();
+    }
+
+    /**
+     * Whether {@link #getRow} returns {@code row} exactly, so an edit of it keeps every
+     * character it does not change.
+     */
+    public boolean isEditable(int row) {
+        if (edits.containsKey(row)) {
+            return true;
+        }
+        ByteBuffer slice = map.duplicate();
+        slice.position(starts[row]).limit(contentEnd(row));
+        try {
+            StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(slice);
+            return true;
+        } catch (CharacterCodingException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the text of {@code row}, which must be {@link #isEditable editable}.
+     */
+    public void setRow(int row, @NonNull String text) {
+        if (!isEditable(row)) {
+            throw new IllegalStateException("Row " + row + " is not valid UTF-8");
+        }
+        edits.put(row, text);
+    }
+
+    public boolean isEdited(int row) {
+        return edits.containsKey(row);
+    }
+
+    public boolean hasEdits() {
+        return !edits.isEmpty();
+    }
+
+    /**
+     * Writes the document with its edits to {@code out}. Unedited byte ranges are copied
+     * straight from the file.
+     */
+    @WorkerThread
+    public void writeTo(@NonNull File out) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(out);
+             FileChannel dst = fos.getChannel()) {
+            int copied = 0;
+            for (Map.Entry<Integer, String> e : edits.entrySet()) {
+                int row = e.getKey();
+                transfer(copied, starts[row], dst);
+                dst.write(ByteBuffer.wrap(e.getValue().getBytes(StandardCharsets.UTF_8)));
+                // Keep the row's own terminator
+                copied = contentEnd(row);
+            }
+            transfer(copied, size, dst);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+
+    // End of the row's text, before a trailing "\n" or "\r\n"
+    private int contentEnd(int row) {
+        int end = starts[row + 1];
+        if (end > starts[row] && map.get(end - 1) == '\n') end--;
+        if (end > starts[row] && map.get(end - 1) == '\r') end--;
+        return end;
+    }
+
+    private void transfer(long from, long to, @NonNull FileChannel dst) throws IOException {
+        while (from < to) {
+            from += channel.transferTo(from, to - from, dst);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.elfilibustero.uabe.util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Thumbnails in two tiers: a memory LRU bounded by bitmap bytes, backed by PNG files keyed
+ * by bundle length, modification time and content hash + path_id + mip level.
+ * <p>
+ * The bundle key changes whenever the bundle's content does, so stale thumbnails are never
+ * served; the disk tier is trimmed back to {@link #DISK_BUDGET} oldest-first.
+ * Disk methods do I/O and must not run on the main thread.
+ */
+public final class ThumbnailCache {
+
+    private static final String TAG = "ThumbnailCache";
+
+    private static final long DISK_BUDGET = 64L * 1024 * 1024;
+
+    private final File dir;
+    private final LruCache<String, Bitmap> memory;
+
+    public ThumbnailCache(@NonNull Context ctx) {
+        dir = new File(ctx.getCacheDir(), "thumbnails");
+        int budget = (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16);
+        memory = new LruCache<>(budget) {
+            @Override
+            protected int sizeOf(@NonNull String key, @NonNull Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+    }
+
+    /**
+     * Identifies a bundle's current content; thumbnails of other versions never match it.
+     */
+    @NonNull
+    public static String bundleKey(@NonNull File bundle) throws IOException {
+        // The content hash only samples the file, so an edit of the same length can keep it;
+        // every save also moves the modification time
+        return String.format(Locale.ROOT, "%x_%x_%08x",
+                bundle.length(), bundle.lastModified(), BundleIndexCache.contentHash(bundle));
+    }
+
+    @NonNull
+    public static String key(@NonNull String bundleKey, long pathId, int mip) {
+        return bundleKey + "_" + Long.toHexString(pathId) + "_" + mip;
+    }
+
+    @Nullable
+    public Bitmap getMemory(@NonNull String key) {
+        return memory.get(key);
+    }
+
+    public void putMemory(@NonNull String key, @NonNull Bitmap bitmap) {
+        memory.put(key, bitmap);
+    }
+
+    /**
+     * Drops the memory entries of {@code pathId}, whatever the bundle and mip.
+     */
+    public void invalidate(long pathId) {
+        String part = "_" + Long.toHexString(pathId) + "_";
+        for (String k : memory.snapshot().keySet()) {
+            if (k.contains(part)) memory.remove(k);
+        }
+    }
+
+    public void clearMemory() {
+        memory.evictAll();
+    }
+
+    @Nullable
+    public Bitmap readDisk(@NonNull String key) {
+        File f = file(key);
+        if (!f.exists()) {
+            return null;
+        }
+        Bitmap bmp = BitmapFactory.decodeFile(f.getAbsolutePath());
+        if (bmp == null) {
+            //noinspection ResultOfMethodCallIgnored
+            f.delete();
+            return null;
+        }
+        // Touch so trimming keeps recently used entries
+        //noinspection ResultOfMethodCallIgnored
+        f.setLastModified(System.currentTimeMillis());
+        return bmp;
+    }
+
+    public void writeDisk(@NonNull String key, @NonNull Bitmap bitmap) {
+        //noinspection ResultOfMethodCallIgnored
+        dir.mkdirs();
+        File f = file(key);
+        File tmp = new File(dir, f.getName() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            Log.d(TAG, "write failed: " + e);
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(f)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Deletes least recently used files until the disk tier fits its budget.
+     */
+    public void trimDisk() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File f : files) total += f.length();
+        if (total <= DISK_BUDGET) {
+            return;
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        int removed = 0;
+        for (File f : files) {
+            if (total <= DISK_BUDGET * 3 / 4) break;
+            long len = f.length();
+            if (f.delete()) {
+                total -= len;
+                removed++;
+            }
+        }
+        Log.d(TAG, "trimmed " + removed + " thumbnails");
+    }
+
+    @NonNull
+    private File file(@NonNull String key) {
+        return new File(dir, key + ".png");
+    }
+}
@@ -0,0 +1,7 @@
+"""Python-side helpers used by UnityPyBridge.
+
+Everything in here exists to keep the number of Chaquopy crossings per
+operation constant instead of proportional to the number of objects.
+"""
+
+__all__ = ["bundle", "containers", "edit", "export", "indexer", "jsonstream", "meshes", "textures"]
@@ -0,0 +1,585 @@
+from __future__ import annotations
+
+import lzma
+import os
+import struct
+from typing import Any, Dict, Iterable, List, Optional, Tuple
+
+import lz4.block
+
+try:
+    import block_codec
+except (ImportError, OSError):
+    # Without the native module (host-side tests) blocks are compressed here
+    block_codec = None
+
+# Uncompressed size of a storage block; what Unity itself uses for chunked
+# bundles
+BLOCK_SIZE = 0x20000
+# Blocks of a previous save are only reused from chunked bundles; one huge
+# LZMA block would have to be inflated whole to reuse any part of it
+_MAX_REUSED_BLOCK = 1 << 20
+
+# ArchiveFlags of the header
+_INFO_COMBINED = 0x40
+_INFO_AT_END = 0x80
+_INFO_PADDING = 0x200
+_INFO_ENCRYPTED = 0x400
+# StorageBlockFlags of a data block
+_BLOCK_STREAMED = 0x40
+_COMPRESSION_MASK = 0x3F
+_NONE, _LZMA, _LZ4, _LZ4HC = 0, 1, 2, 3
+
+# Compression profiles accepted by save(); "original" keeps the source's
+PROFILES = {"none": _NONE, "lz4": _LZ4, "lz4hc": _LZ4HC, "lzma": _LZMA}
+_PROFILE_NAMES = {v: k for k, v in PROFILES.items()}
+
+# What Unity writes for LZMA bundles: lc=3 lp=0 pb=2, 512 KiB dictionary
+_LZMA_DICT = 1 << 19
+_LZMA_PROPS = struct.pack("<BI", (2 * 5 + 0) * 9 + 3, _LZMA_DICT)
+_LZMA_FILTERS = [{"id": lzma.FILTER_LZMA1, "dict_size": _LZMA_DICT, "lc": 3, "lp": 0, "pb": 2}]
+# Keeps a streamed LZMA block's sizes inside their u32 fields
+_MAX_LZMA_BLOCK = 1 << 31
+
+# The native codec compresses blocks in parallel, so LZMA data is cut into
+# independent blocks instead of one stream; twice the dictionary costs little
+# ratio, and blocks this size can still be reused by a later save
+_NATIVE_LZMA_BLOCK = _MAX_REUSED_BLOCK
+# Data gathered per native call; a multiple of both block sizes
+_NATIVE_BATCH = 1 << 24
+_THREADS = os.cpu_count() or 1
+# Block codecs the native module decodes
+_NATIVE_CODECS = (_NONE, _LZMA, _LZ4, _LZ4HC)
+
+
+def _write_all(fd: int, data: Any) -> int:
+    view = memoryview(data).cast("B")
+    total = len(view)
+    while view:
+        view = view[os.write(fd, view):]
+    return total
+
+
+def _copy_range(src: int, offset: int, count: int, dst: int) -> None:
+    try:
+        while count > 0:
+            n = os.sendfile(dst, src, offset, count)
+            if n == 0:
+                raise EOFError("Source bundle ended early")
+            offset += n
+            count -= n
+    except OSError:
+        while count > 0:
+            chunk = os.pread(src, min(count, BLOCK_SIZE), offset)
+            if not chunk:
+                raise EOFError("Source bundle ended early")
+            _write_all(dst, chunk)
+            offset += len(chunk)
+            count -= len(chunk)
+
+
+def _decompress(data: bytes, flags: int, size: int) -> bytes:
+    kind = flags & _COMPRESSION_MASK
+    if kind == _NONE:
+        return data
+    if kind in (_LZ4, _LZ4HC):
+        return lz4.block.decompress(data, uncompressed_size=size)
+    if kind == _LZMA:
+        # Five bytes of properties, then a raw LZMA1 stream
+        props = data[0]
+        filters = [{
+            "id": lzma.FILTER_LZMA1,
+            "dict_size": int.from_bytes(data[1:5], "little"),
+            "lc": props % 9,
+            "lp": (props // 9) % 5,
+            "pb": props // 45,
+        }]
+        return lzma.LZMADecompressor(lzma.FORMAT_RAW, filters=filters).decompress(
+            data[5:], max_length=size)
+    raise ValueError("Unsupported block compression: %d" % kind)
+
+
+def _family(flags: int) -> int:
+    # LZ4 and LZ4HC blocks share a decoder, so either can stand in for the other
+    kind = flags & _COMPRESSION_MASK
+    return _LZ4 if kind == _LZ4HC else kind
+
+
+def _header(bundle: Any, size: int, info_compressed: int, info_size: int, flags: int) -> bytes:
+    return b"".join((
+        b"UnityFS\0",
+        struct.pack(">I", int(bundle.version)),
+        str(bundle.version_player).encode("utf-8") + b"\0",
+        str(bundle.version_engine).encode("utf-8") + b"\0",
+        struct.pack(">qIII", size, info_compressed, info_size, flags),
+    ))
+
+
+def _file_data(f: Any) -> Any:
+    # Serialized files (and nested bundles) are rebuilt; resources such as
+    # .resS are kept as the readers UnityPy loaded them into
+    save = getattr(f, "save", None)
+    if callable(save):
+        return save()
+    return f.bytes
+
+
+def _blocks_info(blocks: List[Tuple[int, int, int]],
+                 nodes: List[Tuple[int, int, int, str]]) -> bytes:
+    parts = [b"\0" * 16, struct.pack(">i", len(blocks))]
+    parts.extend(struct.pack(">IIH", u, c, fl) for u, c, fl in blocks)
+    parts.append(struct.pack(">i", len(nodes)))
+    for offset, size, flags, name in nodes:
+        parts.append(struct.pack(">qqI", offset, size, flags))
+        parts.append(name.encode("utf-8") + b"\0")
+    return b"".join(parts)
+
+
+class _Layout:
+    """
+    Storage blocks and directory of a UnityFS bundle on disk, read from its
+    header and blocks info only.
+    """
+
+    def __init__(self, fd: int, blocks: List[Tuple[int, int, int]], data_offset: int,
+                 nodes: Dict[str, Tuple[int, int]], order: List[str]) -> None:
+        self.fd = fd
+        self.blocks = blocks
+        self.nodes = nodes
+        self.order = order
+        # Uncompressed start and file offset of every block, plus the end
+        self.starts = [0]
+        self.offsets = [data_offset]
+        for u, c, _ in blocks:
+            self.starts.append(self.starts[-1] + u)
+            self.offsets.append(self.offsets[-1] + c)
+        self._cached: Tuple[int, bytes] = (-1, b"")
+
+    @property
+    def kind(self) -> int:
+        """
+        The compression the bundle was written with.
+        """
+        kinds = {fl & _COMPRESSION_MASK for _, _, fl in self.blocks}
+        for kind in (_LZMA, _LZ4HC, _LZ4):
+            if kind in kinds:
+                return kind
+        return _NONE
+
+    def copyable(self, i: int, start: int, end: int, kind: int) -> bool:
+        """
+        True if block ``i`` can go into a ``kind`` bundle verbatim as part of
+        the range ``start`` to ``end``.
+        """
+        return (self.starts[i] >= start and self.starts[i + 1] <= end
+                and _family(self.blocks[i][2]) == _family(kind))
+
+    def reusable(self, start: int, end: int, kind: int) -> bool:
+        """
+        True if the range can be written from this file's blocks: each one
+        it touches is either copied as is or small enough to inflate.
+        """
+        i = self.block_at(start)
+        while i < len(self.blocks) and self.starts[i] < end:
+            if not self.copyable(i, start, end, kind) and self.blocks[i][0] > _MAX_REUSED_BLOCK:
+                return False
+            i += 1
+        return True
+
+    def block_at(self, pos: int) -> int:
+        lo, hi = 0, len(self.blocks)
+        while lo < hi:
+            mid = (lo + hi) // 2
+            if self.starts[mid + 1] <= pos:
+                lo = mid + 1
+            else:
+                hi = mid
+        return lo
+
+    def inflate(self, i: int) -> bytes:
+        if self._cached[0] != i:
+            u, c, fl = self.blocks[i]
+            raw = os.pread(self.fd, c, self.offsets[i])
+            self._cached = (i, _decompress(raw, fl, u))
+        return self._cached[1]
+
+
+def _read_layout(fd: int) -> Optional[_Layout]:
+    head = os.pread(fd, 4096, 0)
+    if not head.startswith(b"UnityFS\0"):
+        return None
+    pos = 8
+    version, = struct.unpack_from(">I", head, pos)
+    pos += 4
+    for _ in range(2):
+        pos = head.index(b"\0", pos) + 1
+    size, info_compressed, info_size, flags = struct.unpack_from(">qIII", head, pos)
+    pos += 20
+    if flags & _INFO_ENCRYPTED or size != os.fstat(fd).st_size:
+        return None
+    if version >= 7:
+        pos = (pos + 15) & ~15
+
+    if flags & _INFO_AT_END:
+        raw = os.pread(fd, info_compressed, size - info_compressed)
+        data_offset = pos
+    else:
+        raw = os.pread(fd, info_compressed, pos)
+        data_offset = pos + info_compressed
+    if flags & _INFO_PADDING:
+        # The data starts aligned after the blocks info, as UnityPy reads it
+        data_offset = (data_offset + 15) & ~15
+    info = _decompress(raw, flags, info_size)
+
+    q = 16
+    count, = struct.unpack_from(">i", info, q)
+    q += 4
+    blocks = []
+    for _ in range(count):
+        blocks.append(struct.unpack_from(">IIH", info, q))
+        q += 10
+    count, = struct.unpack_from(">i", info, q)
+    q += 4
+    nodes: Dict[str, Tuple[int, int]] = {}
+    order: List[str] = []
+    for _ in range(count):
+        offset, length, _ = struct.unpack_from(">qqI", info, q)
+        q += 20
+        end = info.index(b"\0", q)
+        name = info[q:end].decode("utf-8")
+        q = end + 1
+        nodes[name] = (offset, length)
+        order.append(name)
+    return _Layout(fd, blocks, data_offset, nodes, order)
+
+
+class _BlockWriter:
+    """
+    Appends data blocks to ``fd``. New data is gathered into blocks of
+    ``BLOCK_SIZE`` compressed with ``kind``, or for LZMA into one streamed
+    block as Unity does; blocks of the source bundle are copied through
+    unchanged.
+
+    With the native codec, new data is gathered into a batch whose blocks
+    are compressed on every core at once; LZMA then uses independent blocks
+    of ``_NATIVE_LZMA_BLOCK``.
+    """
+
+    def __init__(self, fd: int, kind: int) -> None:
+        self.fd = fd
+        self.kind = kind
+        self.blocks: List[Tuple[int, int, int]] = []
+        self._pending = bytearray()
+        self._lzma: Optional[Any] = None
+        self._lzma_in = 0
+        self._lzma_out = 0
+        self._batch: Optional[bytearray] = None
+        self._filled = 0
+        if block_codec is not None and kind != _NONE:
+            self._batch = bytearray(_NATIVE_BATCH)
+
+    def write(self, data: Any) -> None:
+        view = memoryview(data).cast("B")
+        if self._batch is not None:
+            self._gather(view)
+            return
+        if self.kind == _LZMA:
+            for i in range(0, len(view), BLOCK_SIZE):
+                self._stream(view[i:i + BLOCK_SIZE])
+            return
+        while view:
+            take = min(len(view), BLOCK_SIZE - len(self._pending))
+            if not self._pending and take == BLOCK_SIZE:
+                # Whole blocks go straight from the caller's buffer
+                self._emit(view[:take])
+            else:
+                self._pending += view[:take]
+                if len(self._pending) == BLOCK_SIZE:
+                    self.flush()
+            view = view[take:]
+
+    def copy(self, layout: _Layout, first: int, last: int) -> None:
+        """
+        Copies source blocks ``first`` up to ``last`` (exclusive) verbatim.
+        """
+        self.flush()
+        _copy_range(layout.fd, layout.offsets[first],
+                    layout.offsets[last] - layout.offsets[first], self.fd)
+        self.blocks.extend(layout.blocks[first:last])
+
+    def flush(self) -> None:
+        if self._filled:
+            self._write_batch()
+        if self._lzma is not None:
+            self._lzma_out += _write_all(self.fd, self._lzma.flush())
+            self.blocks.append((self._lzma_in, self._lzma_out, _LZMA))
+            self._lzma = None
+        if self._pending:
+            self._emit(memoryview(self._pending))
+            self._pending = bytearray()
+
+    def _gather(self, view: memoryview) -> None:
+        batch = self._batch
+        while view:
+            take = min(len(view), len(batch) - self._filled)
+            batch[self._filled:self._filled + take] = view[:take]
+            self._filled += take
+            view = view[take:]
+            if self._filled == len(batch):
+                self._write_batch()
+
+    def _write_batch(self) -> None:
+        size = self._filled
+        block = _NATIVE_LZMA_BLOCK if self.kind == _LZMA else BLOCK_SIZE
+        stored = block_codec.write_blocks(self.fd, self._batch, size, block, self.kind,
+                                          _THREADS)
+        for i, packed in enumerate(stored):
+            n = min(block, size - i * block)
+            if packed < n:
+                self.blocks.append((n, packed, self.kind))
+            else:
+                self.blocks.append((n, n, _BLOCK_STREAMED))
+        self._filled = 0
+
+    def _stream(self, chunk: memoryview) -> None:
+        if self._lzma is not None and self._lzma_in + len(chunk) > _MAX_LZMA_BLOCK:
+            self.flush()
+        if self._lzma is None:
+            self._lzma = lzma.LZMACompressor(lzma.FORMAT_RAW, filters=_LZMA_FILTERS)
+            self._lzma_in = 0
+            self._lzma_out = _write_all(self.fd, _LZMA_PROPS)
+        self._lzma_in += len(chunk)
+        self._lzma_out += _write_all(self.fd, self._lzma.compress(chunk))
+
+    def _emit(self, view: memoryview) -> None:
+        if self.kind in (_LZ4, _LZ4HC):
+            mode = "high_compression" if self.kind == _LZ4HC else "default"
+            packed = lz4.block.compress(view, mode=mode, store_size=False)
+            if len(packed) < len(view):
+                _write_all(self.fd, packed)
+                self.blocks.append((len(view), len(packed), self.kind))
+                return
+        _write_all(self.fd, view)
+        self.blocks.append((len(view), len(view), _BLOCK_STREAMED))
+
+
+def _write_reused(out: _BlockWriter, layout: _Layout, start: int, end: int) -> None:
+    """
+    Writes bytes ``start`` to ``end`` of the source's uncompressed data,
+    copying every block that lies wholly inside the range and is already
+    in the output's codec.
+    """
+    if start >= end:
+        return
+    i = layout.block_at(start)
+    run = -1
+    while start < end:
+        s, e = layout.starts[i], layout.starts[i + 1]
+        if layout.copyable(i, start, end, out.kind):
+            if run < 0:
+                run = i
+        else:
+            if run >= 0:
+                out.copy(layout, run, i)
+                run = -1
+            # Partly clean or in another codec; inflate it and take the clean part
+            out.write(memoryview(layout.inflate(i))[start - s:min(end, e) - s])
+        start = min(end, e)
+        i += 1
+    if run >= 0:
+        out.copy(layout, run, i)
+
+
+def _is_clean(name: str, f: Any, layout: _Layout, dirty: set) -> bool:
+    # Only ``dirty`` counts: UnityPy's is_changed stays set after a save over
+    # the source, and would have every later save serialize the file again
+    if name in dirty or name not in layout.nodes:
+        return False
+    if not callable(getattr(f, "save", None)):
+        # Resource readers are never rewritten, but check they still match
+        return len(memoryview(f.bytes)) == layout.nodes[name][1]
+    return True
+
+
+def owners(obj: Any) -> List[str]:
+    """
+    Names of the bundle files holding ``obj``: its serialized file and any
+    bundles that file sits in. Never raises; an edit must not fail here.
+    """
+    names = []
+    try:
+        f = obj.assets_file
+        while f is not None and len(names) < 8:
+            name = getattr(f, "name", None)
+            if name:
+                names.append(str(name))
+            f = getattr(f, "parent", None)
+    except Exception:
+        pass
+    return names
+
+
+def compression(path: str) -> str:
+    """
+    The profile a bundle file on disk was written with, or "original" if
+    it cannot be told.
+    """
+    try:
+        fd = os.open(path, os.O_RDONLY)
+    except OSError:
+        return "original"
+    try:
+        layout = _read_layout(fd)
+    except Exception:
+        layout = None
+    finally:
+        os.close(fd)
+    return _PROFILE_NAMES[layout.kind] if layout is not None else "original"
+
+
+def install_loader() -> bool:
+    """
+    Route UnityPy's reading of UnityFS data blocks through the native codec,
+    which decodes all blocks of a bundle in parallel straight into one
+    buffer of the final size. Returns False, leaving UnityPy untouched,
+    without the native module or if UnityPy's BundleFile is not as expected.
+    """
+    if block_codec is None:
+        return False
+    try:
+        from UnityPy.files.BundleFile import BundleFile
+        from UnityPy.streams import EndianBinaryReader
+    except ImportError:
+        return False
+    original = getattr(BundleFile, "read_blocks", None)
+    if original is None or getattr(original, "parallel", False):
+        return original is not None
+
+    def read_blocks(self: Any, reader: Any, blocks_info: List[Any]) -> Any:
+        blocks = [(b.uncompressedSize, b.compressedSize, b.flags) for b in blocks_info]
+        # One block gains nothing; encrypted blocks and other codecs stay with UnityPy
+        if (len(blocks) < 2 or getattr(self, "decryptor", None) is not None
+                or any(f & _COMPRESSION_MASK not in _NATIVE_CODECS for _, _, f in blocks)):
+            return original(self, reader, blocks_info)
+        start = reader.Position
+        data = bytes(reader.read_bytes(sum(c for _, c, _ in blocks)))
+        out = bytearray(sum(u for u, _, _ in blocks))
+        if not block_codec.read_blocks(data, blocks, out, _THREADS):
+            # UnityPy reads them again and reports what is wrong
+            reader.Position = start
+            return original(self, reader, blocks_info)
+        return EndianBinaryReader(out, offset=reader.BaseOffset + reader.Position)
+
+    read_blocks.parallel = True
+    BundleFile.read_blocks = read_blocks
+    return True
+
+
+def save(bundle: Any, fd: int, source: Optional[str] = None, dirty: Iterable[str] = (),
+         profile: str = "original") -> int:
+    """
+    Write ``bundle`` (an ``env.file``) to the regular file open at ``fd``
+    and return its size. A UnityFS bundle goes out one file and one block
+    at a time, with the blocks info after the data so the header can be
+    filled in last; the whole bundle is never built in memory. Anything
+    else falls back to UnityPy's own ``save()``.
+
+    ``source`` is the bundle file ``bundle`` was loaded from and ``dirty``
+    the names of the files edited since. Files not in ``dirty`` are not
+    serialized again: their blocks are copied from ``source`` when already
+    in the output's codec, inflated and recompressed otherwise.
+
+    ``profile`` is one of ``PROFILES`` or "original", the compression of
+    ``source``.
+    """
+    if getattr(bundle, "signature", None) != "UnityFS" or not hasattr(bundle, "files"):
+        return _write_all(fd, bundle.save())
+
+    src = -1
+    layout = None
+    if source and getattr(bundle, "decryptor", None) is None:
+        try:
+            src = os.open(source, os.O_RDONLY)
+            layout = _read_layout(src)
+        except Exception:
+            # Unreadable source; everything is written out again
+            layout = None
+
+    if profile in PROFILES:
+        kind = PROFILES[profile]
+    elif layout is not None:
+        kind = layout.kind
+    else:
+        # Source unknown, or encrypted; chunked LZ4 is what Unity builds by default
+        kind = _LZ4HC
+    if layout is not None and layout.order != list(bundle.files.keys()):
+        # Still tells the codec, but no block can be copied across
+        layout = None
+    try:
+        return _save_fs(bundle, fd, layout, {str(n) for n in dirty}, kind)
+    finally:
+        if src >= 0:
+            os.close(src)
+
+
+def _save_fs(bundle: Any, fd: int, layout: Optional[_Layout], dirty: set, kind: int) -> int:
+    version = int(bundle.version)
+    start = len(_header(bundle, 0, 0, 0, 0))
+    if version >= 7:
+        start = (start + 15) & ~15
+    # Placeholder; the real header needs the final sizes
+    _write_all(fd, b"\0" * start)
+
+    out = _BlockWriter(fd, kind)
+    nodes: List[Tuple[int, int, int, str]] = []
+    # Clean files not written yet, with the source range they span;
+    # neighbours are merged so a block they share is still copied rather
+    # than inflated twice
+    run: List[Tuple[str, Any, int]] = []
+    reused = [0, 0]
+
+    def add_node(name: str, f: Any, size: int) -> None:
+        offset = nodes[-1][0] + nodes[-1][1] if nodes else 0
+        nodes.append((offset, size, int(getattr(f, "flags", 0) or 0), name))
+
+    def write_run() -> None:
+        if not run:
+            return
+        if layout.reusable(reused[0], reused[1], kind):
+            _write_reused(out, layout, reused[0], reused[1])
+            for name, f, size in run:
+                add_node(name, f, size)
+        else:
+            # Serialized again, which need not come out at the old length
+            for name, f, _ in run:
+                view = memoryview(_file_data(f)).cast("B")
+                out.write(view)
+                add_node(name, f, len(view))
+                del view
+        run.clear()
+
+    for name, f in bundle.files.items():
+        name = str(name)
+        if layout is not None and _is_clean(name, f, layout, dirty):
+            base, size = layout.nodes[name]
+            if base != reused[1]:
+                write_run()
+            if not run:
+                reused = [base, base]
+            run.append((name, f, size))
+            reused[1] = base + size
+        else:
+            write_run()
+            view = memoryview(_file_data(f)).cast("B")
+            out.write(view)
+            add_node(name, f, len(view))
+            del view
+    write_run()
+    out.flush()
+
+    info = _blocks_info(out.blocks, nodes)
+    _write_all(fd, info)
+    total = os.lseek(fd, 0, os.SEEK_CUR)
+    os.pwrite(fd, _header(bundle, total, len(info), len(info),
+                          _INFO_COMBINED | _INFO_AT_END), 0)
+    return total
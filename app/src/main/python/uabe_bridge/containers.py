@@ -0,0 +1,111 @@
+from __future__ import annotations
+
+from array import array
+from typing import Any, Dict, Iterable, List, Optional
+
+
+def _ref_path_id(ref: Any) -> Optional[int]:
+    for attr in ("path_id", "m_PathID"):
+        try:
+            v = getattr(ref, attr, None)
+            if v is not None:
+                return int(v)
+        except Exception:
+            pass
+    return None
+
+
+def _file_table(assets_file: Any) -> Optional[Dict[int, str]]:
+    """
+    Read one serialized file's ``m_Container`` table into path_id -> path.
+    Returns None when the file exposes no container helper at all, so the
+    caller can fall back to per-object lookups.
+    """
+    for attr in ("_container", "container"):
+        try:
+            helper = getattr(assets_file, attr, None)
+        except Exception:
+            continue
+        if helper is None:
+            continue
+
+        path_dict = getattr(helper, "path_dict", None)
+        if isinstance(path_dict, dict):
+            return {int(k): str(v) for k, v in path_dict.items() if v}
+
+        table: Dict[int, str] = {}
+        try:
+            items = helper.items() if hasattr(helper, "items") else iter(helper)
+            for path, ref in items:
+                pid = _ref_path_id(ref)
+                # First entry wins, matching UnityPy's own path_dict
+                if pid is not None and path:
+                    table.setdefault(pid, str(path))
+        except Exception:
+            continue
+        return table
+    return None
+
+
+class ContainerMap:
+    """
+    path_id -> container path for every serialized file in a session, read
+    once from the AssetBundle tables instead of per object.
+
+    ``path_id`` (sorted, int64) and the UTF-8 ``strings`` table delimited by
+    ``string_offsets`` mirror the map for Java, which binary-searches it.
+    The mirror is keyed by path_id alone, so a path_id that several files
+    list is left out of it; ``complete`` is False then, or when a file has
+    no table, and Java asks ``get`` about the objects it does not find.
+    """
+
+    def __init__(self, objects: Optional[Iterable[Any]]) -> None:
+        self._tables: Dict[int, Optional[Dict[int, str]]] = {}
+        self._files: List[Any] = []
+
+        for obj in objects if objects is not None else ():
+            f = getattr(obj, "assets_file", None)
+            if f is not None and id(f) not in self._tables:
+                # Keep the file alive so its id() stays unique for the session
+                self._files.append(f)
+                self._tables[id(f)] = _file_table(f)
+
+        merged: Dict[int, str] = {}
+        shared = set()
+        for table in self._tables.values():
+            for pid, path in (table or {}).items():
+                if pid in merged:
+                    shared.add(pid)
+                merged[pid] = path
+        for pid in shared:
+            del merged[pid]
+
+        path_id = array("q")
+        offsets = array("i", [0])
+        strings = bytearray()
+        for pid in sorted(merged):
+            path_id.append(pid)
+            strings += merged[pid].encode("utf-8", "replace")
+            offsets.append(len(strings))
+
+        self.complete = not shared and None not in self._tables.values()
+        self.count = len(path_id)
+        self.path_id = path_id.tobytes()
+        self.string_offsets = offsets.tobytes()
+        self.strings = bytes(strings)
+
+    def get(self, obj: Any) -> Optional[str]:
+        """Container of ``obj``; only files without a table are looked up per object."""
+        f = getattr(obj, "assets_file", None)
+        table = self._tables.get(id(f)) if f is not None else None
+        if table is not None:
+            pid = _ref_path_id(obj)
+            return table.get(pid) if pid is not None else None
+
+        try:
+            c = obj.container
+            if c:
+                return str(c)
+        except Exception:
+            pass
+        return None
@@ -0,0 +1,46 @@
+from __future__ import annotations
+
+import json
+import os
+from typing import Any, Dict
+
+
+def read_text(path: str) -> str:
+    """
+    Text written by export.write_object for a TextAsset, read back so that
+    undecodable bytes survive the round trip.
+    """
+    with open(path, "r", encoding="utf-8", errors="surrogateescape", newline="") as f:
+        return f.read()
+
+
+def load_tree(path: str) -> Dict[str, Any]:
+    """
+    An edited typetree JSON file, parsed straight from disk.
+    """
+    with open(path, "r", encoding="utf-8", errors="surrogateescape") as f:
+        tree = json.load(f)
+    if not isinstance(tree, dict):
+        raise ValueError("Typetree JSON must be a JSON object (dict).")
+    return tree
+
+
+def dump_raw(obj: Any, path: str) -> int:
+    """
+    Write the serialized data of ``obj`` to ``path`` and flush it to disk;
+    the edit journal keeps these as before and after images of an edit.
+    """
+    data = obj.get_raw_data()
+    with open(path, "wb") as f:
+        f.write(data)
+        f.flush()
+        os.fsync(f.fileno())
+    return len(data)
+
+
+def load_raw(obj: Any, path: str) -> None:
+    """
+    Put an image written by :func:`dump_raw` back as the data of ``obj``.
+    """
+    with open(path, "rb") as f:
+        obj.set_raw_data(f.read())
@@ -0,0 +1,148 @@
+from __future__ import annotations
+
+import io
+import os
+from typing import Any
+
+import mesh_exporter
+
+from . import jsonstream, meshes
+
+# Largest slice handed to a single write(); keeps encoded copies of big
+# strings bounded instead of encoding the whole payload at once.
+CHUNK = 1 << 20
+
+
+class _CountingWriter(io.RawIOBase):
+    """
+    Unbuffered writer over a raw descriptor that counts what it wrote.
+    Works for pipes and sockets too, where tell() is not available.
+    """
+
+    def __init__(self, fd: int) -> None:
+        super().__init__()
+        self._fd = fd
+        self.written = 0
+
+    def writable(self) -> bool:
+        return True
+
+    def write(self, b: Any) -> int:
+        view = memoryview(b).cast("B")
+        total = 0
+        while total < len(view):
+            n = os.write(self._fd, view[total:total + CHUNK])
+            total += n
+        self.written += total
+        return total
+
+
+def _write_text(out: io.BufferedWriter, text: str) -> None:
+    for i in range(0, len(text), CHUNK):
+        out.write(text[i:i + CHUNK].encode("utf-8", "surrogateescape"))
+
+
+def _write_bytes(out: io.BufferedWriter, data: Any) -> None:
+    if isinstance(data, str):
+        # UnityPy hands some byte fields back as latin-1 decoded str
+        data = data.encode("latin-1", "surrogateescape")
+    out.write(data)
+
+
+def _texture(obj: Any, out: io.BufferedWriter) -> bool:
+    image = getattr(obj.parse_as_object(), "image", None)
+    if image is None:
+        return False
+    image.save(out, format="PNG")
+    return True
+
+
+def _text_asset(obj: Any, out: io.BufferedWriter) -> bool:
+    parsed = obj.parse_as_object()
+    script = getattr(parsed, "m_Script", None)
+    if script:
+        if isinstance(script, (bytes, bytearray, memoryview)):
+            _write_bytes(out, script)
+        else:
+            _write_text(out, str(script))
+        return True
+    data = getattr(parsed, "m_Bytes", None)
+    if data:
+        _write_bytes(out, data)
+        return True
+    return False
+
+
+def _mesh(obj: Any, out: io.BufferedWriter) -> bool:
+    text = obj.parse_as_object().export()
+    if not text:
+        return False
+    _write_text(out, str(text))
+    return True
+
+
+def _write_json_text(out: io.BufferedWriter, text: str) -> None:
+    try:
+        out.write(text.encode("utf-8", "surrogateescape"))
+    except UnicodeEncodeError:
+        # Lone surrogates that did not come from undecodable bytes
+        out.write(text.encode("utf-8", "replace"))
+
+
+def _typetree(obj: Any, out: io.BufferedWriter) -> bool:
+    try:
+        tree = obj.parse_as_dict()
+    except Exception:
+        tree = None
+    if tree is not None:
+        # Walked and written a chunk at a time; the whole text never exists
+        jsonstream.dump(tree, lambda text: _write_json_text(out, text))
+        return True
+
+    raw = getattr(obj.parse_as_object(), "get_raw_data", None)
+    data = raw() if callable(raw) else raw
+    if not data:
+        return False
+    _write_bytes(out, data)
+    return True
+
+
+def typetree_bytes(obj: Any) -> bytes:
+    """
+    The typetree of ``obj`` as UTF-8 JSON, or its raw data when it has no
+    typetree; empty if it has neither.
+    """
+    out = io.BytesIO()
+    _typetree(obj, out)
+    return out.getvalue()
+
+
+_WRITERS = {
+    "TextAsset": _text_asset,
+    "Texture2D": _texture,
+    "Mesh": _mesh,
+}
+
+
+def write_object(obj: Any, type_name: str, fd: int) -> int:
+    """
+    Write the export form of ``obj`` straight into the open descriptor
+    ``fd`` and return the number of bytes written, or -1 if the object has
+    nothing to export. Raises ``OSError`` if a write fails. ``fd`` stays
+    open; the caller owns it.
+    """
+    if type_name == "Mesh":
+        # Straight from the raw buffers when possible; no OBJ string in Python.
+        # A failed write raises rather than falling back onto partial output.
+        written = meshes.write(obj, fd, mesh_exporter.OBJ)
+        if written >= 0:
+            return written
+
+    raw = _CountingWriter(fd)
+    out = io.BufferedWriter(raw, buffer_size=CHUNK)
+    try:
+        ok = _WRITERS.get(type_name, _typetree)(obj, out)
+        out.flush()
+    finally:
+        out.detach()
+    return raw.written if ok else -1
@@ -0,0 +1,215 @@
+from __future__ import annotations
+
+from array import array
+from typing import Any, Dict, Iterable, List, Optional
+
+_SIZE_ATTRS = ("byte_size", "size", "data_size", "m_Size")
+
+
+class ObjectIndex:
+    """
+    Columnar listing of a bundle's objects.
+
+    Numeric columns are packed with ``array.tobytes()`` (native byte order) so
+    Java receives each of them with a single bytes -> byte[] conversion.
+    Names and containers share one UTF-8 table; string ``2 * i`` is the name
+    of row ``i`` and ``2 * i + 1`` its container, both delimited by
+    ``string_offsets``. ``unresolved`` holds one byte per row, set when the
+    header carried no name and a full parse would be needed to find one.
+    """
+
+    def __init__(self) -> None:
+        self.count = 0
+        self.index = b""
+        self.path_id = b""
+        self.size = b""
+        self.type_id = b""
+        self.types: List[str] = []
+        self.string_offsets = b""
+        self.strings = b""
+        self.unresolved = b""
+
+
+def type_name(obj: Any) -> str:
+    try:
+        return obj.type.name
+    except Exception:
+        pass
+    try:
+        s = str(obj.type)
+        if s.startswith("ClassIDType."):
+            s = s[len("ClassIDType."):]
+        return s or "Unknown"
+    except Exception:
+        return "Unknown"
+
+
+def object_size(obj: Any) -> int:
+    for attr in _SIZE_ATTRS:
+        try:
+            v = getattr(obj, attr, None)
+            if v is not None:
+                n = int(v)
+                if n >= 0:
+                    return n
+        except Exception:
+            pass
+    return -1
+
+
+def object_name(obj: Any, parse: bool = False) -> str:
+    """
+    Object name from the serialized header. Only with ``parse`` does it fall
+    back to ``parse_as_object()``, which deserialises the whole object.
+    """
+    try:
+        name = obj.peek_name()
+        if name:
+            return str(name)
+        if not parse:
+            return ""
+        parsed = obj.parse_as_object()
+        name = getattr(parsed, "m_Name", None)
+        if name is not None:
+            return str(name)
+    except Exception:
+        pass
+    return ""
+
+
+def current_size(obj: Any) -> int:
+    """
+    Size of the object's data as it is now, edits included.
+    """
+    try:
+        return len(obj.get_raw_data())
+    except Exception:
+        return object_size(obj)
+
+
+def edited_name(obj: Any) -> str:
+    """
+    Name of an edited object, parsed from its current data; the header peek
+    can still see the bytes it was loaded with.
+    """
+    try:
+        name = getattr(obj.parse_as_object(), "m_Name", None)
+        if name is not None:
+            return str(name)
+    except Exception:
+        pass
+    return object_name(obj)
+
+
+def object_container(obj: Any) -> Optional[str]:
+    try:
+        c = obj.container
+        if c:
+            return str(c)
+    except Exception:
+        pass
+    return None
+
+
+class ObjectIndexer:
+    """
+    Incremental indexer over one environment's object list.
+
+    Type ids are interned across pages, so ids handed out by an earlier
+    page stay valid; ``types`` on every page is the full table so far.
+    """
+
+    def __init__(self, objects: Optional[List[Any]], containers: Any = None) -> None:
+        self.objects = objects if objects is not None else []
+        # Session ContainerMap; without one each row asks UnityPy itself
+        self.containers = containers
+        self.types: List[str] = []
+        self._type_ids: Dict[str, int] = {}
+
+    def __len__(self) -> int:
+        return len(self.objects)
+
+    def _intern_type(self, t: str) -> int:
+        tid = self._type_ids.get(t)
+        if tid is None:
+            tid = len(self.types)
+            self._type_ids[t] = tid
+            self.types.append(t)
+        return tid
+
+    def page(self, start: int, count: int) -> ObjectIndex:
+        """Index ``objects[start:start + count]`` and return it as columns."""
+        stop = min(len(self.objects), max(start, 0) + max(count, 0))
+        start = max(start, 0)
+        return self._index(range(start, stop), current=False)
+
+    def rows(self, indices: Iterable[int]) -> ObjectIndex:
+        """
+        Index only ``indices``, the objects an edit changed. Their size and
+        name are read from the edited data, not from the serialized header.
+        """
+        valid = [int(i) for i in indices if 0 <= int(i) < len(self.objects)]
+        return self._index(valid, current=True)
+
+    def _index(self, indices: Iterable[int], current: bool) -> ObjectIndex:
+        index = array("i")
+        path_id = array("q")
+        size = array("q")
+        type_id = array("i")
+        offsets = array("i", [0])
+        strings = bytearray()
+        unresolved = bytearray()
+
+        for i in indices:
+            obj = self.objects[i]
+            try:
+                pid = int(obj.path_id)
+            except Exception:
+                pid = 0
+
+            index.append(i)
+            path_id.append(pid)
+            size.append(current_size(obj) if current else object_size(obj))
+            type_id.append(self._intern_type(type_name(obj).strip()))
+
+            # Listing only reads headers; see resolve_names for the rest
+            name = edited_name(obj) if current else object_name(obj)
+            unresolved.append(0 if name else 1)
+
+            strings += name.encode("utf-8", "replace")
+            offsets.append(len(strings))
+            container = (self.containers.get(obj) if self.containers is not None
+                         else object_container(obj))
+            strings += (container or "").encode("utf-8", "replace")
+            offsets.append(len(strings))
+
+        out = ObjectIndex()
+        out.count = len(index)
+        out.index = index.tobytes()
+        out.path_id = path_id.tobytes()
+        out.size = size.tobytes()
+        out.type_id = type_id.tobytes()
+        out.types = list(self.types)
+        out.string_offsets = offsets.tobytes()
+        out.strings = bytes(strings)
+        out.unresolved = bytes(unresolved)
+        return out
+
+    def resolve_names(self, indices: Iterable[int]) -> str:
+        """
+        Fully resolve the names of ``indices`` (parsing objects if needed).
+        Returned NUL-joined, in the order given, so Java needs one crossing.
+        """
+        names = []
+        for i in indices:
+            i = int(i)
+            if 0 <= i < len(self.objects):
+                names.append(object_name(self.objects[i], parse=True).replace("\x00", ""))
+            else:
+                names.append("")
+        return "\x00".join(names)
+
+
+def build_index(objects: List[Any]) -> ObjectIndex:
+    """Walk ``objects`` once and return every listing column in one call."""
+    return ObjectIndexer(objects).page(0, len(objects))
@@ -0,0 +1,173 @@
+from __future__ import annotations
+
+from json.encoder import encode_basestring
+from typing import Any, Callable, List
+
+# Text handed to write() at a time; also the most that is held at once.
+CHUNK = 1 << 20
+
+_INF = float("inf")
+_CONTAINERS = (dict, list, tuple, bytes, bytearray)
+
+
+def _float(f: float) -> str:
+    # Same spelling as json.dumps, including its non-standard constants
+    if f != f:
+        return "NaN"
+    if f == _INF:
+        return "Infinity"
+    if f == -_INF:
+        return "-Infinity"
+    return float.__repr__(f)
+
+
+def _key(k: Any) -> str:
+    if isinstance(k, str):
+        return k
+    if k is True:
+        return "true"
+    if k is False:
+        return "false"
+    if k is None:
+        return "null"
+    if isinstance(k, int):
+        return int.__repr__(k)
+    if isinstance(k, float):
+        return _float(k)
+    return str(k)
+
+
+def _scalar(o: Any) -> str:
+    if isinstance(o, str):
+        return encode_basestring(o)
+    if o is None:
+        return "null"
+    if o is True:
+        return "true"
+    if o is False:
+        return "false"
+    if isinstance(o, int):
+        return int.__repr__(o)
+    if isinstance(o, float):
+        return _float(o)
+    # Anything json cannot encode is written as its text, so a walk that
+    # has started never has to be abandoned halfway through the output
+    return encode_basestring(str(o))
+
+
+def _flat(items: Any) -> Callable[[Any], str] | None:
+    """
+    The encoder for every element of a sequence of plain numbers or
+    strings, checked in one pass, or None if it holds anything else.
+    Typetrees are full of these (vertex data, curves, bone weights), and
+    this keeps them off the walk's stack.
+    """
+    first = type(items[0])
+    if first is int:
+        if all(type(x) is int for x in items):
+            return int.__repr__
+    elif first is float:
+        if all(type(x) is float for x in items):
+            return _float
+    elif first is str:
+        if all(type(x) is str for x in items):
+            return encode_basestring
+    return None
+
+
+def _flat_dict(o: dict) -> List[str] | None:
+    """
+    Encoded members of a dict with only scalar values, or None. Leaf
+    structs like vectors and keyframes go out in one join this way.
+    """
+    members = []
+    for k, v in o.items():
+        if isinstance(v, _CONTAINERS):
+            return None
+        members.append(encode_basestring(_key(k)) + ": " + _scalar(v))
+    return members
+
+
+def dump(obj: Any, write: Callable[[str], Any], indent: int = 2) -> None:
+    """
+    Write ``obj`` as JSON text through ``write`` in chunks of about
+    ``CHUNK`` characters, formatted like ``json.dump(obj, f,
+    ensure_ascii=False, indent=indent)``. The walk uses an explicit stack,
+    so nesting depth costs neither recursion nor per-chunk overhead.
+    """
+    parts: List[str] = []
+    size = 0
+
+    def emit(s: str) -> None:
+        nonlocal size
+        parts.append(s)
+        size += len(s)
+        if size >= CHUNK:
+            flush()
+
+    def flush() -> None:
+        nonlocal size
+        if parts:
+            write("".join(parts))
+            parts.clear()
+            size = 0
+
+    # Each frame: [iterator, is_dict, depth, first]
+    stack: List[list] = []
+
+    def open_value(o: Any, depth: int) -> None:
+        if isinstance(o, dict):
+            if not o:
+                emit("{}")
+                return
+            flat = _flat_dict(o)
+            if flat is not None:
+                pad = "\n" + " " * (indent * (depth + 1))
+                emit("{" + pad + ("," + pad).join(flat) + "\n" + " " * (indent * depth) + "}")
+                return
+            emit("{")
+            stack.append([iter(o.items()), True, depth + 1, True])
+        elif isinstance(o, _CONTAINERS):
+            if not o:
+                emit("[]")
+                return
+            pad = "\n" + " " * (indent * (depth + 1))
+            # Bytes iterate as ints, so they take the flat path as they are
+            encode = _flat(o)
+            if encode is not None:
+                # Encoded and joined a slice at a time, so a huge array never
+                # has all its element strings alive at once
+                emit("[")
+                sep = "," + pad
+                step = max(1, CHUNK // 64)
+                for i in range(0, len(o), step):
+                    emit(pad if i == 0 else sep)
+                    emit(sep.join(map(encode, o[i:i + step])))
+                emit("\n" + " " * (indent * depth) + "]")
+                return
+            if isinstance(o, (bytes, bytearray)):
+                o = list(o)
+            emit("[")
+            stack.append([iter(o), False, depth + 1, True])
+        else:
+            emit(_scalar(o))
+
+    open_value(obj, 0)
+    while stack:
+        frame = stack[-1]
+        it, is_dict, depth, first = frame
+        try:
+            item = next(it)
+        except StopIteration:
+            stack.pop()
+            emit("\n" + " " * (indent * (depth - 1)) + ("}" if is_dict else "]"))
+            continue
+        emit(("\n" if first else ",\n") + " " * (indent * depth))
+        frame[3] = False
+        if is_dict:
+            k, v = item
+            emit(encode_basestring(_key(k)) + ": ")
+            open_value(v, depth)
+        else:
+            open_value(item, depth)
+    flush()
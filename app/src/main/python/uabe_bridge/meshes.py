@@ -0,0 +1,199 @@
+from __future__ import annotations
+
+import os
+import tempfile
+from typing import Any, Dict, List, Optional, Tuple
+
+import mesh_exporter
+
+# Unity 2017-2018 VertexFormat and pre-2017 VertexChannelFormat, mapped onto
+# the 2019+ numbering mesh_exporter uses
+_FORMATS_2017 = [
+    mesh_exporter.FLOAT, mesh_exporter.FLOAT16, mesh_exporter.UNORM8,
+    mesh_exporter.UNORM8, mesh_exporter.SNORM8, mesh_exporter.UNORM16,
+    mesh_exporter.SNORM16, mesh_exporter.UINT8, mesh_exporter.SINT8,
+    mesh_exporter.UINT16, mesh_exporter.SINT16, mesh_exporter.UINT32,
+    mesh_exporter.SINT32,
+]
+_FORMATS_OLD = [
+    mesh_exporter.FLOAT, mesh_exporter.FLOAT16, mesh_exporter.UNORM8,
+    mesh_exporter.UINT8, mesh_exporter.UINT32,
+]
+_FORMAT_SIZES = {
+    mesh_exporter.FLOAT: 4, mesh_exporter.FLOAT16: 2,
+    mesh_exporter.UNORM8: 1, mesh_exporter.SNORM8: 1,
+    mesh_exporter.UNORM16: 2, mesh_exporter.SNORM16: 2,
+    mesh_exporter.UINT8: 1, mesh_exporter.SINT8: 1,
+    mesh_exporter.UINT16: 2, mesh_exporter.SINT16: 2,
+    mesh_exporter.UINT32: 4, mesh_exporter.SINT32: 4,
+}
+
+
+def _version(obj: Any) -> Tuple[int, ...]:
+    return tuple(getattr(obj.assets_file, "version", (0,)) or (0,))
+
+
+def _as_bytes(data: Any) -> bytes:
+    if data is None:
+        return b""
+    if isinstance(data, str):
+        return data.encode("latin-1", "surrogateescape")
+    return bytes(data)
+
+
+def _format(fmt: int, version: Tuple[int, ...]) -> Optional[int]:
+    fmt = int(fmt)
+    if version >= (2019,):
+        return fmt if fmt in _FORMAT_SIZES else None
+    table = _FORMATS_2017 if version >= (2017,) else _FORMATS_OLD
+    return table[fmt] if 0 <= fmt < len(table) else None
+
+
+def _vertex_data(mesh: Any) -> bytes:
+    stream = getattr(mesh, "m_StreamData", None)
+    path = getattr(stream, "path", None) if stream is not None else None
+    if path:
+        # Vertex data lives in the bundle's .resS resource
+        from UnityPy.helpers.ResourceReader import get_resource_data
+        return _as_bytes(get_resource_data(path, mesh.assets_file, stream.offset, stream.size))
+    return _as_bytes(getattr(mesh.m_VertexData, "m_DataSize", None))
+
+
+def _channels(mesh: Any, version: Tuple[int, ...]) -> Optional[List[Optional[Tuple[int, int, int, int]]]]:
+    """
+    ``(offset, stride, format, dimension)`` of every channel, by channel
+    index, with offsets from the start of the vertex data.
+    """
+    vd = mesh.m_VertexData
+    count = int(vd.m_VertexCount)
+    channels = list(getattr(vd, "m_Channels", None) or [])
+    if not channels:
+        return None
+
+    resolved = []
+    for ch in channels:
+        dim = int(ch.dimension) & 0xF
+        fmt = _format(ch.format, version)
+        resolved.append((int(ch.stream), int(ch.offset), fmt, dim))
+
+    if version >= (5,):
+        # Streams are packed back to back, each aligned to 16 bytes
+        stream_count = 1 + max(s for s, _, _, _ in resolved)
+        starts, strides = [], []
+        offset = 0
+        for s in range(stream_count):
+            stride = sum(dim * _FORMAT_SIZES.get(fmt, 0)
+                         for cs, _, fmt, dim in resolved if cs == s and dim > 0 and fmt is not None)
+            starts.append(offset)
+            strides.append(stride)
+            offset = (offset + count * stride + 15) & ~15
+    else:
+        streams = list(getattr(vd, "m_Streams", None) or [])
+        starts = [int(st.offset) for st in streams]
+        strides = [int(st.stride) for st in streams]
+
+    out: List[Optional[Tuple[int, int, int, int]]] = []
+    for s, off, fmt, dim in resolved:
+        if dim == 0 or fmt is None or s >= len(starts):
+            out.append(None)
+        else:
+            out.append((starts[s] + off, strides[s], fmt, dim))
+    return out
+
+
+def _buffers(obj: Any) -> Optional[Dict[str, Any]]:
+    """
+    The raw buffers of a Mesh in mesh_exporter's terms, or None when the
+    mesh needs UnityPy's own decoding (compressed meshes, Unity < 4).
+    """
+    version = _version(obj)
+    if version < (4,):
+        return None
+    mesh = obj.parse_as_object()
+    vd = getattr(mesh, "m_VertexData", None)
+    if vd is None or int(getattr(vd, "m_VertexCount", 0) or 0) <= 0:
+        return None
+
+    vertices = _vertex_data(mesh)
+    if not vertices:
+        # Compressed meshes keep their vertices in m_CompressedMesh instead
+        return None
+    channels = _channels(mesh, version)
+    if not channels or channels[0] is None:
+        return None
+
+    def channel(i: int):
+        return channels[i] if i < len(channels) else None
+
+    normal = channel(1)
+    uv = channel(4) if version >= (2018,) else channel(3)
+
+    index_format = getattr(mesh, "m_IndexFormat", None)
+    if index_format is not None:
+        bits = 32 if int(index_format) == 1 else 16
+    else:
+        bits = 16 if getattr(mesh, "m_Use16BitIndices", True) else 32
+
+    submeshes = []
+    for sm in getattr(mesh, "m_SubMeshes", None) or []:
+        submeshes.append((
+            int(sm.firstByte) // (bits // 8),
+            int(sm.indexCount),
+            int(getattr(sm, "baseVertex", 0) or 0),
+            int(getattr(sm, "topology", 0) or 0),
+        ))
+
+    return {
+        "vertices": vertices,
+        "vertex_count": int(vd.m_VertexCount),
+        "position": channels[0],
+        "normal": normal,
+        "uv": uv,
+        "indices": _as_bytes(getattr(mesh, "m_IndexBuffer", None)),
+        "index_bits": bits,
+        "submeshes": submeshes,
+        "name": str(getattr(mesh, "m_Name", "") or "mesh"),
+    }
+
+
+def write(obj: Any, fd: int, fmt: int) -> int:
+    """
+    Write a Mesh to ``fd`` as ``mesh_exporter.OBJ`` or ``GLB`` natively from
+    its raw buffers. Returns the bytes written, or -1 without touching
+    ``fd`` when the mesh has to go through UnityPy's exporter instead.
+    Raises ``OSError`` if writing to ``fd`` fails part way; the caller must
+    not fall back onto the partial output.
+    """
+    try:
+        buffers = _buffers(obj)
+    except Exception:
+        buffers = None
+    if buffers is None:
+        return -1
+    return mesh_exporter.write(fd, fmt, **buffers)
+
+
+def obj_bytes(obj: Any) -> bytes:
+    """
+    OBJ text of a Mesh as bytes, written natively where possible.
+    """
+    with tempfile.TemporaryFile() as f:
+        if write(obj, f.fileno(), mesh_exporter.OBJ) >= 0:
+            os.lseek(f.fileno(), 0, os.SEEK_SET)
+            return f.read()
+    text = obj.parse_as_object().export()
+    return str(text or "").encode("utf-8", "surrogateescape")
+
+
+def write_preview(obj: Any, fd: int) -> str:
+    """
+    Write the best preview form of a Mesh to ``fd`` and return its file
+    extension: "glb" when the native exporter handles it, else "obj".
+    """
+    if write(obj, fd, mesh_exporter.GLB) >= 0:
+        return "glb"
+    text = obj.parse_as_object().export()
+    view = memoryview(str(text or "").encode("utf-8", "surrogateescape"))
+    while view:
+        view = view[os.write(fd, view):]
+    return "obj"
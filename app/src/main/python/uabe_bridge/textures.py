@@ -0,0 +1,346 @@
+from __future__ import annotations
+
+import re
+from typing import Any, Callable, Dict, Optional, Tuple
+
+from PIL import Image
+
+# format name -> (block width, block height, bytes per block, decoder name);
+# the decoders return BGRA rows
+_BLOCK_FORMATS: Dict[str, Tuple[int, int, int, str]] = {
+    "DXT1": (4, 4, 8, "decode_bc1"),
+    "DXT5": (4, 4, 16, "decode_bc3"),
+    "BC4": (4, 4, 8, "decode_bc4"),
+    "BC5": (4, 4, 16, "decode_bc5"),
+    "BC6H": (4, 4, 16, "decode_bc6"),
+    "BC7": (4, 4, 16, "decode_bc7"),
+    "ETC_RGB4": (4, 4, 8, "decode_etc1"),
+    "ETC2_RGB": (4, 4, 8, "decode_etc2"),
+    "ETC2_RGBA1": (4, 4, 8, "decode_etc2a1"),
+    "ETC2_RGBA8": (4, 4, 16, "decode_etc2a8"),
+    "EAC_R": (4, 4, 8, "decode_eacr"),
+    "EAC_R_SIGNED": (4, 4, 8, "decode_eacr_signed"),
+    "EAC_RG": (4, 4, 16, "decode_eacrg"),
+    "EAC_RG_SIGNED": (4, 4, 16, "decode_eacrg_signed"),
+    "ATC_RGB4": (4, 4, 8, "decode_atc_rgb4"),
+    "ATC_RGBA8": (4, 4, 16, "decode_atc_rgba8"),
+}
+
+# format name -> (bytes per pixel, PIL mode, PIL raw mode)
+_PIXEL_FORMATS: Dict[str, Tuple[int, str, str]] = {
+    "Alpha8": (1, "L", "L"),
+    "R8": (1, "L", "L"),
+    "RGB24": (3, "RGB", "RGB"),
+    "RGBA32": (4, "RGBA", "RGBA"),
+    "ARGB32": (4, "RGBA", "ARGB"),
+    "BGRA32": (4, "RGBA", "BGRA"),
+}
+
+# Crunched formats unpack one level at a time into their base format
+_CRUNCHED = {
+    "DXT1Crunched": "DXT1",
+    "DXT5Crunched": "DXT5",
+    "ETC_RGB4Crunched": "ETC_RGB4",
+    "ETC2_RGBA8Crunched": "ETC2_RGBA8",
+}
+
+_ASTC = re.compile(r"^ASTC_(?:RGBA?_|HDR_)?(\d+)x(\d+)$")
+
+
+def _image(obj: Any) -> Optional[Image.Image]:
+    """Decoded image of a Texture2D or Sprite, or None."""
+    try:
+        return getattr(obj.parse_as_object(), "image", None)
+    except Exception:
+        return None
+
+
+def _format_name(tex: Any) -> str:
+    fmt = getattr(tex, "m_TextureFormat", None)
+    name = getattr(fmt, "name", None)
+    if name:
+        return name
+    try:
+        from UnityPy.enums import TextureFormat
+        return TextureFormat(int(fmt)).name
+    except Exception:
+        return ""
+
+
+def _block_layout(fmt: str) -> Optional[Tuple[int, int, int]]:
+    if fmt in _BLOCK_FORMATS:
+        bw, bh, size, _ = _BLOCK_FORMATS[fmt]
+        return bw, bh, size
+    m = _ASTC.match(fmt)
+    if m:
+        return int(m.group(1)), int(m.group(2)), 16
+    if fmt in _PIXEL_FORMATS:
+        return 1, 1, _PIXEL_FORMATS[fmt][0]
+    return None
+
+
+def _level_size(layout: Tuple[int, int, int], w: int, h: int) -> int:
+    bw, bh, size = layout
+    return ((w + bw - 1) // bw) * ((h + bh - 1) // bh) * size
+
+
+def _mip_count(tex: Any, w: int, h: int) -> int:
+    count = getattr(tex, "m_MipCount", None)
+    if count:
+        return int(count)
+    if getattr(tex, "m_MipMap", False):
+        return max(w, h).bit_length()
+    return 1
+
+
+def pick_mip(width: int, height: int, mip_count: int, target: int) -> int:
+    """
+    Deepest mip level whose longest edge still covers ``target`` pixels;
+    level 0 when even that one is smaller, or ``target`` is not positive.
+    """
+    if target <= 0:
+        return 0
+    level = 0
+    while level + 1 < mip_count and max(width >> (level + 1), height >> (level + 1)) >= target:
+        level += 1
+    return level
+
+
+def _image_data(tex: Any) -> Optional[bytes]:
+    getter = getattr(tex, "get_image_data", None)
+    data = getter() if callable(getter) else getattr(tex, "image_data", None)
+    return bytes(data) if data else None
+
+
+def _decode_level(fmt: str, data: bytes, w: int, h: int) -> Optional[Image.Image]:
+    if fmt in _PIXEL_FORMATS:
+        _, mode, raw = _PIXEL_FORMATS[fmt]
+        if fmt == "Alpha8":
+            alpha = Image.frombytes("L", (w, h), data)
+            image = Image.new("RGBA", (w, h), (255, 255, 255, 0))
+            image.putalpha(alpha)
+            return image
+        return Image.frombytes(mode, (w, h), data, "raw", raw)
+
+    import texture2ddecoder
+    m = _ASTC.match(fmt)
+    if m:
+        out = texture2ddecoder.decode_astc(data, w, h, int(m.group(1)), int(m.group(2)))
+    else:
+        decode: Callable[..., bytes] = getattr(texture2ddecoder, _BLOCK_FORMATS[fmt][3])
+        out = decode(data, w, h)
+    return Image.frombytes("RGBA", (w, h), out, "raw", "BGRA")
+
+
+def _decode_mip(obj: Any, target: int) -> Optional[Tuple[Image.Image, int]]:
+    """
+    Decode only the mip level that covers ``target``; None when the texture
+    cannot be sliced (platform swizzling, unknown format, short data).
+    """
+    tex = obj.parse_as_object()
+    w = int(getattr(tex, "m_Width", 0) or 0)
+    h = int(getattr(tex, "m_Height", 0) or 0)
+    if w <= 0 or h <= 0 or getattr(tex, "m_PlatformBlob", None):
+        return None
+
+    fmt = _format_name(tex)
+    base = _CRUNCHED.get(fmt, fmt)
+    layout = _block_layout(base)
+    if layout is None:
+        return None
+
+    mips = _mip_count(tex, w, h)
+    level = pick_mip(w, h, mips, target)
+    lw, lh = max(1, w >> level), max(1, h >> level)
+
+    data = _image_data(tex)
+    if data is None:
+        return None
+
+    if fmt in _CRUNCHED:
+        import texture2ddecoder
+        version = tuple(getattr(obj.assets_file, "version", (0,)) or (0,))
+        unity_crunch = version >= (2017, 3) or fmt in ("ETC_RGB4Crunched", "ETC2_RGBA8Crunched")
+        unpack = texture2ddecoder.unpack_unity_crunch if unity_crunch else texture2ddecoder.unpack_crunch
+        level_data = unpack(data, level)
+    else:
+        offset = sum(_level_size(layout, max(1, w >> i), max(1, h >> i)) for i in range(level))
+        size = _level_size(layout, lw, lh)
+        if offset + size > len(data):
+            return None
+        level_data = data[offset:offset + size]
+
+    image = _decode_level(base, level_data, lw, lh)
+    if image is None:
+        return None
+    # Unity stores rows bottom-up
+    return image.transpose(Image.FLIP_TOP_BOTTOM), level
+
+
+def decode(obj: Any, target: int) -> Tuple[Optional[Image.Image], int]:
+    """
+    ``(image, mip)`` of a Texture2D at the smallest mip covering ``target``
+    pixels, decoding just that level when possible. Sprites, textures that
+    cannot be sliced and ``target`` 0 decode in full through UnityPy (mip 0).
+    """
+    if target > 0 and getattr(getattr(obj, "type", None), "name", None) == "Texture2D":
+        try:
+            r = _decode_mip(obj, target)
+            if r is not None:
+                return r
+        except Exception:
+            pass
+    return _image(obj), 0
+
+
+def _rgba(image: Image.Image, premultiplied: bool) -> Image.Image:
+    if image.mode != "RGBA":
+        image = image.convert("RGBA")
+    # PIL's "RGBa" is RGBA with color premultiplied by alpha
+    return image.convert("RGBa") if premultiplied else image
+
+
+def pixels(obj: Any, target: int, premultiplied: bool) -> Optional[Tuple[int, int, int, bytes]]:
+    """
+    ``(width, height, mip, pixels)`` for display at up to ``target`` pixels,
+    or the full image when ``target`` is 0. Returns None without an image.
+    The decoded level is scaled down to fit ``target`` when larger, as it is
+    when the texture has no mips to pick from.
+    """
+    image, mip = decode(obj, target)
+    if image is None:
+        return None
+    if target > 0 and max(image.width, image.height) > target:
+        if image.mode != "RGBA":
+            image = image.convert("RGBA")
+        image.thumbnail((target, target), Image.BILINEAR, reducing_gap=2.0)
+    image = _rgba(image, premultiplied)
+    return image.width, image.height, mip, image.tobytes()
+
+
+def thumbnail(obj: Any, max_size: int) -> Optional[Tuple[int, int, int, bytes]]:
+    """
+    ``(width, height, mip, pixels)`` of ``obj`` scaled to fit ``max_size``
+    square, as premultiplied RGBA rows ready for Bitmap.copyPixelsFromBuffer.
+    Returns None when the object has no image.
+    """
+    image, mip = decode(obj, max_size)
+    if image is None:
+        return None
+    if image.mode != "RGBA":
+        image = image.convert("RGBA")
+    # Without a fitting mip, reducing_gap shrinks by whole factors first,
+    # which is much cheaper than one full-quality resample
+    image.thumbnail((max_size, max_size), Image.BILINEAR, reducing_gap=2.0)
+    image = _rgba(image, True)
+    return image.width, image.height, mip, image.tobytes()
+
+
+class TileSource:
+    """
+    Region reads from one Texture2D for the tiled viewer. Each level is
+    sliced (or, when crunched, unpacked) once and kept, so a tile only
+    decodes the blocks it covers. Raises ValueError for textures that
+    cannot be read by region.
+
+    ``level_count`` goes past the stored mips until the whole image fits
+    in one ``tile_size`` tile; those extra levels are shrunk from the
+    smallest stored one so zooming out never needs full-size tiles.
+    """
+
+    def __init__(self, obj: Any, tile_size: int) -> None:
+        tex = obj.parse_as_object()
+        self.width = int(getattr(tex, "m_Width", 0) or 0)
+        self.height = int(getattr(tex, "m_Height", 0) or 0)
+        if self.width <= 0 or self.height <= 0 or getattr(tex, "m_PlatformBlob", None):
+            raise ValueError("texture cannot be tiled")
+
+        fmt = _format_name(tex)
+        self._format = _CRUNCHED.get(fmt, fmt)
+        layout = _block_layout(self._format)
+        if layout is None:
+            raise ValueError("unsupported format: " + fmt)
+        self._layout = layout
+        self.mip_count = _mip_count(tex, self.width, self.height)
+        self.level_count = self.mip_count
+        while max(self.level_size(self.level_count - 1)) > tile_size:
+            self.level_count += 1
+
+        data = _image_data(tex)
+        if data is None:
+            raise ValueError("texture has no image data")
+        self._data = data
+        self._unpack = None
+        if fmt in _CRUNCHED:
+            import texture2ddecoder
+            version = tuple(getattr(obj.assets_file, "version", (0,)) or (0,))
+            unity = version >= (2017, 3) or fmt in ("ETC_RGB4Crunched", "ETC2_RGBA8Crunched")
+            self._unpack = texture2ddecoder.unpack_unity_crunch if unity else texture2ddecoder.unpack_crunch
+        self._levels: Dict[int, bytes] = {}
+
+    def level_size(self, level: int) -> Tuple[int, int]:
+        return max(1, self.width >> level), max(1, self.height >> level)
+
+    def _level(self, level: int) -> bytes:
+        data = self._levels.get(level)
+        if data is None:
+            size = _level_size(self._layout, *self.level_size(level))
+            if self._unpack is not None:
+                data = self._unpack(self._data, level)
+                if len(data) < size:
+                    raise ValueError("mip %d unpacked to %d bytes, expected %d" % (level, len(data), size))
+            else:
+                offset = sum(_level_size(self._layout, *self.level_size(i)) for i in range(level))
+                if offset + size > len(self._data):
+                    raise ValueError("mip %d is missing" % level)
+                data = self._data[offset:offset + size]
+            self._levels[level] = data
+        return data
+
+    def _region(self, level: int, x: int, y: int, w: int, h: int) -> Image.Image:
+        # A stored level; (x, y) is top-left based, Unity rows are bottom-up
+        lw, lh = self.level_size(level)
+        data = self._level(level)
+        sy = lh - y - h
+
+        if self._format in _PIXEL_FORMATS:
+            bpp = _PIXEL_FORMATS[self._format][0]
+            stride = lw * bpp
+            rows = b"".join(
+                data[(sy + r) * stride + x * bpp:(sy + r) * stride + (x + w) * bpp]
+                for r in range(h))
+            image = _decode_level(self._format, rows, w, h)
+        else:
+            import texture2ddecoder
+            bw, bh, block_bytes = self._layout
+            decoder = "astc" if _ASTC.match(self._format) else _BLOCK_FORMATS[self._format][3][len("decode_"):]
+            out = texture2ddecoder.decode_region(decoder, data, lw, lh, bw, bh, block_bytes,
+                                                 x, sy, w, h)
+            image = Image.frombytes("RGBA", (w, h), out, "raw", "BGRA")
+        return image.transpose(Image.FLIP_TOP_BOTTOM)
+
+    def tile(self, level: int, x: int, y: int, w: int, h: int) -> Tuple[int, int, int, bytes]:
+        """
+        ``(width, height, level, pixels)`` of the rectangle at (x, y), top-left
+        origin, of ``level``, as premultiplied RGBA rows. The rectangle is
+        clipped to the level.
+        """
+        level = max(0, min(level, self.level_count - 1))
+        lw, lh = self.level_size(level)
+        x, y = max(0, min(x, lw - 1)), max(0, min(y, lh - 1))
+        w, h = max(1, min(w, lw - x)), max(1, min(h, lh - y))
+
+        base = min(level, self.mip_count - 1)
+        if base == level:
+            image = self._region(level, x, y, w, h)
+        else:
+            shift = level - base
+            bw, bh = self.level_size(base)
+            bx, by = min(x << shift, bw - 1), min(y << shift, bh - 1)
+            image = self._region(base, bx, by, min(w << shift, bw - bx), min(h << shift, bh - by))
+            if image.mode != "RGBA":
+                image = image.convert("RGBA")
+            image = image.resize((w, h), Image.BILINEAR, reducing_gap=2.0)
+
+        image = _rgba(image, True)
+        return image.width, image.height, level, image.tobytes()
@@ -0,0 +1,264 @@
+#include "block_codec.h"
+
+#include <errno.h>
+#include <string.h>
+#include <unistd.h>
+
+#include <algorithm>
+#include <atomic>
+#include <condition_variable>
+#include <mutex>
+#include <system_error>
+#include <thread>
+#include <vector>
+
+#include <lz4.h>
+#include <lz4hc.h>
+#include <lzma.h>
+
+namespace {
+
+// What bundle.py's Python LZMA path uses: preset 6 with a 512 KiB dictionary
+constexpr uint32_t kLzmaDict = 1u << 19;
+constexpr size_t kLzmaProps = 5;
+
+// Each returns the compressed size of src[0, n) in out (room for n - 1 bytes), or 0 when
+// the block does not shrink.
+
+size_t compress_lz4(const uint8_t* src, size_t n, uint8_t* out, bool hc) {
+    const char* in = reinterpret_cast<const char*>(src);
+    char* dst = reinterpret_cast<char*>(out);
+    int cap = static_cast<int>(n - 1);
+    int r = hc ? LZ4_compress_HC(in, dst, static_cast<int>(n), cap, LZ4HC_CLEVEL_DEFAULT)
+               : LZ4_compress_default(in, dst, static_cast<int>(n), cap);
+    return r > 0 ? static_cast<size_t>(r) : 0;
+}
+
+size_t compress_lzma(const uint8_t* src, size_t n, uint8_t* out) {
+    if (n <= kLzmaProps + 1) return 0;
+
+    lzma_options_lzma opt;
+    if (lzma_lzma_preset(&opt, 6)) return 0;
+    opt.dict_size = kLzmaDict;
+    opt.lc = 3;
+    opt.lp = 0;
+    opt.pb = 2;
+    lzma_filter filters[] = {
+            {LZMA_FILTER_LZMA1, &opt},
+            {LZMA_VLI_UNKNOWN, nullptr},
+    };
+
+    // Properties byte and little-endian dictionary size, then the raw stream
+    out[0] = static_cast<uint8_t>((opt.pb * 5 + opt.lp) * 9 + opt.lc);
+    for (int i = 0; i < 4; i++) out[1 + i] = static_cast<uint8_t>(kLzmaDict >> (8 * i));
+    size_t pos = kLzmaProps;
+    if (lzma_raw_buffer_encode(filters, nullptr, src, n, out, &pos, n - 1) != LZMA_OK) {
+        return 0;
+    }
+    return pos;
+}
+
+size_t compress(int method, const uint8_t* src, size_t n, uint8_t* out) {
+    switch (method) {
+        case BCODEC_LZ4:
+            return compress_lz4(src, n, out, false);
+        case BCODEC_LZ4HC:
+            return compress_lz4(src, n, out, true);
+        case BCODEC_LZMA:
+            return compress_lzma(src, n, out);
+        default:
+            return 0;
+    }
+}
+
+bool decompress_lzma(const uint8_t* src, size_t n, uint8_t* out, size_t size) {
+    if (n < kLzmaProps) return false;
+
+    // Properties byte and dictionary size, as written by compress_lzma
+    uint32_t d = src[0];
+    if (d >= 9 * 5 * 5) return false;
+    lzma_options_lzma opt;
+    memset(&opt, 0, sizeof(opt));
+    opt.lc = d % 9;
+    opt.lp = (d / 9) % 5;
+    opt.pb = d / 45;
+    opt.dict_size = static_cast<uint32_t>(src[1]) | static_cast<uint32_t>(src[2]) << 8
+                    | static_cast<uint32_t>(src[3]) << 16 | static_cast<uint32_t>(src[4]) << 24;
+    // liblzma refuses dictionaries below 4 KiB; a bigger one decodes the same
+    opt.dict_size = std::max<uint32_t>(opt.dict_size, 4096);
+    lzma_filter filters[] = {
+            {LZMA_FILTER_LZMA1, &opt},
+            {LZMA_VLI_UNKNOWN, nullptr},
+    };
+
+    lzma_stream strm = LZMA_STREAM_INIT;
+    if (lzma_raw_decoder(&strm, filters) != LZMA_OK) return false;
+    strm.next_in = src + kLzmaProps;
+    strm.avail_in = n - kLzmaProps;
+    strm.next_out = out;
+    strm.avail_out = size;
+    // Unity's own blocks end without an end marker, so a full output is the end
+    lzma_ret r = LZMA_OK;
+    while (r == LZMA_OK && strm.avail_out > 0) {
+        r = lzma_code(&strm, LZMA_FINISH);
+    }
+    bool ok = strm.avail_out == 0 && (r == LZMA_OK || r == LZMA_STREAM_END);
+    lzma_end(&strm);
+    return ok;
+}
+
+bool decompress(int method, const uint8_t* src, size_t n, uint8_t* out, size_t size) {
+    switch (method) {
+        case BCODEC_NONE:
+            if (n != size) return false;
+            memcpy(out, src, n);
+            return true;
+        case BCODEC_LZ4:
+        case BCODEC_LZ4HC:
+            if (n > INT32_MAX || size > INT32_MAX) return false;
+            return LZ4_decompress_safe(reinterpret_cast<const char*>(src),
+                                       reinterpret_cast<char*>(out), static_cast<int>(n),
+                                       static_cast<int>(size)) == static_cast<int>(size);
+        case BCODEC_LZMA:
+            return decompress_lzma(src, n, out, size);
+        default:
+            return false;
+    }
+}
+
+// Starts up to `threads` threads running work; runs it here if none could be started.
+template<typename Work>
+void run_pool(int threads, size_t jobs, Work& work, std::vector<std::thread>& pool) {
+    int workers = std::max(1, std::min(threads, static_cast<int32_t>(std::min<size_t>(jobs, 64))));
+    for (int t = 0; t < workers; t++) {
+        try {
+            pool.emplace_back(work);
+        } catch (const std::system_error&) {
+            break;
+        }
+    }
+    if (pool.empty()) work();
+}
+
+bool write_all(int fd, const uint8_t* p, size_t n) {
+    while (n > 0) {
+        ssize_t w = ::write(fd, p, n);
+        if (w < 0) {
+            if (errno == EINTR) continue;
+            return false;
+        }
+        p += w;
+        n -= static_cast<size_t>(w);
+    }
+    return true;
+}
+
+struct Block {
+    std::vector<uint8_t> out;
+    size_t packed = 0;  // compressed size; 0 keeps the raw bytes
+    bool done = false;
+};
+
+}  // namespace
+
+extern "C" int64_t bcodec_write_blocks(const uint8_t* src, int64_t size, int32_t block_size,
+                                       int32_t method, int32_t threads, int32_t fd,
+                                       uint32_t* stored_sizes) {
+    if (!src || size < 0 || block_size <= 0 || !stored_sizes) return -1;
+    if (method < BCODEC_NONE || method > BCODEC_LZ4HC) return -1;
+
+    const size_t total = static_cast<size_t>(size);
+    const size_t bs = static_cast<size_t>(block_size);
+    const size_t count = (total + bs - 1) / bs;
+    if (count == 0) return 0;
+
+    std::vector<Block> blocks(count);
+    std::atomic<size_t> next{0};
+    std::atomic<bool> failed{false};
+    std::mutex mu;
+    std::condition_variable ready;
+
+    auto work = [&]() {
+        for (;;) {
+            size_t i = next.fetch_add(1);
+            if (i >= count || failed.load()) return;
+            size_t n = std::min(bs, total - i * bs);
+            Block& b = blocks[i];
+            size_t packed = 0;
+            if (method != BCODEC_NONE && n > 1) {
+                b.out.resize(n - 1);
+                packed = compress(method, src + i * bs, n, b.out.data());
+                if (packed == 0) std::vector<uint8_t>().swap(b.out);
+            }
+            {
+                std::lock_guard<std::mutex> lock(mu);
+                b.packed = packed;
+                b.done = true;
+            }
+            ready.notify_all();
+        }
+    };
+
+    // This thread writes finished blocks in order while the workers run ahead
+    std::vector<std::thread> pool;
+    run_pool(threads, count, work, pool);
+
+    int64_t written = 0;
+    for (size_t i = 0; i < count; i++) {
+        {
+            std::unique_lock<std::mutex> lock(mu);
+            ready.wait(lock, [&] { return blocks[i].done; });
+        }
+        Block& b = blocks[i];
+        size_t n = std::min(bs, total - i * bs);
+        const uint8_t* data = b.packed ? b.out.data() : src + i * bs;
+        size_t len = b.packed ? b.packed : n;
+        if (!write_all(fd, data, len)) {
+            failed.store(true);
+            break;
+        }
+        stored_sizes[i] = static_cast<uint32_t>(len);
+        written += static_cast<int64_t>(len);
+        std::vector<uint8_t>().swap(b.out);
+    }
+
+    for (std::thread& t : pool) t.join();
+    return failed.load() ? -1 : written;
+}
+
+extern "C" int32_t bcodec_read_blocks(const uint8_t* src, int64_t src_size,
+                                      const bcodec_block* blocks, int32_t count, uint8_t* dst,
+                                      int64_t dst_size, int32_t threads) {
+    if (!src || !blocks || !dst || count < 0) return -1;
+
+    // Where each block starts on both sides
+    std::vector<size_t> in(count + 1, 0);
+    std::vector<size_t> out(count + 1, 0);
+    for (int32_t i = 0; i < count; i++) {
+        in[i + 1] = in[i] + blocks[i].compressed_size;
+        out[i + 1] = out[i] + blocks[i].uncompressed_size;
+    }
+    if (static_cast<int64_t>(in[count]) != src_size
+        || static_cast<int64_t>(out[count]) != dst_size) {
+        return -1;
+    }
+
+    std::atomic<int32_t> next{0};
+    std::atomic<bool> failed{false};
+    auto work = [&]() {
+        for (;;) {
+            int32_t i = next.fetch_add(1);
+            if (i >= count || failed.load()) return;
+            const bcodec_block& b = blocks[i];
+            if (!decompress(static_cast<int>(b.flags & 0x3F), src + in[i], b.compressed_size,
+                            dst + out[i], b.uncompressed_size)) {
+                failed.store(true);
+            }
+        }
+    };
+
+    std::vector<std::thread> pool;
+    run_pool(threads, static_cast<size_t>(count), work, pool);
+    for (std::thread& t : pool) t.join();
+    return failed.load() ? -1 : 0;
+}
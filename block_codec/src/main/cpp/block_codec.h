@@ -0,0 +1,47 @@
+#pragma once
+#include <stdint.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+// Block codecs, numbered like the compression bits of UnityFS block flags
+#define BCODEC_NONE  0
+#define BCODEC_LZMA  1
+#define BCODEC_LZ4   2
+#define BCODEC_LZ4HC 3
+
+// One storage block as listed in a UnityFS blocks-info table.
+typedef struct bcodec_block {
+    uint32_t uncompressed_size;
+    uint32_t compressed_size;
+    uint32_t flags;  // storage block flags; the codec is in the low 6 bits
+} bcodec_block;
+
+// Compresses the size bytes at src as independent blocks of block_size bytes
+// (the last one may be shorter) on up to `threads` worker threads, and writes
+// them to the open descriptor fd in order while later blocks are still being
+// compressed. fd stays open.
+//
+// LZMA blocks are raw LZMA streams behind the 5-byte properties header, as
+// UnityFS stores them. A block is kept compressed only if that makes it
+// smaller; otherwise its raw bytes are written.
+//
+// stored_sizes receives the size written for each block, so a stored size
+// equal to the block's own size marks a raw block. Returns the number of
+// bytes written, or -1 on bad arguments or a failed write.
+int64_t bcodec_write_blocks(const uint8_t* src, int64_t size, int32_t block_size,
+                            int32_t method, int32_t threads, int32_t fd,
+                            uint32_t* stored_sizes);
+
+// Decodes count blocks stored back to back at src into dst back to back, on
+// up to `threads` worker threads; each block lands at its final offset, so
+// dst is sized by the caller once. src_size and dst_size must match the
+// block sizes' sums. Returns 0, or -1 if the sizes do not add up, a block
+// uses another codec, or a block is corrupt.
+int32_t bcodec_read_blocks(const uint8_t* src, int64_t src_size, const bcodec_block* blocks,
+                           int32_t count, uint8_t* dst, int64_t dst_size, int32_t threads);
+
+#ifdef __cplusplus
+}
+#endif
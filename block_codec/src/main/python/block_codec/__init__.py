@@ -0,0 +1,85 @@
+"""
+ctypes bindings for libblockcodec: compresses bundle storage blocks with
+LZ4, LZ4HC or LZMA on several threads and writes them to a file descriptor,
+and decodes a bundle's block list on several threads.
+"""
+from __future__ import annotations
+
+import ctypes
+from ctypes import POINTER, Structure, c_char_p, c_int32, c_int64, c_uint8, c_uint32
+from typing import Any, List, Sequence, Tuple
+
+_lib = ctypes.CDLL("libblockcodec.so")
+
+# Numbered like the compression bits of UnityFS block flags
+NONE = 0
+LZMA = 1
+LZ4 = 2
+LZ4HC = 3
+
+U8P = POINTER(c_uint8)
+
+# (uncompressed size, compressed size, flags) of one storage block
+Block = Tuple[int, int, int]
+
+
+class _Block(Structure):
+    _fields_ = [
+        ("uncompressed_size", c_uint32),
+        ("compressed_size", c_uint32),
+        ("flags", c_uint32),
+    ]
+
+
+_lib.bcodec_write_blocks.argtypes = [
+    U8P, c_int64, c_int32, c_int32, c_int32, c_int32, POINTER(c_uint32),
+]
+_lib.bcodec_write_blocks.restype = c_int64
+
+_lib.bcodec_read_blocks.argtypes = [
+    U8P, c_int64, POINTER(_Block), c_int32, U8P, c_int64, c_int32,
+]
+_lib.bcodec_read_blocks.restype = c_int32
+
+
+def write_blocks(fd: int, buffer: Any, size: int, block_size: int, method: int,
+                 threads: int) -> List[int]:
+    """
+    Compress the first ``size`` bytes of ``buffer`` as independent blocks of
+    ``block_size`` bytes with ``method`` on up to ``threads`` threads, and
+    write them to the open descriptor ``fd`` in order. ``buffer`` is any
+    writable object supporting the buffer protocol, such as a bytearray; it
+    is read in place while the GIL is released.
+
+    Returns the size written for each block. A size equal to the block's own
+    length means it did not shrink and was written raw. Raises ``OSError``
+    if a write fails.
+    """
+    count = (size + block_size - 1) // block_size
+    if count == 0:
+        return []
+    src = (c_uint8 * size).from_buffer(buffer)
+    sizes = (c_uint32 * count)()
+    if _lib.bcodec_write_blocks(src, size, block_size, method, threads, fd, sizes) < 0:
+        raise OSError("block write failed")
+    return list(sizes)
+
+
+def read_blocks(data: bytes, blocks: Sequence[Block], out: Any, threads: int) -> bool:
+    """
+    Decode ``blocks``, stored back to back in ``data``, into the writable
+    buffer ``out`` on up to ``threads`` threads. ``data`` must hold exactly
+    the compressed blocks and ``out`` be exactly their uncompressed size.
+
+    Returns False if a block uses a codec other than these, or is corrupt;
+    ``out`` is then partly written.
+    """
+    table = (_Block * max(1, len(blocks)))(*[_Block(*b) for b in blocks])
+    dst = (c_uint8 * len(out)).from_buffer(out)
+    # Borrow the bytes object's buffer; `data` stays alive for the call
+    src = ctypes.cast(c_char_p(data), U8P)
+    return _lib.bcodec_read_blocks(src, len(data), table, len(blocks), dst, len(out),
+                                   threads) == 0
+
+
+__all__ = ("NONE", "LZMA", "LZ4", "LZ4HC", "write_blocks", "read_blocks")
@@ -0,0 +1,490 @@
+#include "mesh_capi.h"
+
+#include <errno.h>
+#include <math.h>
+#include <stdio.h>
+#include <string.h>
+#include <unistd.h>
+
+#include <string>
+#include <vector>
+
+namespace {
+
+// Buffered writer over a raw descriptor; remembers the first failure.
+class Writer {
+public:
+    explicit Writer(int fd) : fd_(fd) { buf_.resize(1 << 20); }
+
+    void put(const void* data, size_t n) {
+        const uint8_t* p = static_cast<const uint8_t*>(data);
+        while (n > 0 && ok_) {
+            size_t room = buf_.size() - used_;
+            size_t take = n < room ? n : room;
+            memcpy(buf_.data() + used_, p, take);
+            used_ += take;
+            p += take;
+            n -= take;
+            if (used_ == buf_.size()) flush();
+        }
+    }
+
+    void put(const std::string& s) { put(s.data(), s.size()); }
+
+    template<typename... Args>
+    void printf(const char* fmt, Args... args) {
+        if (buf_.size() - used_ < 256) flush();
+        if (!ok_) return;
+        int n = snprintf(reinterpret_cast<char*>(buf_.data() + used_), buf_.size() - used_, fmt, args...);
+        if (n < 0 || static_cast<size_t>(n) >= buf_.size() - used_) {
+            errno = EOVERFLOW;
+            ok_ = false;
+            return;
+        }
+        used_ += n;
+    }
+
+    void u32(uint32_t v) { put(&v, 4); }
+
+    void f32(float v) { put(&v, 4); }
+
+    bool flush() {
+        size_t off = 0;
+        while (ok_ && off < used_) {
+            ssize_t n = ::write(fd_, buf_.data() + off, used_ - off);
+            if (n < 0) {
+                if (errno == EINTR) continue;
+                ok_ = false;
+                break;
+            }
+            off += static_cast<size_t>(n);
+        }
+        written_ += static_cast<int64_t>(off);
+        used_ = 0;
+        return ok_;
+    }
+
+    int64_t written() const { return written_; }
+
+private:
+    int fd_;
+    std::vector<uint8_t> buf_;
+    size_t used_ = 0;
+    int64_t written_ = 0;
+    bool ok_ = true;
+};
+
+float half_to_float(uint16_t h) {
+    uint32_t sign = (h & 0x8000u) << 16;
+    uint32_t exp = (h >> 10) & 0x1Fu;
+    uint32_t mant = h & 0x3FFu;
+    uint32_t bits;
+    if (exp == 0) {
+        if (mant == 0) {
+            bits = sign;
+        } else {
+            // Subnormal: renormalize
+            exp = 127 - 15 + 1;
+            while (!(mant & 0x400u)) {
+                mant <<= 1;
+                exp--;
+            }
+            bits = sign | (exp << 23) | ((mant & 0x3FFu) << 13);
+        }
+    } else if (exp == 31) {
+        bits = sign | 0x7F800000u | (mant << 13);
+    } else {
+        bits = sign | ((exp + 127 - 15) << 23) | (mant << 13);
+    }
+    float f;
+    memcpy(&f, &bits, 4);
+    return f;
+}
+
+int format_size(int fmt) {
+    switch (fmt) {
+        case MESHX_FLOAT:
+        case MESHX_UINT32:
+        case MESHX_SINT32:
+            return 4;
+        case MESHX_FLOAT16:
+        case MESHX_UNORM16:
+        case MESHX_SNORM16:
+        case MESHX_UINT16:
+        case MESHX_SINT16:
+            return 2;
+        case MESHX_UNORM8:
+        case MESHX_SNORM8:
+        case MESHX_UINT8:
+        case MESHX_SINT8:
+            return 1;
+        default:
+            return 0;
+    }
+}
+
+float read_component(const uint8_t* p, int fmt) {
+    switch (fmt) {
+        case MESHX_FLOAT: {
+            float f;
+            memcpy(&f, p, 4);
+            return f;
+        }
+        case MESHX_FLOAT16: {
+            uint16_t h;
+            memcpy(&h, p, 2);
+            return half_to_float(h);
+        }
+        case MESHX_UNORM8:
+            return p[0] / 255.0f;
+        case MESHX_SNORM8: {
+            float f = static_cast<int8_t>(p[0]) / 127.0f;
+            return f < -1.0f ? -1.0f : f;
+        }
+        case MESHX_UNORM16: {
+            uint16_t v;
+            memcpy(&v, p, 2);
+            return v / 65535.0f;
+        }
+        case MESHX_SNORM16: {
+            int16_t v;
+            memcpy(&v, p, 2);
+            float f = v / 32767.0f;
+            return f < -1.0f ? -1.0f : f;
+        }
+        case MESHX_UINT8:
+            return p[0];
+        case MESHX_SINT8:
+            return static_cast<int8_t>(p[0]);
+        case MESHX_UINT16: {
+            uint16_t v;
+            memcpy(&v, p, 2);
+            return v;
+        }
+        case MESHX_SINT16: {
+            int16_t v;
+            memcpy(&v, p, 2);
+            return v;
+        }
+        case MESHX_UINT32: {
+            uint32_t v;
+            memcpy(&v, p, 4);
+            return static_cast<float>(v);
+        }
+        case MESHX_SINT32: {
+            int32_t v;
+            memcpy(&v, p, 4);
+            return static_cast<float>(v);
+        }
+        default:
+            return 0.0f;
+    }
+}
+
+// A channel present in the mesh whose every vertex lies inside the vertex data
+bool channel_ok(const meshx_mesh& m, const meshx_channel& c, int min_dim) {
+    if (c.dimension < min_dim || c.dimension > 4 || c.offset < 0 || c.stride <= 0) return false;
+    int size = format_size(c.format);
+    if (size == 0) return false;
+    int64_t end = c.offset + static_cast<int64_t>(m.vertex_count - 1) * c.stride
+                  + static_cast<int64_t>(c.dimension) * size;
+    return end <= m.vertices_size;
+}
+
+void read_vec(const meshx_mesh& m, const meshx_channel& c, int32_t i, float* out, int n) {
+    const uint8_t* p = m.vertices + c.offset + static_cast<int64_t>(i) * c.stride;
+    int size = format_size(c.format);
+    for (int k = 0; k < n; k++) {
+        out[k] = k < c.dimension ? read_component(p + k * size, c.format) : 0.0f;
+    }
+}
+
+// Calls fn(a, b, c) for every triangle of submesh s with absolute vertex
+// indices in Unity's winding. Returns false on out-of-range indices.
+template<typename Fn>
+bool for_each_triangle(const meshx_mesh& m, int s, Fn fn) {
+    const meshx_submesh& sm = m.submeshes[s];
+    int isz = m.index_bits == 32 ? 4 : 2;
+    if ((static_cast<int64_t>(sm.first_index) + sm.index_count) * isz > m.indices_size) return false;
+
+    const uint8_t* base = m.indices + static_cast<int64_t>(sm.first_index) * isz;
+    bool ok = true;
+    auto at = [&](uint32_t k) -> uint32_t {
+        uint32_t v;
+        if (isz == 4) {
+            memcpy(&v, base + k * 4, 4);
+        } else {
+            uint16_t h;
+            memcpy(&h, base + k * 2, 2);
+            v = h;
+        }
+        v += sm.base_vertex;
+        if (v >= static_cast<uint32_t>(m.vertex_count)) ok = false;
+        return v;
+    };
+
+    uint32_t n = sm.index_count;
+    switch (sm.topology) {
+        case MESHX_TRIANGLES:
+            for (uint32_t k = 0; ok && k + 2 < n; k += 3) {
+                uint32_t a = at(k), b = at(k + 1), c = at(k + 2);
+                if (ok) fn(a, b, c);
+            }
+            break;
+        case MESHX_TRIANGLE_STRIP:
+            for (uint32_t k = 0; ok && k + 2 < n; k++) {
+                uint32_t a = at(k), b = at(k + 1), c = at(k + 2);
+                if (!ok || a == b || b == c || a == c) continue;
+                // Every other strip triangle is wound the other way
+                if (k & 1) fn(b, a, c); else fn(a, b, c);
+            }
+            break;
+        case MESHX_QUADS:
+            for (uint32_t k = 0; ok && k + 3 < n; k += 4) {
+                uint32_t a = at(k), b = at(k + 1), c = at(k + 2), d = at(k + 3);
+                if (!ok) break;
+                fn(a, b, c);
+                fn(a, c, d);
+            }
+            break;
+        default:
+            // Lines and points have no faces to export
+            break;
+    }
+    return ok;
+}
+
+int64_t write_obj(const meshx_mesh& m, Writer& w, bool has_normal, bool has_uv) {
+    const char* name = m.name ? m.name : "mesh";
+    float v[4];
+
+    // Check every index first so a bad mesh fails before anything is written
+    for (int s = 0; s < m.submesh_count; s++) {
+        if (!for_each_triangle(m, s, [](uint32_t, uint32_t, uint32_t) {})) return MESHX_UNSUPPORTED;
+    }
+
+    // Names go through put(); printf() only has room for short lines
+    w.put("g ", 2);
+    w.put(name, strlen(name));
+    w.put("\n", 1);
+    for (int32_t i = 0; i < m.vertex_count; i++) {
+        read_vec(m, m.position, i, v, 3);
+        w.printf("v %.9g %.9g %.9g\n", -v[0], v[1], v[2]);
+    }
+    if (has_uv) {
+        for (int32_t i = 0; i < m.vertex_count; i++) {
+            read_vec(m, m.uv, i, v, 2);
+            w.printf("vt %.9g %.9g\n", v[0], v[1]);
+        }
+    }
+    if (has_normal) {
+        for (int32_t i = 0; i < m.vertex_count; i++) {
+            read_vec(m, m.normal, i, v, 3);
+            w.printf("vn %.9g %.9g %.9g\n", -v[0], v[1], v[2]);
+        }
+    }
+
+    const char* face = has_uv && has_normal ? "f %u/%u/%u %u/%u/%u %u/%u/%u\n"
+                     : has_normal ? "f %u//%u %u//%u %u//%u\n"
+                     : has_uv ? "f %u/%u %u/%u %u/%u\n"
+                     : "f %u %u %u\n";
+    for (int s = 0; s < m.submesh_count; s++) {
+        w.put("g ", 2);
+        w.put(name, strlen(name));
+        w.printf("_%d\n", s);
+        // Mirroring X flips the winding, so faces are written c, b, a
+        for_each_triangle(m, s, [&](uint32_t a, uint32_t b, uint32_t c) {
+            a++, b++, c++;
+            if (has_uv && has_normal) w.printf(face, c, c, c, b, b, b, a, a, a);
+            else if (has_uv || has_normal) w.printf(face, c, c, b, b, a, a);
+            else w.printf(face, c, b, a);
+        });
+    }
+    return w.flush() ? w.written() : MESHX_WRITE_ERROR;
+}
+
+void json_string(std::string& out, const char* s) {
+    out += '"';
+    for (const unsigned char* p = reinterpret_cast<const unsigned char*>(s); *p; p++) {
+        if (*p == '"' || *p == '\\') {
+            out += '\\';
+            out += static_cast<char>(*p);
+        } else if (*p < 0x20) {
+            char esc[8];
+            snprintf(esc, sizeof esc, "\\u%04x", *p);
+            out += esc;
+        } else {
+            out += static_cast<char>(*p);
+        }
+    }
+    out += '"';
+}
+
+std::string num(double v) {
+    char b[32];
+    snprintf(b, sizeof b, "%.9g", v);
+    return b;
+}
+
+int64_t write_glb(const meshx_mesh& m, Writer& w, bool has_normal, bool has_uv) {
+    const int64_t vc = m.vertex_count;
+
+    // First pass: triangle counts per primitive and position bounds, so the
+    // JSON can be written before streaming the binary chunk
+    std::vector<int64_t> tris(m.submesh_count, 0);
+    int64_t total_tris = 0;
+    for (int s = 0; s < m.submesh_count; s++) {
+        if (!for_each_triangle(m, s, [&](uint32_t, uint32_t, uint32_t) { tris[s]++; })) return MESHX_UNSUPPORTED;
+        total_tris += tris[s];
+    }
+    if (total_tris == 0 || vc == 0) return MESHX_UNSUPPORTED;
+
+    float lo[3] = {INFINITY, INFINITY, INFINITY};
+    float hi[3] = {-INFINITY, -INFINITY, -INFINITY};
+    float v[4];
+    for (int32_t i = 0; i < m.vertex_count; i++) {
+        read_vec(m, m.position, i, v, 3);
+        v[0] = -v[0];
+        for (int k = 0; k < 3; k++) {
+            if (v[k] < lo[k]) lo[k] = v[k];
+            if (v[k] > hi[k]) hi[k] = v[k];
+        }
+    }
+
+    bool small = vc <= 0xFFFF;
+    int isz = small ? 2 : 4;
+    auto align4 = [](int64_t n) { return (n + 3) & ~static_cast<int64_t>(3); };
+
+    std::string views, accessors, prims;
+    int64_t offset = 0;
+    int index = 0;
+    auto add_view = [&](int64_t len, bool vertex_data) {
+        if (!views.empty()) views += ',';
+        views += "{\"buffer\":0,\"byteOffset\":" + std::to_string(offset) +
+                 ",\"byteLength\":" + std::to_string(len) +
+                 (vertex_data ? ",\"target\":34962}" : ",\"target\":34963}");
+        offset = align4(offset + len);
+    };
+    auto add_accessor = [&](const std::string& body) {
+        if (!accessors.empty()) accessors += ',';
+        accessors += "{\"bufferView\":" + std::to_string(index) + "," + body + "}";
+        return index++;
+    };
+
+    add_view(vc * 12, true);
+    std::string attrs = "\"POSITION\":" + std::to_string(add_accessor(
+            "\"componentType\":5126,\"count\":" + std::to_string(vc) + ",\"type\":\"VEC3\","
+            "\"min\":[" + num(lo[0]) + "," + num(lo[1]) + "," + num(lo[2]) + "],"
+            "\"max\":[" + num(hi[0]) + "," + num(hi[1]) + "," + num(hi[2]) + "]"));
+    if (has_normal) {
+        add_view(vc * 12, true);
+        attrs += ",\"NORMAL\":" + std::to_string(add_accessor(
+                "\"componentType\":5126,\"count\":" + std::to_string(vc) + ",\"type\":\"VEC3\""));
+    }
+    if (has_uv) {
+        add_view(vc * 8, true);
+        attrs += ",\"TEXCOORD_0\":" + std::to_string(add_accessor(
+                "\"componentType\":5126,\"count\":" + std::to_string(vc) + ",\"type\":\"VEC2\""));
+    }
+    for (int s = 0; s < m.submesh_count; s++) {
+        if (tris[s] == 0) continue;
+        add_view(tris[s] * 3 * isz, false);
+        int acc = add_accessor(std::string("\"componentType\":") + (small ? "5123" : "5125") +
+                               ",\"count\":" + std::to_string(tris[s] * 3) + ",\"type\":\"SCALAR\"");
+        if (!prims.empty()) prims += ',';
+        prims += "{\"attributes\":{" + attrs + "},\"indices\":" + std::to_string(acc) + ",\"mode\":4}";
+    }
+    const int64_t bin_len = offset;
+
+    std::string name;
+    json_string(name, m.name ? m.name : "mesh");
+    std::string json =
+            "{\"asset\":{\"version\":\"2.0\",\"generator\":\"UABE Android\"},"
+            "\"scene\":0,\"scenes\":[{\"nodes\":[0]}],"
+            "\"nodes\":[{\"mesh\":0,\"name\":" + name + "}],"
+            "\"meshes\":[{\"name\":" + name + ",\"primitives\":[" + prims + "]}],"
+            "\"buffers\":[{\"byteLength\":" + std::to_string(bin_len) + "}],"
+            "\"bufferViews\":[" + views + "],"
+            "\"accessors\":[" + accessors + "]}";
+    while (json.size() % 4) json += ' ';
+
+    const int64_t total = 12 + 8 + static_cast<int64_t>(json.size()) + 8 + bin_len;
+    if (total > 0xFFFFFFFFll) return MESHX_UNSUPPORTED;
+
+    w.u32(0x46546C67u);  // "glTF"
+    w.u32(2);
+    w.u32(static_cast<uint32_t>(total));
+    w.u32(static_cast<uint32_t>(json.size()));
+    w.u32(0x4E4F534Au);  // "JSON"
+    w.put(json);
+    w.u32(static_cast<uint32_t>(bin_len));
+    w.u32(0x004E4942u);  // "BIN\0"
+
+    // Binary chunk, in the order of the buffer views above
+    for (int32_t i = 0; i < m.vertex_count; i++) {
+        read_vec(m, m.position, i, v, 3);
+        w.f32(-v[0]);
+        w.f32(v[1]);
+        w.f32(v[2]);
+    }
+    if (has_normal) {
+        for (int32_t i = 0; i < m.vertex_count; i++) {
+            read_vec(m, m.normal, i, v, 3);
+            // glTF requires unit normals
+            float len = sqrtf(v[0] * v[0] + v[1] * v[1] + v[2] * v[2]);
+            float inv = len > 1e-12f ? 1.0f / len : 0.0f;
+            w.f32(-v[0] * inv);
+            w.f32(v[1] * inv);
+            w.f32(v[2] * inv);
+        }
+    }
+    if (has_uv) {
+        for (int32_t i = 0; i < m.vertex_count; i++) {
+            read_vec(m, m.uv, i, v, 2);
+            // glTF puts the UV origin at the top left
+            w.f32(v[0]);
+            w.f32(1.0f - v[1]);
+        }
+    }
+    for (int s = 0; s < m.submesh_count; s++) {
+        if (tris[s] == 0) continue;
+        for_each_triangle(m, s, [&](uint32_t a, uint32_t b, uint32_t c) {
+            uint32_t face[3] = {c, b, a};
+            for (uint32_t x : face) {
+                if (small) {
+                    uint16_t h = static_cast<uint16_t>(x);
+                    w.put(&h, 2);
+                } else {
+                    w.u32(x);
+                }
+            }
+        });
+        int64_t len = tris[s] * 3 * isz;
+        static const uint8_t zero[4] = {0, 0, 0, 0};
+        w.put(zero, static_cast<size_t>(align4(len) - len));
+    }
+    return w.flush() ? w.written() : MESHX_WRITE_ERROR;
+}
+
+}  // namespace
+
+extern "C" int64_t meshx_write(const meshx_mesh* mesh, int32_t fd, int32_t format) {
+    if (!mesh || mesh->vertex_count < 0 || !mesh->vertices) return MESHX_UNSUPPORTED;
+    const meshx_mesh& m = *mesh;
+    if (m.vertex_count > 0 && !channel_ok(m, m.position, 3)) return MESHX_UNSUPPORTED;
+    if (m.submesh_count > 0 && (!m.submeshes || !m.indices)) return MESHX_UNSUPPORTED;
+    if (m.index_bits != 16 && m.index_bits != 32) return MESHX_UNSUPPORTED;
+
+    bool has_normal = m.vertex_count > 0 && channel_ok(m, m.normal, 3);
+    bool has_uv = m.vertex_count > 0 && channel_ok(m, m.uv, 2);
+
+    Writer w(fd);
+    switch (format) {
+        case MESHX_OBJ:
+            return write_obj(m, w, has_normal, has_uv);
+        case MESHX_GLB:
+            return write_glb(m, w, has_normal, has_uv);
+        default:
+            return MESHX_UNSUPPORTED;
+    }
+}
@@ -0,0 +1,73 @@
+#pragma once
+#include <stdint.h>
+
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+// Output formats
+#define MESHX_OBJ 0
+#define MESHX_GLB 1
+
+// Error returns of meshx_write
+#define MESHX_UNSUPPORTED -1  // malformed mesh; nothing was written
+#define MESHX_WRITE_ERROR -2  // write failed; fd may hold partial output
+
+// Vertex component formats, numbered like Unity 2019+ VertexFormat
+#define MESHX_FLOAT   0
+#define MESHX_FLOAT16 1
+#define MESHX_UNORM8  2
+#define MESHX_SNORM8  3
+#define MESHX_UNORM16 4
+#define MESHX_SNORM16 5
+#define MESHX_UINT8   6
+#define MESHX_SINT8   7
+#define MESHX_UINT16  8
+#define MESHX_SINT16  9
+#define MESHX_UINT32  10
+#define MESHX_SINT32  11
+
+// Submesh topologies, as in Unity's MeshTopology
+#define MESHX_TRIANGLES      0
+#define MESHX_TRIANGLE_STRIP 1
+#define MESHX_QUADS          2
+
+// One vertex attribute inside the raw vertex data.
+typedef struct meshx_channel {
+    int64_t offset;     // byte offset of vertex 0's value
+    int32_t stride;     // bytes between consecutive vertices
+    int32_t format;     // MESHX_FLOAT...
+    int32_t dimension;  // components; 0 when the mesh has no such attribute
+} meshx_channel;
+
+typedef struct meshx_submesh {
+    uint32_t first_index;
+    uint32_t index_count;
+    uint32_t base_vertex;
+    int32_t topology;   // MESHX_TRIANGLES...; other topologies are skipped
+} meshx_submesh;
+
+typedef struct meshx_mesh {
+    const uint8_t* vertices;
+    int64_t vertices_size;
+    int32_t vertex_count;
+    meshx_channel position;
+    meshx_channel normal;
+    meshx_channel uv;
+    const uint8_t* indices;
+    int64_t indices_size;
+    int32_t index_bits;  // 16 or 32
+    const meshx_submesh* submeshes;
+    int32_t submesh_count;
+    const char* name;    // UTF-8
+} meshx_mesh;
+
+// Writes the mesh to the open descriptor fd as OBJ or GLB, mirrored on X
+// into a right-handed space as UnityPy's exporter does. fd stays open.
+// Returns the number of bytes written, MESHX_UNSUPPORTED if the mesh is
+// malformed, or MESHX_WRITE_ERROR (errno set) if writing to fd failed.
+int64_t meshx_write(const meshx_mesh* mesh, int32_t fd, int32_t format);
+
+#ifdef __cplusplus
+}
+#endif
@@ -0,0 +1,123 @@
+"""
+ctypes bindings for libmeshexporter: writes a Unity mesh straight from its
+raw vertex and index buffers to a file descriptor as OBJ or binary glTF.
+"""
+from __future__ import annotations
+
+import ctypes
+import errno
+import os
+from ctypes import (
+    Structure, POINTER, c_char_p, c_int32, c_int64, c_uint8, c_uint32,
+)
+from typing import Optional, Sequence, Tuple
+
+_lib = ctypes.CDLL("libmeshexporter.so", use_errno=True)
+
+OBJ = 0
+GLB = 1
+
+# Error returns of meshx_write
+UNSUPPORTED = -1
+WRITE_ERROR = -2
+
+# Vertex component formats, numbered like Unity 2019+ VertexFormat
+FLOAT, FLOAT16, UNORM8, SNORM8, UNORM16, SNORM16, \
+    UINT8, SINT8, UINT16, SINT16, UINT32, SINT32 = range(12)
+
+TRIANGLES = 0
+TRIANGLE_STRIP = 1
+QUADS = 2
+
+U8P = POINTER(c_uint8)
+
+# (offset, stride, format, dimension) of one vertex attribute
+Channel = Tuple[int, int, int, int]
+# (first_index, index_count, base_vertex, topology)
+SubMesh = Tuple[int, int, int, int]
+
+
+class _Channel(Structure):
+    _fields_ = [
+        ("offset", c_int64),
+        ("stride", c_int32),
+        ("format", c_int32),
+        ("dimension", c_int32),
+    ]
+
+
+class _SubMesh(Structure):
+    _fields_ = [
+        ("first_index", c_uint32),
+        ("index_count", c_uint32),
+        ("base_vertex", c_uint32),
+        ("topology", c_int32),
+    ]
+
+
+class _Mesh(Structure):
+    _fields_ = [
+        ("vertices", U8P),
+        ("vertices_size", c_int64),
+        ("vertex_count", c_int32),
+        ("position", _Channel),
+        ("normal", _Channel),
+        ("uv", _Channel),
+        ("indices", U8P),
+        ("indices_size", c_int64),
+        ("index_bits", c_int32),
+        ("submeshes", POINTER(_SubMesh)),
+        ("submesh_count", c_int32),
+        ("name", c_char_p),
+    ]
+
+
+_lib.meshx_write.argtypes = [POINTER(_Mesh), c_int32, c_int32]
+_lib.meshx_write.restype = c_int64
+
+
+def _ptr(data: bytes):
+    # Borrow the bytes object's buffer; the caller keeps `data` alive
+    return ctypes.cast(c_char_p(data), U8P)
+
+
+def _channel(c: Optional[Channel]) -> _Channel:
+    return _Channel(*c) if c else _Channel(0, 0, 0, 0)
+
+
+def write(fd: int, fmt: int, vertices: bytes, vertex_count: int,
+          position: Channel, normal: Optional[Channel], uv: Optional[Channel],
+          indices: bytes, index_bits: int, submeshes: Sequence[SubMesh],
+          name: str) -> int:
+    """
+    Write the mesh to the open descriptor ``fd`` as ``OBJ`` or ``GLB`` and
+    return the bytes written, or ``UNSUPPORTED`` (-1) without writing
+    anything if the buffers do not describe a valid mesh. Raises ``OSError``
+    if writing to ``fd`` fails; ``fd`` may then hold partial output. ``fd``
+    stays open.
+    """
+    vertices = bytes(vertices)
+    indices = bytes(indices)
+    subs = (_SubMesh * max(1, len(submeshes)))(*[_SubMesh(*s) for s in submeshes])
+    mesh = _Mesh(
+        _ptr(vertices), len(vertices), vertex_count,
+        _channel(position), _channel(normal), _channel(uv),
+        _ptr(indices), len(indices), index_bits,
+        subs, len(submeshes),
+        name.encode("utf-8", "replace"),
+    )
+    ctypes.set_errno(0)
+    written = _lib.meshx_write(ctypes.byref(mesh), fd, fmt)
+    if written == WRITE_ERROR:
+        err = ctypes.get_errno() or errno.EIO
+        raise OSError(err, os.strerror(err))
+    return written
+
+
+__all__ = (
+    "OBJ", "GLB", "UNSUPPORTED", "WRITE_ERROR",
+    "FLOAT", "FLOAT16", "UNORM8", "SNORM8", "UNORM16", "SNORM16",
+    "UINT8", "SINT8", "UINT16", "SINT16", "UINT32", "SINT32",
+    "TRIANGLES", "TRIANGLE_STRIP", "QUADS",
+    "write",
+)
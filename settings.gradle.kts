@@ -22,7 +22,9 @@ dependencyResolutionManagement {
 rootProject.name = "UABE Android"
 include(":app")
 include(":astc_encoder")
+include(":block_codec")
 include(":f3d")
 include(":fmod")
 include(":texture2ddecoder")
 include(":etcpak")
+include(":mesh_exporter")
@@ -1,5 +1,8 @@
 #include <stdint.h>
 #include <stddef.h>
+#include <string.h>
+
+#include <vector>
 
 #include "bcn.h"
 #include "etc.h"
@@ -9,6 +12,50 @@
 #include "crunch.h"
 #include "unitycrunch.h"
 
+// Decoder ids for t2d_decode_region
+enum {
+    T2D_BC1 = 1,
+    T2D_BC3,
+    T2D_BC4,
+    T2D_BC5,
+    T2D_BC6,
+    T2D_BC7,
+    T2D_ETC1,
+    T2D_ETC2,
+    T2D_ETC2A1,
+    T2D_ETC2A8,
+    T2D_EACR,
+    T2D_EACR_SIGNED,
+    T2D_EACRG,
+    T2D_EACRG_SIGNED,
+    T2D_ATC_RGB4,
+    T2D_ATC_RGBA8,
+    T2D_ASTC,
+};
+
+static int decode_any(int fmt, const uint8_t* data, long w, long h, int bw, int bh, uint32_t* out) {
+    switch (fmt) {
+        case T2D_BC1: return decode_bc1(data, w, h, out) != 0;
+        case T2D_BC3: return decode_bc3(data, w, h, out) != 0;
+        case T2D_BC4: return decode_bc4(data, (uint32_t)w, (uint32_t)h, out) != 0;
+        case T2D_BC5: return decode_bc5(data, (uint32_t)w, (uint32_t)h, out) != 0;
+        case T2D_BC6: return decode_bc6(data, (uint32_t)w, (uint32_t)h, out) != 0;
+        case T2D_BC7: return decode_bc7(data, (uint32_t)w, (uint32_t)h, out) != 0;
+        case T2D_ETC1: return decode_etc1(data, w, h, out) != 0;
+        case T2D_ETC2: return decode_etc2(data, w, h, out) != 0;
+        case T2D_ETC2A1: return decode_etc2a1(data, w, h, out) != 0;
+        case T2D_ETC2A8: return decode_etc2a8(data, w, h, out) != 0;
+        case T2D_EACR: return decode_eacr(data, w, h, out) != 0;
+        case T2D_EACR_SIGNED: return decode_eacr_signed(data, w, h, out) != 0;
+        case T2D_EACRG: return decode_eacrg(data, w, h, out) != 0;
+        case T2D_EACRG_SIGNED: return decode_eacrg_signed(data, w, h, out) != 0;
+        case T2D_ATC_RGB4: return decode_atc_rgb4(data, (uint32_t)w, (uint32_t)h, out) != 0;
+        case T2D_ATC_RGBA8: return decode_atc_rgba8(data, (uint32_t)w, (uint32_t)h, out) != 0;
+        case T2D_ASTC: return decode_astc(data, w, h, bw, bh, out) != 0;
+        default: return 0;
+    }
+}
+
 extern "C" {
 
 int t2d_decode_bc1(const uint8_t* data, long w, long h, uint32_t* out) { return decode_bc1(data, w, h, out) != 0; }
@@ -60,6 +107,50 @@ int t2d_unpack_unity_crunch(const uint8_t* data, uint32_t data_size, uint32_t le
     return 1;
 }
 
+/*
+ * Decodes the rectangle (x, y, rw, rh) of a w x h block-compressed image into out (rw * rh
+ * pixels). Only the blocks covering the rectangle are gathered and decoded, so the cost
+ * follows the rectangle rather than the image. data holds data_size bytes; the call fails
+ * if the blocks it would read run past them.
+ */
+int t2d_decode_region(int fmt, const uint8_t* data, long data_size, long w, long h, int bw, int bh,
+                      int block_bytes, long x, long y, long rw, long rh, uint32_t* out) {
+    if (!data || data_size < 0 || bw <= 0 || bh <= 0 || block_bytes <= 0 || rw <= 0 || rh <= 0
+            || x < 0 || y < 0 || x + rw > w || y + rh > h) {
+        return 0;
+    }
+
+    const long blocks_x = (w + bw - 1) / bw;
+    const long bx0 = x / bw, by0 = y / bh;
+    const long bx1 = (x + rw + bw - 1) / bw, by1 = (y + rh + bh - 1) / bh;
+    const long nbx = bx1 - bx0, nby = by1 - by0;
+
+    // The last block read ends at ((by1 - 1) * blocks_x + bx1) blocks in
+    if (((by1 - 1) * blocks_x + bx1) > data_size / block_bytes) {
+        return 0;
+    }
+
+    std::vector<uint8_t> blocks((size_t)(nbx * nby * block_bytes));
+    const size_t row_bytes = (size_t)(nbx * block_bytes);
+    for (long by = by0; by < by1; by++) {
+        memcpy(&blocks[(size_t)(by - by0) * row_bytes],
+               data + (size_t)(by * blocks_x + bx0) * block_bytes,
+               row_bytes);
+    }
+
+    const long sw = nbx * bw, sh = nby * bh;
+    std::vector<uint32_t> pixels((size_t)(sw * sh));
+    if (!decode_any(fmt, blocks.data(), sw, sh, bw, bh, pixels.data())) {
+        return 0;
+    }
+
+    const long ox = x - bx0 * bw, oy = y - by0 * bh;
+    for (long r = 0; r < rh; r++) {
+        memcpy(out + (size_t)r * rw, &pixels[(size_t)(oy + r) * sw + ox], (size_t)rw * 4);
+    }
+    return 1;
+}
+
 // crunch uses new[] in K0lb3 code, so we free with delete[]
 void t2d_free(void* p) {
     if (!p) return;
@@ -1,5 +1,7 @@
 __version__ = "android-ctypes"
 
+import ctypes
+
 from ._android_ctypes import _decode, _lib, _u8buf, _out_u32, _bytes_from_u32
 from ctypes import c_uint32, POINTER, byref
 
@@ -71,3 +73,28 @@ def unpack_unity_crunch(data: bytes, level_index: int=0) -> bytes:
         return ctypes.string_at(out_ptr, out_size.value)
     finally:
         _lib.t2d_free(out_ptr)
+
+# Decoder ids understood by decode_region (see t2d_capi.cpp)
+REGION_DECODERS = {
+    "bc1": 1, "bc3": 2, "bc4": 3, "bc5": 4, "bc6": 5, "bc7": 6,
+    "etc1": 7, "etc2": 8, "etc2a1": 9, "etc2a8": 10,
+    "eacr": 11, "eacr_signed": 12, "eacrg": 13, "eacrg_signed": 14,
+    "atc_rgb4": 15, "atc_rgba8": 16, "astc": 17,
+}
+
+def decode_region(decoder: str, data: bytes, w: int, h: int, bw: int, bh: int, block_bytes: int,
+                  x: int, y: int, rw: int, rh: int) -> bytes:
+    """BGRA pixels of the (x, y, rw, rh) rectangle of a w x h image, decoding only its blocks."""
+    from ._android_ctypes import U8P, _out_u32, _bytes_from_u32
+    from ctypes import c_char_p, c_long, c_int
+    # Points into the bytes object itself; a level can be many MB and only a few blocks are read
+    data = bytes(data)
+    ptr = ctypes.cast(c_char_p(data), U8P)
+    out = _out_u32(rw, rh)
+    ok = _lib.t2d_decode_region(c_int(REGION_DECODERS[decoder]), ptr, c_long(len(data)),
+                                c_long(w), c_long(h),
+                                c_int(bw), c_int(bh), c_int(block_bytes),
+                                c_long(x), c_long(y), c_long(rw), c_long(rh), out)
+    if not ok:
+        raise RuntimeError("Decoding failed")
+    return _bytes_from_u32(out)
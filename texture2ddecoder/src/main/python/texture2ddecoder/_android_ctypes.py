@@ -41,6 +41,10 @@ _lib.t2d_decode_astc.restype  = c_int
 _lib.t2d_decode_pvrtc.argtypes = [U8P, c_long, c_long, U32P, c_int]
 _lib.t2d_decode_pvrtc.restype  = c_int
 
+_lib.t2d_decode_region.argtypes = [c_int, U8P, c_long, c_long, c_long, c_int, c_int, c_int,
+                                   c_long, c_long, c_long, c_long, U32P]
+_lib.t2d_decode_region.restype  = c_int
+
 # crunch
 _lib.t2d_unpack_crunch.argtypes = [U8P, c_uint32, c_uint32, POINTER(U8P), POINTER(c_uint32)]
 _lib.t2d_unpack_crunch.restype  = c_int